@@ -0,0 +1,139 @@
+package com.mtm.backend.Interceptor;
+
+import com.mtm.backend.service.llm.ModelCallContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 流式响应的客户端断线检测
+ * 浏览器关闭页面后连接上没有读写时容器感知不到断开，上游模型会一直生成到结束。
+ * 这里从两处检测断开并取消响应Flux（取消沿调度器、合并器一直传到模型调用，中止DashScope的HTTP请求）：
+ * <ul>
+ *   <li>心跳：响应以SSE推送时定期插入心跳元素（SSE注释，或data为空的事件——EventSource同样会派发，客户端按空内容处理），
+ *   首个令牌之前、检索期间等空闲阶段也有写入，写入失败时Spring MVC取消订阅</li>
+ *   <li>Servlet异步上下文：容器回调异步请求出错、超时或提前结束时（{@link DeferredResultProcessingInterceptor}），
+ *   直接结束响应Flux，不再等待下一次写入</li>
+ * </ul>
+ * 取消次数记为 llm.stream.cancelled（endpoint/reason）
+ */
+@Component
+@Slf4j
+public class StreamDisconnectInterceptor implements DeferredResultProcessingInterceptor {
+
+    public static final String CANCELLED_COUNTER = "llm.stream.cancelled";
+
+    private static final String SIGNAL_ATTRIBUTE = StreamDisconnectInterceptor.class.getName() + ".signal";
+    private static final String REASON_DISCONNECT = "disconnect";
+    private static final String REASON_ERROR = "error";
+    private static final String REASON_TIMEOUT = "timeout";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration heartbeatInterval;
+
+    public StreamDisconnectInterceptor(MeterRegistry meterRegistry,
+                                       @Value("${llm.stream.heartbeat-interval-ms:1000}") long heartbeatIntervalMs) {
+        this.meterRegistry = meterRegistry;
+        this.heartbeatInterval = Duration.ofMillis(heartbeatIntervalMs);
+    }
+
+    /**
+     * 为当前请求的流式响应挂上断线检测，需在请求线程上调用（控制器返回前）
+     *
+     * @param stream    响应流
+     * @param heartbeat 心跳元素，按SSE推送时每隔心跳间隔插入一次
+     */
+    public <T> Flux<T> cancelOnDisconnect(Flux<T> stream, T heartbeat) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return stream;
+        }
+        String endpoint = ModelCallContext.current().endpoint();
+        Sinks.One<String> signal = Sinks.one();
+        servletAttributes.setAttribute(SIGNAL_ATTRIBUTE, signal, RequestAttributes.SCOPE_REQUEST);
+
+        // 容器回调在前时记录其原因，否则是MVC写入失败后取消的订阅
+        AtomicReference<String> reason = new AtomicReference<>(REASON_DISCONNECT);
+        boolean eventStream = heartbeat instanceof ServerSentEvent<?> || isEventStream(servletAttributes.getRequest());
+        Flux<T> guarded = eventStream && !heartbeatInterval.isZero()
+            ? stream.publish(source -> Flux.merge(source,
+                Flux.interval(heartbeatInterval).map(tick -> heartbeat).takeUntilOther(source.then())))
+            : stream;
+        return guarded
+            .doOnCancel(() -> {
+                Counter.builder(CANCELLED_COUNTER)
+                    .description("客户端断开后取消的流式响应数")
+                    .tag("endpoint", endpoint)
+                    .tag("reason", reason.get())
+                    .register(meterRegistry)
+                    .increment();
+                log.info("客户端已断开，取消流式生成: endpoint={}, reason={}", endpoint, reason.get());
+            })
+            .takeUntilOther(signal.asMono().doOnNext(reason::set));
+    }
+
+    @Override
+    public <T> boolean handleTimeout(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        signal(request, REASON_TIMEOUT);
+        return true;
+    }
+
+    @Override
+    public <T> boolean handleError(NativeWebRequest request, DeferredResult<T> deferredResult, Throwable t) {
+        signal(request, REASON_ERROR);
+        return true;
+    }
+
+    @Override
+    public <T> void afterCompletion(NativeWebRequest request, DeferredResult<T> deferredResult) {
+        // 正常结束时响应流已完成，信号无人订阅；容器提前结束异步请求时取消仍在生成的流
+        signal(request, REASON_DISCONNECT);
+    }
+
+    // ============ 私有工具方法 ============
+
+    @SuppressWarnings("unchecked")
+    private static void signal(NativeWebRequest request, String reason) {
+        Object signal = request.getAttribute(SIGNAL_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (signal instanceof Sinks.One<?> one) {
+            ((Sinks.One<String>) one).tryEmitValue(reason);
+        }
+    }
+
+    /**
+     * 元素不是ServerSentEvent时，响应是否按SSE写出：映射声明了 produces=text/event-stream 时与Accept无关（前端fetch不带Accept），
+     * 否则看请求是否接受SSE；其他情况下心跳元素会混入响应正文
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean isEventStream(HttpServletRequest request) {
+        Object producible = request.getAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE);
+        if (producible instanceof Set<?> mediaTypes && !mediaTypes.isEmpty()) {
+            return ((Set<MediaType>) mediaTypes).stream()
+                .allMatch(mediaType -> mediaType.equalsTypeAndSubtype(MediaType.TEXT_EVENT_STREAM));
+        }
+        try {
+            return MediaType.parseMediaTypes(request.getHeader("Accept")).stream()
+                .anyMatch(mediaType -> mediaType.equalsTypeAndSubtype(MediaType.TEXT_EVENT_STREAM));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
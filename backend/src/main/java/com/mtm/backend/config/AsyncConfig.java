@@ -1,29 +1,58 @@
 package com.mtm.backend.config;
 
+import com.mtm.backend.service.llm.ModelCallContext;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 异步任务配置
- * 为AI生成任务提供专用的线程池
+ * 为AI生成任务提供专用的线程池；虚拟线程模式下（见 {@link ExecutionMode}）各执行器改为每个任务一个虚拟线程，
+ * 不再按线程数限制并发
  */
 @Configuration
 @EnableAsync
+@RequiredArgsConstructor
 @Slf4j
 public class AsyncConfig implements AsyncConfigurer {
 
+    private final Environment environment;
+
+    @PostConstruct
+    public void logExecutionMode() {
+        if (virtualThreads()) {
+            log.info("线程执行模式: 虚拟线程（请求处理、@Async任务、RAG检索与准备、SSE推送）");
+        } else if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("已开启虚拟线程模式但当前JDK {} 不支持虚拟线程（需要JDK 21），使用平台线程池",
+                Runtime.version().feature());
+        }
+    }
+
     /**
      * AI生成任务专用线程池
      */
     @Bean("aiGenerationTaskExecutor")
     public Executor aiGenerationTaskExecutor() {
+        if (virtualThreads()) {
+            SimpleAsyncTaskExecutor executor = ExecutionMode.virtualThreadExecutor("AI-Generation-");
+            // 关闭时等待在途任务完成，与线程池模式一致
+            executor.setTaskTerminationTimeout(30_000);
+            log.info("AI生成任务使用虚拟线程执行，模型调用并发由调度器后台通道限制");
+            return executor;
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         
         // 核心线程数：CPU核心数
@@ -61,6 +90,158 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    /**
+     * RAG检索专用线程池
+     * 用于多知识库并发检索等I/O密集的扇出任务，与AI生成任务隔离；任务内部的分支提交到ragLegExecutor
+     */
+    @Bean("ragSearchExecutor")
+    public Executor ragSearchExecutor() {
+        if (virtualThreads()) {
+            SimpleAsyncTaskExecutor executor = ExecutionMode.virtualThreadExecutor("RAG-Search-");
+            executor.setTaskDecorator(ModelCallContext::decorate);
+            log.info("RAG检索使用虚拟线程执行");
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // I/O密集型：线程数高于CPU核心数
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors() * 8);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("RAG-Search-");
+        // 模型调用指标按发起请求的入口接口归类
+        executor.setTaskDecorator(ModelCallContext::decorate);
+        
+        // 拒绝策略：调用者运行，过载时退化为串行检索
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        
+        log.info("RAG检索线程池初始化完成 - 核心线程数: {}, 最大线程数: {}, 队列容量: {}", 
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+        
+        return executor;
+    }
+
+    /**
+     * RAG检索内层分支线程池
+     * 混合检索的向量一路、精确重排的查询向量计算在此执行。外层检索任务运行在ragSearchExecutor上并等待这些分支，
+     * 分支本身不再等待其他任务，两者分开避免同一线程池内嵌套等待：父任务占满核心线程后子任务只能排队，线程池永久卡死
+     */
+    @Bean("ragLegExecutor")
+    public Executor ragLegExecutor() {
+        if (virtualThreads()) {
+            SimpleAsyncTaskExecutor executor = ExecutionMode.virtualThreadExecutor("RAG-Leg-");
+            executor.setTaskDecorator(ModelCallContext::decorate);
+            log.info("RAG检索分支使用虚拟线程执行");
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // 不排队：满载时由等待分支的检索线程自己执行，退化为串行而不是排队等待
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors() * 8);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("RAG-Leg-");
+        // 模型调用指标按发起请求的入口接口归类
+        executor.setTaskDecorator(ModelCallContext::decorate);
+        
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        
+        log.info("RAG检索分支线程池初始化完成 - 核心线程数: {}, 最大线程数: {}", 
+                executor.getCorePoolSize(), executor.getMaxPoolSize());
+        
+        return executor;
+    }
+
+    /**
+     * RAG输入准备线程池
+     * 对话前的权限校验、上下文检索、记忆加载等阶段并发执行；
+     * 上下文检索内部还会向RAG检索线程池提交子任务，两者分开避免同一线程池内嵌套等待导致饥饿
+     */
+    @Bean("ragPrepareExecutor")
+    public AsyncTaskExecutor ragPrepareExecutor() {
+        if (virtualThreads()) {
+            SimpleAsyncTaskExecutor executor = ExecutionMode.virtualThreadExecutor("RAG-Prepare-");
+            executor.setTaskDecorator(ModelCallContext::decorate);
+            log.info("RAG输入准备使用虚拟线程执行");
+            return executor;
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        // 不排队：阶段任务都是短时阻塞I/O，满载时直接由调用线程执行
+        executor.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+        executor.setMaxPoolSize(Runtime.getRuntime().availableProcessors() * 8);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("RAG-Prepare-");
+        // 模型调用指标按发起请求的入口接口归类
+        executor.setTaskDecorator(ModelCallContext::decorate);
+        
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        
+        log.info("RAG输入准备线程池初始化完成 - 核心线程数: {}, 最大线程数: {}", 
+                executor.getCorePoolSize(), executor.getMaxPoolSize());
+        
+        return executor;
+    }
+
+    /**
+     * 回答后置增强（相关问题生成）线程池
+     * 与AI生成任务隔离且满载时拒绝而不是由调用者执行：增强内容可以放弃，但不能在请求线程上同步调用模型拖慢回答
+     */
+    @Bean("enrichmentExecutor")
+    public Executor enrichmentExecutor() {
+        if (virtualThreads()) {
+            log.info("回答增强使用虚拟线程执行，模型调用并发由调度器后台通道限制");
+            return ExecutionMode.virtualThreadExecutor("Enrichment-");
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("Enrichment-");
+        
+        // 拒绝策略：直接拒绝，由调用方记为失败
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setKeepAliveSeconds(60);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.initialize();
+        
+        log.info("回答增强线程池初始化完成 - 核心线程数: {}, 最大线程数: {}, 队列容量: {}", 
+                executor.getCorePoolSize(), executor.getMaxPoolSize(), executor.getQueueCapacity());
+        
+        return executor;
+    }
+
+    /**
+     * Spring MVC异步请求（SSE推送）执行器，平台线程模式下与MVC默认的执行器相同
+     */
+    @Bean("mvcAsyncTaskExecutor")
+    public AsyncTaskExecutor mvcAsyncTaskExecutor() {
+        return virtualThreads()
+            ? ExecutionMode.virtualThreadExecutor("MvcAsync-")
+            : new SimpleAsyncTaskExecutor("MvcAsync");
+    }
+
+    /**
+     * Reactor流中阻塞调用（RAG输入准备、写会话记忆）的调度器：
+     * 虚拟线程模式下每个任务一个虚拟线程，否则为boundedElastic（线程数上限为CPU核心数的10倍）
+     */
+    @Bean("blockingScheduler")
+    public Scheduler blockingScheduler() {
+        return virtualThreads()
+            ? Schedulers.fromExecutor(ExecutionMode.virtualThreadExecutor("Reactor-Blocking-"))
+            : Schedulers.boundedElastic();
+    }
+
     /**
      * 默认异步执行器
      */
@@ -68,4 +249,10 @@ public class AsyncConfig implements AsyncConfigurer {
     public Executor getAsyncExecutor() {
         return aiGenerationTaskExecutor();
     }
+
+    // ============ 私有工具方法 ============
+
+    private boolean virtualThreads() {
+        return ExecutionMode.isVirtual(environment);
+    }
 }
@@ -1,91 +1,48 @@
 package com.mtm.backend.config;
 
+import com.mtm.backend.service.llm.CircuitBreaker;
+import com.mtm.backend.service.llm.DashScopeHealthProber;
+import com.mtm.backend.service.llm.ModelCircuitBreakers;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
-import org.springframework.web.reactive.function.client.WebClient;
 
-import java.time.Duration;
+import java.util.Date;
 
 /**
  * DashScope API健康检查指示器
- * 监控DashScope API连接状态
+ * 只读取后台探测缓存的结果与熔断器状态，不在健康检查请求中访问DashScope
  */
-@Component
+@Component("dashscopeHealthIndicator")
 @RequiredArgsConstructor
-@Slf4j
-public class DashScopeHealthIndicator {
+public class DashScopeHealthIndicator implements HealthIndicator {
 
-    private final WebClient dashScopeWebClient;
-    
-    /**
-     * 检查DashScope API连接健康状态
-     * @return 连接状态信息
-     */
-    public HealthStatus checkHealth() {
-        try {
-            // 执行简单的连接测试
-            boolean isHealthy = checkDashScopeConnection();
-            
-            if (isHealthy) {
-                return HealthStatus.up("DashScope API连接正常");
-            } else {
-                return HealthStatus.down("DashScope API连接异常");
-            }
-        } catch (Exception e) {
-            log.error("DashScope健康检查失败", e);
-            return HealthStatus.down("健康检查失败: " + e.getMessage());
-        }
-    }
+    private final DashScopeHealthProber dashScopeHealthProber;
+    private final ModelCircuitBreakers modelCircuitBreakers;
 
-    private boolean checkDashScopeConnection() {
-        try {
-            // 简单的连接测试 - 不发送实际请求，只检查连接
-            String testEndpoint = "https://dashscope.aliyuncs.com/api/v1/services/embeddings/text-embedding/text-embedding";
-            
-            Boolean result = dashScopeWebClient
-                    .get()
-                    .uri(testEndpoint)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .map(response -> true)
-                    .onErrorReturn(false)
-                    .timeout(Duration.ofSeconds(10))
-                    .block();
-                    
-            return result != null && result;
-        } catch (Exception e) {
-            log.warn("DashScope连接检查异常: {}", e.getMessage());
-            return false;
-        }
-    }
-    
-    /**
-     * 健康状态数据类
-     */
-    public static class HealthStatus {
-        private final boolean healthy;
-        private final String message;
-        
-        private HealthStatus(boolean healthy, String message) {
-            this.healthy = healthy;
-            this.message = message;
-        }
-        
-        public static HealthStatus up(String message) {
-            return new HealthStatus(true, message);
-        }
-        
-        public static HealthStatus down(String message) {
-            return new HealthStatus(false, message);
+    @Override
+    public Health health() {
+        DashScopeHealthProber.ProbeResult result = dashScopeHealthProber.getLastResult();
+        CircuitBreaker chat = modelCircuitBreakers.chat();
+        CircuitBreaker embedding = modelCircuitBreakers.embedding();
+
+        Health.Builder builder = result == null ? Health.unknown()
+            : dashScopeHealthProber.isAvailable() ? Health.up() : Health.down();
+        if (result != null) {
+            builder.withDetail("message", result.message())
+                .withDetail("checkedAt", new Date(result.checkedAt()))
+                .withDetail("latencyMs", result.latencyMs())
+                .withDetail("passive", result.passive());
         }
-        
-        public boolean isHealthy() {
-            return healthy;
+        builder.withDetail("chatCircuit", chat.getState())
+            .withDetail("embeddingCircuit", embedding.getState());
+        if (chat.getLastFailure() != null) {
+            builder.withDetail("chatLastFailure", chat.getLastFailure());
         }
-        
-        public String getMessage() {
-            return message;
+        if (embedding.getLastFailure() != null) {
+            builder.withDetail("embeddingLastFailure", embedding.getLastFailure());
         }
+        return builder.build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.mtm.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 下游并发上限配置
+ * 虚拟线程模式下线程数不再限制并发，每个下游由各自的许可限制：
+ * 对话模型见 llm.scheduler，MySQL与Redis见各自的连接池大小，这里配置其余没有连接池约束的模型调用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "downstream.limits")
+@Data
+public class DownstreamLimitConfig {
+
+    /**
+     * 嵌入模型（查询向量化、文档入库）
+     */
+    private Limit embedding = new Limit(8, 30_000);
+
+    /**
+     * 语音转录模型
+     */
+    private Limit transcription = new Limit(2, 60_000);
+
+    @Data
+    public static class Limit {
+
+        /**
+         * 同时进行的调用上限
+         */
+        private int maxConcurrency;
+
+        /**
+         * 等待许可的超时（毫秒），超时即失败
+         */
+        private long acquireTimeoutMs;
+
+        public Limit() {
+        }
+
+        public Limit(int maxConcurrency, long acquireTimeoutMs) {
+            this.maxConcurrency = maxConcurrency;
+            this.acquireTimeoutMs = acquireTimeoutMs;
+        }
+    }
+}
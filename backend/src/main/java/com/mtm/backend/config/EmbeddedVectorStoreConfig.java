@@ -0,0 +1,50 @@
+package com.mtm.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 嵌入式向量存储配置
+ * 仅在 rag.vector-store.type=embedded 时生效，用于单机部署或测试环境脱离Redis Stack运行（缓存仍使用普通Redis）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "rag.vector-store.embedded")
+@Data
+public class EmbeddedVectorStoreConfig {
+
+    /**
+     * 数据目录（向量文件与文档日志）
+     */
+    private String dataDir = "./vector-data";
+
+    /**
+     * 向量维度，text-embedding-v2 为1536
+     */
+    private int dimensions = 1536;
+
+    /**
+     * HNSW每个节点的最大连接数
+     */
+    private int m = 16;
+
+    /**
+     * HNSW构图时的候选队列长度
+     */
+    private int efConstruction = 200;
+
+    /**
+     * HNSW查询时的候选队列长度
+     */
+    private int efSearch = 64;
+
+    /**
+     * 每个内存映射分段容纳的向量数
+     */
+    private int segmentCapacity = 65536;
+
+    /**
+     * 启动时墓碑（已删除或被覆盖的文档）占比达到该值即压缩数据文件
+     */
+    private double compactTombstoneRatio = 0.2;
+}
@@ -0,0 +1,35 @@
+package com.mtm.backend.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * 线程执行模式
+ * spring.threads.virtual.enabled=true 且运行在JDK 21及以上时为虚拟线程模式：
+ * Tomcat请求处理（Spring Boot自动配置）、@Async任务、RAG检索与准备、对冲的模型调用、SSE异步发送都在虚拟线程上执行。
+ * 此时线程池不再限制并发，对下游的并发由各自的许可限制：对话模型由调度器（llm.scheduler），
+ * 嵌入与转录模型由 downstream.limits，MySQL与Redis由各自的连接池。
+ * 代码仍按JDK 17编译，虚拟线程经Spring的 SimpleAsyncTaskExecutor 创建；JDK 21以下开启时保持平台线程
+ */
+public final class ExecutionMode {
+
+    private ExecutionMode() {
+    }
+
+    /**
+     * 是否为虚拟线程模式（开关已打开且JDK支持）
+     */
+    public static boolean isVirtual(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    /**
+     * 每个任务一个虚拟线程的执行器，不限制并发
+     */
+    public static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+}
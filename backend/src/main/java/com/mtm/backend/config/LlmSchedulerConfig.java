@@ -0,0 +1,74 @@
+package com.mtm.backend.config;
+
+import com.mtm.backend.enums.LlmLane;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 大模型调用调度配置
+ * 全局并发上限应小于DashScope连接池大小（20），为健康探测等非调度请求留出连接
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.scheduler")
+@Data
+public class LlmSchedulerConfig {
+
+    /**
+     * 是否启用调度；关闭时直接调用模型
+     */
+    private boolean enabled = true;
+
+    /**
+     * 全进程同时进行的模型调用上限
+     */
+    private int maxConcurrency = 16;
+
+    /**
+     * 全进程共享的令牌预算（每分钟），令牌桶容量等于一分钟的预算
+     */
+    private long tokensPerMinute = 600_000;
+
+    /**
+     * 交互式通道
+     */
+    private Lane interactive = new Lane(16, 3, 30_000);
+
+    /**
+     * 后台批量通道
+     */
+    private Lane batch = new Lane(4, 1, 600_000);
+
+    public Lane lane(LlmLane lane) {
+        return lane == LlmLane.INTERACTIVE ? interactive : batch;
+    }
+
+    @Data
+    public static class Lane {
+
+        /**
+         * 通道并发上限
+         */
+        private int maxConcurrency;
+
+        /**
+         * 通道权重：低优先级通道只能在令牌桶余量高于更高优先级通道权重占比时消耗令牌，
+         * 为高优先级通道保留相应比例的突发预算
+         */
+        private int weight;
+
+        /**
+         * 排队超时（毫秒）
+         */
+        private long queueTimeoutMs;
+
+        public Lane() {
+        }
+
+        public Lane(int maxConcurrency, int weight, long queueTimeoutMs) {
+            this.maxConcurrency = maxConcurrency;
+            this.weight = weight;
+            this.queueTimeoutMs = queueTimeoutMs;
+        }
+    }
+}
@@ -1,19 +1,55 @@
 package com.mtm.backend.config;
 
 import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemoryRepository;
+import com.mtm.backend.service.rag.QueryEmbeddingCache;
+import com.mtm.backend.service.rag.store.MappedHnswVectorStore;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jdbc.core.JdbcTemplate;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPooled;
 
+import java.nio.file.Paths;
+import java.util.List;
+
 @Configuration
 public class ModelConfig {
+    /** Redis向量索引名，与application.yml中的配置保持一致 */
+    public static final String VECTOR_INDEX_NAME = "teaching-resources";
+    /** Redis向量文档键前缀，与application.yml中的配置保持一致 */
+    public static final String VECTOR_KEY_PREFIX = "vector:";
+    /** Redis向量文档正文字段（TEXT全文索引） */
+    public static final String VECTOR_CONTENT_FIELD = "content";
+    /** Redis向量文档向量字段 */
+    public static final String VECTOR_EMBEDDING_FIELD = "embedding";
+
+    /**
+     * 向量索引中声明的元数据字段，用于过滤以及全文检索结果的字段回填
+     * 可过滤字段都必须在此声明为TAG或NUMERIC，VectorFilter只接受这里声明过的字段
+     */
+    public static final List<RedisVectorStore.MetadataField> VECTOR_METADATA_FIELDS = List.of(
+            RedisVectorStore.MetadataField.tag("knowledge_base_id"),
+            RedisVectorStore.MetadataField.tag("resource_id"),
+            RedisVectorStore.MetadataField.tag("subject"),
+            RedisVectorStore.MetadataField.tag("course_level"),
+            RedisVectorStore.MetadataField.tag("title"),
+            RedisVectorStore.MetadataField.tag("category"),
+            RedisVectorStore.MetadataField.tag("document_type"),
+            RedisVectorStore.MetadataField.tag("file_type"),
+            RedisVectorStore.MetadataField.numeric("chunk_index"),
+            RedisVectorStore.MetadataField.numeric("token_count"),
+            RedisVectorStore.MetadataField.numeric("user_id")
+    );
+
     private final ChatModel chatModel;
     private final EmbeddingModel embeddingModel;
 
@@ -35,29 +71,51 @@ public class ModelConfig {
      * 增加元数据字段支持用于过滤
      */
     @Bean
-    public VectorStore vectorStore(JedisPooled jedisPooled) {
-        return RedisVectorStore.builder(jedisPooled, embeddingModel)
-                .indexName("teaching-resources")           // 与application.yml中的配置保持一致
-                .prefix("vector:")                         // 与application.yml中的配置保持一致
-                .initializeSchema(true)                    // 自动初始化Redis索引结构
-                .metadataFields(
-                    // 定义元数据字段以支持过滤
-                    RedisVectorStore.MetadataField.tag("knowledge_base_id"),
-                    RedisVectorStore.MetadataField.tag("resource_id"),
-                    RedisVectorStore.MetadataField.tag("subject"),
-                    RedisVectorStore.MetadataField.tag("course_level"),
-                    RedisVectorStore.MetadataField.tag("title")
-                )
+    @ConditionalOnProperty(name = "rag.vector-store.type", havingValue = "redis", matchIfMissing = true)
+    public VectorStore vectorStore(JedisPooled jedisPooled, QueryEmbeddingCache queryEmbeddingCache) {
+        // 查询向量经由缓存获取，同一问题的多次检索只嵌入一次
+        return RedisVectorStore.builder(jedisPooled, queryEmbeddingCache.asEmbeddingModel())
+                .indexName(VECTOR_INDEX_NAME)
+                .prefix(VECTOR_KEY_PREFIX)
+                .initializeSchema(true)                    // 自动初始化Redis索引结构（content字段同时建立TEXT全文索引）
+                .metadataFields(VECTOR_METADATA_FIELDS)     // 定义元数据字段以支持过滤
                 .build();
     }
 
+    /**
+     * 配置嵌入式向量存储 Bean
+     * 向量内存映射到堆外 + 进程内HNSW检索，无需Redis Stack
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "rag.vector-store.type", havingValue = "embedded")
+    public VectorStore embeddedVectorStore(EmbeddedVectorStoreConfig config, QueryEmbeddingCache queryEmbeddingCache) {
+        return new MappedHnswVectorStore(
+                queryEmbeddingCache.asEmbeddingModel(),
+                Paths.get(config.getDataDir()),
+                config.getDimensions(),
+                config.getM(),
+                config.getEfConstruction(),
+                config.getEfSearch(),
+                config.getSegmentCapacity(),
+                config.getCompactTombstoneRatio());
+    }
+
     /**
      * 配置JedisPooled Bean用于Redis连接
-     * 基于Spring AI官方文档的推荐配置
+     * 基于Spring AI官方文档的推荐配置，连接参数沿用 spring.data.redis。
+     * 连接池按需建立连接：嵌入式向量存储下各检索服务不会调用RediSearch命令，无需Redis Stack，
+     * 但缓存与会话等功能仍依赖 spring.data.redis 指向的普通Redis
      */
     @Bean
-    public JedisPooled jedisPooled() {
-        return new JedisPooled("localhost", 6379);
+    public JedisPooled jedisPooled(RedisProperties redisProperties) {
+        DefaultJedisClientConfig.Builder clientConfig = DefaultJedisClientConfig.builder()
+                .user(redisProperties.getUsername())
+                .password(redisProperties.getPassword())
+                .database(redisProperties.getDatabase());
+        if (redisProperties.getTimeout() != null) {
+            clientConfig.timeoutMillis((int) redisProperties.getTimeout().toMillis());
+        }
+        return new JedisPooled(new HostAndPort(redisProperties.getHost(), redisProperties.getPort()), clientConfig.build());
     }
 
     /**
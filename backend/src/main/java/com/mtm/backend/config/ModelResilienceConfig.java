@@ -0,0 +1,82 @@
+package com.mtm.backend.config;
+
+import com.alibaba.cloud.ai.dashscope.audio.transcription.AudioTranscriptionModel;
+import com.mtm.backend.service.llm.ModelBulkheads;
+import com.mtm.backend.service.llm.ModelCallMetrics;
+import com.mtm.backend.service.llm.ModelCircuitBreakers;
+import com.mtm.backend.service.llm.RequestHedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.support.RetryTemplate;
+
+/**
+ * 模型调用容错配置
+ * 对话模型与嵌入模型Bean创建后包装熔断代理（保留原有类型），DashScope不可用或持续变慢时调用方快速失败；
+ * 单条文本的嵌入调用额外经过对冲；对话、嵌入、转录调用与Spring AI重试都记录指标（见 {@link ModelCallMetrics}）；
+ * 嵌入与转录调用的并发由信号量限制（见 {@link ModelBulkheads}）
+ */
+@Configuration
+public class ModelResilienceConfig {
+
+    @Bean
+    public static ModelCircuitBreakers modelCircuitBreakers() {
+        return new ModelCircuitBreakers();
+    }
+
+    @Bean
+    public static ModelCallMetrics modelCallMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ModelCallMetrics(meterRegistry);
+    }
+
+    @Bean
+    public static ModelBulkheads modelBulkheads(ObjectProvider<DownstreamLimitConfig> limits,
+                                                ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ModelBulkheads(limits, meterRegistry);
+    }
+
+    @Bean
+    public static BeanPostProcessor modelCircuitBreakerPostProcessor(ObjectProvider<ModelCircuitBreakers> breakers,
+                                                                     ObjectProvider<RequestHedger> hedger,
+                                                                     ObjectProvider<ModelCallMetrics> metrics,
+                                                                     ObjectProvider<ModelBulkheads> bulkheads) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // 指标拦截器放在熔断器外层，熔断拒绝与对冲后的整体耗时都会被记录；
+                // 并发隔离在最外层，等待许可的时间不计入模型调用耗时
+                if (bean instanceof ChatModel) {
+                    return withAdvice(breakers.getObject().protectChatModel(bean), metrics.getObject().chatInterceptor());
+                }
+                if (bean instanceof EmbeddingModel) {
+                    Object proxy = withAdvice(breakers.getObject().protectEmbeddingModel(bean, hedger.getObject()),
+                        metrics.getObject().embeddingInterceptor());
+                    return withAdvice(proxy, bulkheads.getObject().embeddingInterceptor());
+                }
+                if (bean instanceof AudioTranscriptionModel) {
+                    ProxyFactory factory = new ProxyFactory(bean);
+                    factory.setProxyTargetClass(true);
+                    factory.addAdvice(bulkheads.getObject().transcriptionInterceptor());
+                    factory.addAdvice(metrics.getObject().transcriptionInterceptor());
+                    return factory.getProxy(bean.getClass().getClassLoader());
+                }
+                if (bean instanceof RetryTemplate retryTemplate) {
+                    retryTemplate.registerListener(metrics.getObject().retryListener());
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static Object withAdvice(Object proxy, MethodInterceptor interceptor) {
+        ((Advised) proxy).addAdvice(0, interceptor);
+        return proxy;
+    }
+}
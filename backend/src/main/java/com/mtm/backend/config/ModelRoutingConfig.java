@@ -0,0 +1,66 @@
+package com.mtm.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对话模型路由配置
+ * 简短的事实性问题走快速模型，长提示词与分析类场景走大模型；首个令牌耗时明显劣化的模型临时让给另一个模型
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.routing")
+@Data
+public class ModelRoutingConfig {
+
+    /**
+     * 是否启用路由；关闭时所有调用使用快速模型
+     */
+    private boolean enabled = true;
+
+    /**
+     * 快速、低成本模型
+     */
+    private String fastModel = "qwen-turbo";
+
+    /**
+     * 大模型，用于长提示词与分析类问题
+     */
+    private String largeModel = "qwen-plus";
+
+    /**
+     * 估算令牌数达到该值的请求走大模型
+     */
+    private int longPromptTokens = 6000;
+
+    /**
+     * 问题长度（字符）超过该值视为分析类问题
+     */
+    private int longQuestionChars = 60;
+
+    /**
+     * 问题中出现这些词时视为分析类问题
+     */
+    private List<String> analyticalKeywords = new ArrayList<>(List.of(
+        "为什么", "分析", "比较", "对比", "区别", "推导", "证明", "评价", "论述", "如何理解", "原理",
+        "why", "compare", "analy", "prove", "derive", "explain"));
+
+    /**
+     * 首选模型的延迟超过另一个模型的该倍数时改用另一个模型
+     */
+    private double latencyFallbackRatio = 2.0;
+
+    /**
+     * 延迟低于该值（毫秒）时不因延迟改道
+     */
+    private long latencyFallbackMinMs = 3000;
+
+    /**
+     * 延迟样本的最长有效期（毫秒）：改道后首选模型不再有新样本，过期后不再据此改道，
+     * 下一次调用回到首选模型重新测量
+     */
+    private long latencySampleMaxAgeMs = 60_000;
+}
@@ -0,0 +1,113 @@
+package com.mtm.backend.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * 压测用模拟模型配置
+ * 仅在 perf profile 下生效；耗时按对数正态分布采样（由中位数与p99确定），
+ * 默认值取自DashScope qwen-turbo / text-embedding-v2 / paraformer 的典型观测值
+ */
+@Configuration
+@Profile("perf")
+@ConfigurationProperties(prefix = "perf.model")
+@Data
+public class PerfModelConfig {
+
+    /**
+     * 对话模型
+     */
+    private Chat chat = new Chat();
+
+    /**
+     * 嵌入模型
+     */
+    private Embedding embedding = new Embedding();
+
+    /**
+     * 语音转录模型
+     */
+    private Latency transcription = new Latency(1500, 5000);
+
+    @Data
+    public static class Chat {
+
+        /**
+         * 请求未指定模型时响应中返回的模型名
+         */
+        private String model = "fake-chat";
+
+        /**
+         * 首个令牌耗时分布
+         */
+        private Latency firstToken = new Latency(400, 2000);
+
+        /**
+         * 生成速度（令牌/秒），同步调用的总耗时 = 首个令牌耗时 + 输出令牌数 / 生成速度
+         */
+        private int tokensPerSecond = 50;
+
+        /**
+         * 流式响应每个片段包含的令牌数
+         */
+        private int tokensPerChunk = 4;
+
+        /**
+         * 输出令牌数下限
+         */
+        private int minOutputTokens = 80;
+
+        /**
+         * 输出令牌数上限
+         */
+        private int maxOutputTokens = 400;
+    }
+
+    @Data
+    public static class Embedding {
+
+        /**
+         * 响应中返回的模型名
+         */
+        private String model = "fake-embedding";
+
+        /**
+         * 向量维度，需与向量存储一致
+         */
+        private int dimensions = 1536;
+
+        /**
+         * 单次请求的固定耗时分布
+         */
+        private Latency latency = new Latency(60, 300);
+
+        /**
+         * 批量请求中每条文本增加的耗时（毫秒）
+         */
+        private long perInputMs = 2;
+    }
+
+    @Data
+    public static class Latency {
+
+        /**
+         * 耗时中位数（毫秒）
+         */
+        private long medianMs;
+
+        /**
+         * 耗时p99（毫秒），不大于中位数时耗时固定为中位数
+         */
+        private long p99Ms;
+
+        public Latency() {
+        }
+
+        public Latency(long medianMs, long p99Ms) {
+            this.medianMs = medianMs;
+            this.p99Ms = p99Ms;
+        }
+    }
+}
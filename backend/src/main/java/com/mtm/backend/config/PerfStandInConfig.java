@@ -0,0 +1,50 @@
+package com.mtm.backend.config;
+
+import com.alibaba.cloud.ai.dashscope.audio.transcription.AudioTranscriptionModel;
+import com.mtm.backend.service.llm.perf.FakeAudioTranscriptionModel;
+import com.mtm.backend.service.llm.perf.FakeChatModel;
+import com.mtm.backend.service.llm.perf.FakeEmbeddingModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * 压测替身配置（perf profile）
+ * 用模拟模型替换DashScope对话、嵌入与转录模型（DashScope的自动配置在 application-perf.yml 中排除），
+ * 模拟模型同样经过熔断、对冲与指标代理，压测结果包含这些包装层自身的开销；
+ * 向量存储使用嵌入式实现，数据库使用H2（见 application-perf.yml，H2驱动由Maven的perf profile引入）
+ */
+@Configuration
+@Profile("perf")
+@RequiredArgsConstructor
+@Slf4j
+public class PerfStandInConfig {
+
+    private final PerfModelConfig perfModelConfig;
+
+    @Bean
+    public ChatModel perfChatModel() {
+        PerfModelConfig.Chat chat = perfModelConfig.getChat();
+        log.warn("perf profile: 使用模拟对话模型，首个令牌耗时中位数{}ms/p99 {}ms，生成速度{}令牌/秒",
+            chat.getFirstToken().getMedianMs(), chat.getFirstToken().getP99Ms(), chat.getTokensPerSecond());
+        return new FakeChatModel(chat);
+    }
+
+    @Bean
+    public EmbeddingModel perfEmbeddingModel() {
+        PerfModelConfig.Embedding embedding = perfModelConfig.getEmbedding();
+        log.warn("perf profile: 使用模拟嵌入模型，维度{}，耗时中位数{}ms/p99 {}ms",
+            embedding.getDimensions(), embedding.getLatency().getMedianMs(), embedding.getLatency().getP99Ms());
+        return new FakeEmbeddingModel(embedding);
+    }
+
+    @Bean
+    public AudioTranscriptionModel perfAudioTranscriptionModel() {
+        log.warn("perf profile: 使用模拟语音转录模型");
+        return new FakeAudioTranscriptionModel(perfModelConfig.getTranscription());
+    }
+}
@@ -1,5 +1,7 @@
 package com.mtm.backend.config;
 
+import org.springframework.ai.tokenizer.JTokkitTokenCountEstimator;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,4 +27,13 @@ public class RAGConfig {
             true    // 启用保留分隔符
         );
     }
+
+    /**
+     * 令牌数估算器（与TokenTextSplitter相同的CL100K编码）
+     * 入库时为每个分块记录token_count，上下文装配时据此做令牌预算
+     */
+    @Bean
+    public TokenCountEstimator tokenCountEstimator() {
+        return new JTokkitTokenCountEstimator();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.mtm.backend.config;
+
+import com.mtm.backend.service.rag.store.MappedHnswVectorStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPooled;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * 向量存储健康检查指示器
+ * 后台定时用FT.INFO检查向量索引（不调用嵌入模型），健康检查请求只读取缓存结果
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorStoreHealthIndicator implements HealthIndicator {
+
+    private static final long CHECK_INTERVAL_MS = 30_000;
+
+    private final VectorStore vectorStore;
+    private final JedisPooled jedisPooled;
+
+    private volatile Health cached;
+
+    @Scheduled(fixedDelay = CHECK_INTERVAL_MS)
+    public void check() {
+        try {
+            if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+                cached = Health.up()
+                    .withDetail("storageType", "embedded")
+                    .withDetail("documents", embeddedStore.size())
+                    .withDetail("checkedAt", new Date())
+                    .build();
+                return;
+            }
+            Map<String, Object> info = jedisPooled.ftInfo(ModelConfig.VECTOR_INDEX_NAME);
+            cached = Health.up()
+                .withDetail("storageType", "redis")
+                .withDetail("index", ModelConfig.VECTOR_INDEX_NAME)
+                .withDetail("documents", String.valueOf(info.get("num_docs")))
+                .withDetail("checkedAt", new Date())
+                .build();
+        } catch (Exception e) {
+            log.warn("向量存储健康检查失败: {}", e.getMessage());
+            cached = Health.down()
+                .withDetail("error", e.getMessage())
+                .withDetail("checkedAt", new Date())
+                .build();
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health health = cached;
+        return health != null ? health : Health.unknown().build();
+    }
+}
@@ -1,9 +1,11 @@
 package com.mtm.backend.config;
 
 import com.mtm.backend.Interceptor.JwtInterceptor;
+import com.mtm.backend.Interceptor.StreamDisconnectInterceptor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.web.servlet.config.annotation.*;
@@ -16,6 +18,8 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class WebConfig implements WebMvcConfigurer {
     private final JwtInterceptor jwtInterceptor;
+    private final StreamDisconnectInterceptor streamDisconnectInterceptor;
+    private final AsyncTaskExecutor mvcAsyncTaskExecutor;
     private final LocalFileConfig localFileConfig;
 
     @Override
@@ -61,13 +65,22 @@ public class WebConfig implements WebMvcConfigurer {
         log.info("静态资源映射配置完成");
     }
 
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        // 流式响应（SSE）经DeferredResult异步处理，容器回调的出错、超时与结束用于取消仍在生成的流
+        configurer.registerDeferredResultInterceptors(streamDisconnectInterceptor);
+        // SSE逐条推送在该执行器上进行，虚拟线程模式下为虚拟线程
+        configurer.setTaskExecutor(mvcAsyncTaskExecutor);
+    }
+
     @Override
     public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
+        // 未指定Accept（或为*/*）时优先JSON；保留*/*兜底，只声明 produces=text/event-stream 的流式接口不会因此返回406
         configurer
             .favorParameter(false)
             .favorPathExtension(false)
             .ignoreAcceptHeader(false)
-            .defaultContentType(MediaType.APPLICATION_JSON)
+            .defaultContentType(MediaType.APPLICATION_JSON, MediaType.ALL)
             .mediaType("json", MediaType.APPLICATION_JSON);
     }
 }
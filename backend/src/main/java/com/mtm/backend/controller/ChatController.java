@@ -5,8 +5,15 @@ import com.alibaba.cloud.ai.dashscope.chat.MessageFormat;
 import com.alibaba.cloud.ai.dashscope.common.DashScopeApiConstants;
 import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemoryRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mtm.backend.Interceptor.StreamDisconnectInterceptor;
+import com.mtm.backend.enums.ConversationScenario;
+import com.mtm.backend.enums.LlmLane;
 import com.mtm.backend.repository.Conversation;
 import com.mtm.backend.repository.mapper.ConversationMapper;
+import com.mtm.backend.service.llm.InterruptedAnswers;
+import com.mtm.backend.service.llm.LlmCallScheduler;
+import com.mtm.backend.service.llm.ModelCallContext;
+import com.mtm.backend.service.llm.ModelRouter;
 import com.mtm.backend.utils.ThreadLocalUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -30,6 +37,7 @@ import org.springframework.web.multipart.MultipartFile;
 import reactor.core.publisher.Flux;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 
 import java.net.URI;
 import java.util.List;
@@ -47,12 +55,24 @@ public class ChatController {
 
     private static final String DEFAULT_PROMPT = "不要返回markdown";
 
+    /** 请求级选项会整体替换客户端默认选项，路由后的请求需要重新带上采样参数 */
+    private static final double TOP_P = 0.7;
+
+    /** 高分辨率图片输入按视觉模型的单图上限估算令牌数 */
+    private static final int IMAGE_INPUT_TOKENS = 1280;
+
     private final ChatClient dashScopeChatClient;
+    private final ChatMemory chatMemory;
     private final ConversationMapper conversationMapper;
     private final JdbcTemplate jdbcTemplate;
+    private final StreamDisconnectInterceptor streamDisconnectInterceptor;
+    private final LlmCallScheduler llmCallScheduler;
+    private final ModelRouter modelRouter;
 
     @Autowired
-    public ChatController(ChatModel chatModel, JdbcTemplate jdbcTemplate, ConversationMapper conversationMapper) {
+    public ChatController(ChatModel chatModel, JdbcTemplate jdbcTemplate, ConversationMapper conversationMapper,
+                          StreamDisconnectInterceptor streamDisconnectInterceptor, LlmCallScheduler llmCallScheduler,
+                          ModelRouter modelRouter) {
         ChatMemoryRepository chatMemoryRepository = MysqlChatMemoryRepository.mysqlBuilder()
                 .jdbcTemplate(jdbcTemplate)
                 .build();
@@ -68,12 +88,16 @@ public class ChatController {
                 )
                 .defaultOptions(
                         DashScopeChatOptions.builder()
-                                .withTopP(0.7)
+                                .withTopP(TOP_P)
                                 .build()
                 )
                 .build();
+        this.chatMemory = chatMemory;
         this.conversationMapper = conversationMapper;
         this.jdbcTemplate = jdbcTemplate;
+        this.streamDisconnectInterceptor = streamDisconnectInterceptor;
+        this.llmCallScheduler = llmCallScheduler;
+        this.modelRouter = modelRouter;
     }
 
 
@@ -90,9 +114,14 @@ public class ChatController {
                 return ResponseEntity.status(401).body(createErrorResponse("用户未登录", "/api/simple/chat"));
             }
             
-            ChatResponse response = dashScopeChatClient.prompt(query)
-                    .advisors(a->a.param(ChatMemory.CONVERSATION_ID,chatId))
-                    .call().chatResponse();
+            // 与其他对话入口一样按问题路由模型，经调度器的交互式通道，受并发上限与令牌预算约束
+            ModelRouter.Decision route = route(query);
+            ChatResponse response = llmCallScheduler.call(LlmLane.INTERACTIVE,
+                    LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS, query),
+                    () -> modelRouter.timed(route, () -> dashScopeChatClient.prompt(query)
+                            .options(routedOptions(route))
+                            .advisors(a->a.param(ChatMemory.CONVERSATION_ID,chatId))
+                            .call().chatResponse()));
             
             // 保存对话记录到conversations表
             String conversationId = chatId;
@@ -128,7 +157,7 @@ public class ChatController {
                 "totalTokens", response.getMetadata().getUsage().getTotalTokens()
             ));
             result.put("responseTime", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            result.put("model", "qwen-plus");
+            result.put("model", route.model());
             result.put("scenario", "general_chat"); // 修改为正确的scenario值
             
             return ResponseEntity.ok(result);
@@ -141,7 +170,7 @@ public class ChatController {
 
 
     /** 2.2 流式对话接口 */
-    @GetMapping("/stream/chat")
+    @GetMapping(value = "/stream/chat", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<String> streamChat(@RequestParam(value = "query", defaultValue = "你好") String query,
                                    @RequestParam(value = "chat-id", defaultValue = "1") String chatId,
                                    HttpServletResponse response) {
@@ -151,12 +180,21 @@ public class ChatController {
             response.setHeader("Cache-Control", "no-cache");
             response.setHeader("Connection", "keep-alive");
             
-            return dashScopeChatClient.prompt(query)
-                    .advisors(a->a.param(ChatMemory.CONVERSATION_ID,chatId))
-                    .stream()
-                    .content()
+            // 客户端断开时取消生成，已生成的部分回答补写到记忆；心跳是data为空的事件，客户端拼接回答时为空串，不影响展示
+            ModelRouter.Decision route = route(query);
+            Flux<String> content = llmCallScheduler.stream(LlmLane.INTERACTIVE,
+                    LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS, query),
+                    () -> modelRouter.timed(route, dashScopeChatClient.prompt(query)
+                            .options(routedOptions(route))
+                            .advisors(a->a.param(ChatMemory.CONVERSATION_ID,chatId))
+                            .stream()
+                            .content()));
+            return streamDisconnectInterceptor.cancelOnDisconnect(
+                    InterruptedAnswers.onCancel(content,
+                            partial -> InterruptedAnswers.appendToAdvisedTurn(chatMemory, chatId, query, partial))
                     .doOnError(error -> log.error("Stream chat failed", error))
-                    .onErrorReturn("对话出现错误，请重试");
+                    .onErrorReturn("对话出现错误，请重试")
+                    .contextWrite(ModelCallContext.captureEndpoint()), "");
                     
         } catch (Exception e) {
             log.error("Stream chat setup failed", e);
@@ -192,7 +230,9 @@ public class ChatController {
                             .withTemperature(0.7)
                             .build());
 
-            ChatResponse response = dashScopeChatClient.prompt(chatPrompt).call().chatResponse();
+            ChatResponse response = llmCallScheduler.call(LlmLane.INTERACTIVE,
+                    LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS + IMAGE_INPUT_TOKENS, prompt),
+                    () -> dashScopeChatClient.prompt(chatPrompt).call().chatResponse());
             
             Map<String, Object> result = new HashMap<>();
             result.put("content", response.getResult().getOutput().getText());
@@ -251,7 +291,9 @@ public class ChatController {
                             .build());
 
             // 调用模型进行图片分析
-            ChatResponse response = dashScopeChatClient.prompt(chatPrompt).call().chatResponse();
+            ChatResponse response = llmCallScheduler.call(LlmLane.INTERACTIVE,
+                    LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS + IMAGE_INPUT_TOKENS, prompt),
+                    () -> dashScopeChatClient.prompt(chatPrompt).call().chatResponse());
             
             Map<String, Object> result = new HashMap<>();
             result.put("content", response.getResult().getOutput().getText());
@@ -273,6 +315,24 @@ public class ChatController {
     }
 
 
+    /**
+     * 按问题长度与内容选择模型，简单对话属于通用对话场景
+     */
+    private ModelRouter.Decision route(String query) {
+        return modelRouter.route(ModelRouter.RoutingRequest.builder()
+                .scenario(ConversationScenario.GENERAL_CHAT)
+                .question(query)
+                .estimatedTokens(LlmCallScheduler.estimateTokens(0, query, DEFAULT_PROMPT))
+                .build());
+    }
+
+    private DashScopeChatOptions routedOptions(ModelRouter.Decision route) {
+        return DashScopeChatOptions.builder()
+                .withModel(route.model())
+                .withTopP(TOP_P)
+                .build();
+    }
+
     /**
      * 创建标准错误响应
      */
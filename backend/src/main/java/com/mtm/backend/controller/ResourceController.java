@@ -1,5 +1,6 @@
 package com.mtm.backend.controller;
 
+import com.mtm.backend.Interceptor.StreamDisconnectInterceptor;
 import com.mtm.backend.model.DTO.AudioUploadDTO;
 import com.mtm.backend.model.DTO.BatchUploadDTO;
 import com.mtm.backend.model.DTO.DocumentUploadDTO;
@@ -24,6 +25,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 
 import java.util.Arrays;
@@ -43,6 +45,7 @@ public class ResourceController {
     private final KnowledgeBaseService knowledgeBaseService;
     private final RAGFacadeService ragFacadeService;
     private final FilePreviewService filePreviewService;
+    private final StreamDisconnectInterceptor streamDisconnectInterceptor;
     
     private static final String[] ALLOWED_DOCUMENT_TYPES = {
         "application/pdf",
@@ -536,6 +539,11 @@ public class ResourceController {
                 return ResponseEntity.badRequest().body(createErrorResponse("回答模式必须是detailed、concise或tutorial"));
             }
 
+            // 验证MMR相关性权重
+            if (!queryDTO.isMmrLambdaValid()) {
+                return ResponseEntity.badRequest().body(createErrorResponse("MMR相关性权重必须在0到1之间"));
+            }
+
             // 设置默认值
             if (queryDTO.getTopK() == null) {
                 queryDTO.setTopK(5);
@@ -556,7 +564,7 @@ public class ResourceController {
 
     /** 5.4.2 流式智能问答 */
     @PostMapping(value = "/qa/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<String> ragQueryStream(@RequestBody RAGQueryDTO queryDTO) {
+    public Flux<ServerSentEvent<Object>> ragQueryStream(@RequestBody RAGQueryDTO queryDTO) {
         try {
             // 验证用户登录
             Integer userId = ThreadLocalUtil.get();
@@ -568,13 +576,18 @@ public class ResourceController {
             if (queryDTO.getQuery() == null || queryDTO.getQuery().trim().isEmpty()) {
                 return Flux.error(new RuntimeException("用户问题不能为空"));
             }
+            if (!queryDTO.isMmrLambdaValid()) {
+                return Flux.error(new RuntimeException("MMR相关性权重必须在0到1之间"));
+            }
 
             // 设置默认值
             if (queryDTO.getTopK() == null) {
                 queryDTO.setTopK(5);
             }
 
-            return ragFacadeService.queryStream(queryDTO, userId);
+            // 客户端断开时取消检索与生成；心跳为SSE注释，客户端不展示
+            return streamDisconnectInterceptor.cancelOnDisconnect(ragFacadeService.queryStream(queryDTO, userId),
+                ServerSentEvent.builder().comment("heartbeat").build());
 
         } catch (Exception e) {
             log.error("流式RAG问答失败", e);
@@ -582,6 +595,24 @@ public class ResourceController {
         }
     }
 
+    /** 5.4.3 获取回答的相关问题（回答发出后异步生成） */
+    @GetMapping("/qa/{messageId}/related")
+    public ResponseEntity<?> getRelatedQuestions(@PathVariable String messageId) {
+        try {
+            // 验证用户登录
+            Integer userId = ThreadLocalUtil.get();
+            if (userId == null) {
+                return ResponseEntity.status(401).body(createErrorResponse("用户未登录"));
+            }
+
+            return ResponseEntity.ok(ragFacadeService.getAnswerEnrichment(messageId, userId));
+
+        } catch (Exception e) {
+            log.error("获取相关问题失败", e);
+            return ResponseEntity.internalServerError().body(createErrorResponse("获取相关问题失败: " + e.getMessage()));
+        }
+    }
+
     private Map<String, Object> createErrorResponse(String message) {
         Map<String, Object> error = new HashMap<>();
         error.put("timestamp", new Date().toString());
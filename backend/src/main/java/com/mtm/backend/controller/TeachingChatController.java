@@ -2,6 +2,7 @@ package com.mtm.backend.controller;
 
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
 import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemoryRepository;
+import com.mtm.backend.Interceptor.StreamDisconnectInterceptor;
 import com.mtm.backend.model.DTO.TeachingAdviceDTO;
 import com.mtm.backend.model.DTO.ContentAnalysisDTO;
 import com.mtm.backend.model.DTO.WritingAssistanceDTO;
@@ -16,6 +17,7 @@ import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
@@ -33,9 +35,12 @@ public class TeachingChatController {
     
     private final TeachingChatService teachingChatService;
     private final ChatClient dashScopeChatClient;
+    private final StreamDisconnectInterceptor streamDisconnectInterceptor;
     
-    public TeachingChatController(TeachingChatService teachingChatService, ChatModel chatModel, JdbcTemplate jdbcTemplate) {
+    public TeachingChatController(TeachingChatService teachingChatService, ChatModel chatModel, JdbcTemplate jdbcTemplate,
+                                  StreamDisconnectInterceptor streamDisconnectInterceptor) {
         this.teachingChatService = teachingChatService;
+        this.streamDisconnectInterceptor = streamDisconnectInterceptor;
         
         // 配置专门用于教学场景的ChatClient
         var chatMemoryRepository = MysqlChatMemoryRepository.mysqlBuilder()
@@ -186,7 +191,7 @@ public class TeachingChatController {
     }
     
     /** 3.5 流式智能对话助手接口 */
-    @PostMapping("/assistant/stream")
+    @PostMapping(value = "/assistant/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<String> streamChatWithAssistant(@RequestBody ChatAssistantDTO assistantDTO,
                                                HttpServletResponse response) {
         try {
@@ -206,9 +211,11 @@ public class TeachingChatController {
             response.setHeader("Cache-Control", "no-cache");
             response.setHeader("Connection", "keep-alive");
             
-            return teachingChatService.streamChatWithAssistant(assistantDTO, userId)
-                    .doOnError(error -> log.error("流式对话失败", error))
-                    .onErrorReturn("对话出现错误，请重试");
+            // 客户端断开时取消生成；心跳是data为空的事件，客户端拼接回答时为空串，不影响展示
+            return streamDisconnectInterceptor.cancelOnDisconnect(
+                    teachingChatService.streamChatWithAssistant(assistantDTO, userId)
+                            .doOnError(error -> log.error("流式对话失败", error))
+                            .onErrorReturn("对话出现错误，请重试"), "");
             
         } catch (Exception e) {
             log.error("流式对话助手初始化失败", e);
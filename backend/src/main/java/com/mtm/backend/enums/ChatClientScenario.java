@@ -0,0 +1,31 @@
+package com.mtm.backend.enums;
+
+import lombok.Getter;
+
+/**
+ * 预构建ChatClient的使用场景
+ */
+@Getter
+public enum ChatClientScenario {
+    DEFAULT("default", "通用对话"),
+    RAG("rag", "知识库问答（上下文经Advisor参数传入）"),
+    GENERATION("generation", "教学内容生成"),
+    TEACHING("teaching", "教学助手（带对话记忆）");
+
+    private final String code;
+    private final String description;
+
+    ChatClientScenario(String code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public static ChatClientScenario fromCode(String code) {
+        for (ChatClientScenario scenario : values()) {
+            if (scenario.code.equals(code)) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown chat client scenario code: " + code);
+    }
+}
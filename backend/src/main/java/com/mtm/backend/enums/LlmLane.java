@@ -0,0 +1,29 @@
+package com.mtm.backend.enums;
+
+import lombok.Getter;
+
+/**
+ * 大模型调用调度通道，声明顺序即优先级（靠前的通道优先出队）
+ */
+@Getter
+public enum LlmLane {
+    INTERACTIVE("interactive", "交互式对话（用户在线等待）"),
+    BATCH("batch", "后台批量生成（PPT、习题、讲解、相关问题）");
+
+    private final String code;
+    private final String description;
+
+    LlmLane(String code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public static LlmLane fromCode(String code) {
+        for (LlmLane lane : values()) {
+            if (lane.code.equals(code)) {
+                return lane;
+            }
+        }
+        throw new IllegalArgumentException("Unknown llm lane code: " + code);
+    }
+}
@@ -0,0 +1,31 @@
+package com.mtm.backend.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum RetrievalMode {
+    VECTOR("vector", "向量检索"),
+    LEXICAL("lexical", "全文检索(BM25)"),
+    HYBRID("hybrid", "混合检索(RRF融合)"),
+    AUTO("auto", "自动路由");
+
+    private final String code;
+    private final String description;
+
+    RetrievalMode(String code, String description) {
+        this.code = code;
+        this.description = description;
+    }
+
+    public static RetrievalMode fromCode(String code) {
+        if (code == null || code.isBlank()) {
+            return AUTO;
+        }
+        for (RetrievalMode mode : values()) {
+            if (mode.code.equalsIgnoreCase(code.trim())) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown retrieval mode: " + code);
+    }
+}
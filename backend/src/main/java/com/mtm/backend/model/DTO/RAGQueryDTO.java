@@ -1,7 +1,10 @@
 package com.mtm.backend.model.DTO;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
+import java.util.List;
+
 /**
  * RAG查询DTO
  */
@@ -18,6 +21,11 @@ public class RAGQueryDTO {
      */
     private String knowledgeBaseId;
     
+    /**
+     * 多知识库ID，与knowledgeBaseId合并后并发检索
+     */
+    private List<String> knowledgeBaseIds;
+    
     /**
      * 会话ID
      */
@@ -37,4 +45,22 @@ public class RAGQueryDTO {
      * 检索文档数量
      */
     private Integer topK;
+    
+    /**
+     * 检索模式：vector / lexical / hybrid / auto，默认auto
+     */
+    private String retrievalMode;
+    
+    /**
+     * MMR多样化的相关性权重[0, 1]，越小结果越多样；为空时不做多样化
+     */
+    private Double mmrLambda;
+
+    /**
+     * MMR相关性权重为空或在[0, 1]内
+     */
+    @JsonIgnore
+    public boolean isMmrLambdaValid() {
+        return mmrLambda == null || (mmrLambda >= 0 && mmrLambda <= 1);
+    }
 }
@@ -39,6 +39,11 @@ public class RAGResponseVO {
      */
     private List<String> relatedQuestions;
     
+    /**
+     * 相关问题是否仍在后台生成（可凭messageId获取）
+     */
+    private Boolean relatedQuestionsPending;
+    
     /**
      * 处理时间（秒）
      */
@@ -48,4 +53,9 @@ public class RAGResponseVO {
      * 时间戳
      */
     private Date timestamp;
+
+    /**
+     * 实际使用的模型（由模型路由选择）
+     */
+    private String model;
 }
@@ -22,6 +22,10 @@ import com.mtm.backend.repository.mapper.TeachingResourceMapper;
 import com.mtm.backend.repository.mapper.TranscriptionTaskMapper;
 import com.mtm.backend.repository.mapper.KnowledgeBaseMapper;
 import com.mtm.backend.repository.mapper.KnowledgeBaseResourceMapper;
+import com.mtm.backend.service.knowledge.KnowledgeAccessCache;
+import com.mtm.backend.service.rag.FilteredSearchPlanner;
+import com.mtm.backend.service.rag.SearchResultCache;
+import com.mtm.backend.service.rag.VectorFilter;
 import com.mtm.backend.utils.LocalFileUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,7 +33,6 @@ import com.alibaba.cloud.ai.dashscope.audio.transcription.AudioTranscriptionMode
 import org.springframework.ai.audio.transcription.AudioTranscriptionPrompt;
 import org.springframework.ai.audio.transcription.AudioTranscriptionResponse;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.data.domain.Pageable;
@@ -58,6 +61,9 @@ public class ResourceService {
     private final KnowledgeBaseMapper knowledgeBaseMapper;
     private final KnowledgeBaseResourceMapper knowledgeBaseResourceMapper;
     private final VectorStore vectorStore;
+    private final FilteredSearchPlanner filteredSearchPlanner;
+    private final KnowledgeAccessCache knowledgeAccessCache;
+    private final SearchResultCache searchResultCache;
     private final LocalFileUtil localFileUtil;
     private final AudioTranscriptionModel audioTranscriptionModel;
     
@@ -385,43 +391,38 @@ public class ResourceService {
         try {
             long startTime = System.currentTimeMillis();
 
-            SearchRequest.Builder searchBuilder = SearchRequest.builder()
-                    .query(query)
-                    .topK(topK)
-                    .similarityThreshold(threshold);
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("subject", subject);
+            parameters.put("courseLevel", courseLevel);
+            parameters.put("topK", topK);
+            parameters.put("threshold", threshold);
 
-            List<String> filters = new ArrayList<>();
-            if (subject != null && !subject.trim().isEmpty()) {
-                filters.add("subject == '" + subject + "'");
-            }
-            if (courseLevel != null && !courseLevel.trim().isEmpty()) {
-                filters.add("course_level == '" + courseLevel + "'");
-            }
-
-            if (!filters.isEmpty()) {
-                String filterExpression = String.join(" && ", filters);
-                searchBuilder = searchBuilder.filterExpression(filterExpression);
-            }
+            // 资源检索不限定知识库，按全局索引版本缓存
+            List<Map<String, Object>> results = searchResultCache.getOrCompute("resource", query, parameters, null, null, () -> {
+                // 类型化过滤条件，空值自动忽略；由规划器决定预过滤或后过滤
+                VectorFilter filter = VectorFilter.builder()
+                        .eq("subject", subject)
+                        .eq("course_level", courseLevel)
+                        .build();
+                List<Document> similarDocuments = filteredSearchPlanner.search(query, filter, topK, threshold);
 
-            SearchRequest searchRequest = searchBuilder.build();
-            List<Document> similarDocuments = vectorStore.similaritySearch(searchRequest);
+                return similarDocuments.stream()
+                        .map(doc -> {
+                            Map<String, Object> result = new HashMap<>();
+                            Map<String, Object> resource = new HashMap<>();
+                            resource.put("id", doc.getMetadata().get("resource_id"));
+                            resource.put("title", doc.getMetadata().get("title"));
+                            resource.put("subject", doc.getMetadata().get("subject"));
+                            resource.put("resourceType", doc.getMetadata().get("resource_type"));
 
-            List<Map<String, Object>> results = similarDocuments.stream()
-                    .map(doc -> {
-                        Map<String, Object> result = new HashMap<>();
-                        Map<String, Object> resource = new HashMap<>();
-                        resource.put("id", doc.getMetadata().get("resource_id"));
-                        resource.put("title", doc.getMetadata().get("title"));
-                        resource.put("subject", doc.getMetadata().get("subject"));
-                        resource.put("resourceType", doc.getMetadata().get("resource_type"));
+                            result.put("resource", resource);
+                            result.put("similarity", 0.96);
+                            result.put("relevantContent", doc.getText().substring(0, Math.min(200, doc.getText().length())) + "...");
 
-                        result.put("resource", resource);
-                        result.put("similarity", 0.96);
-                        result.put("relevantContent", doc.getText().substring(0, Math.min(200, doc.getText().length())) + "...");
-
-                        return result;
-                    })
-                    .collect(Collectors.toList());
+                            return result;
+                        })
+                        .collect(Collectors.toList());
+            });
 
             double searchTime = (System.currentTimeMillis() - startTime) / 1000.0;
 
@@ -504,6 +505,7 @@ public class ResourceService {
             }
             
             teachingResourceMapper.deleteById(resourceId);
+            knowledgeAccessCache.evictResource(resourceId);
             
             if ("audio".equals(resource.getResourceType())) {
                 QueryWrapper<TranscriptionTask> taskQuery = new QueryWrapper<>();
@@ -1,7 +1,5 @@
 package com.mtm.backend.service;
 
-import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
-import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemoryRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mtm.backend.model.DTO.TeachingAdviceDTO;
 import com.mtm.backend.model.DTO.ContentAnalysisDTO;
@@ -10,25 +8,31 @@ import com.mtm.backend.model.DTO.ChatAssistantDTO;
 import com.mtm.backend.model.VO.ChatResponseVO;
 import com.mtm.backend.repository.Conversation;
 import com.mtm.backend.repository.mapper.ConversationMapper;
+import com.mtm.backend.enums.ChatClientScenario;
 import com.mtm.backend.enums.ConversationScenario;
+import com.mtm.backend.enums.LlmLane;
+import com.mtm.backend.service.llm.ChatClientRegistry;
+import com.mtm.backend.service.llm.LlmCallScheduler;
+import com.mtm.backend.service.llm.LlmRequestCoalescer;
+import com.mtm.backend.service.llm.InterruptedAnswers;
+import com.mtm.backend.service.llm.ModelCallContext;
+import com.mtm.backend.service.llm.ModelRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
-import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
-import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @RequiredArgsConstructor
@@ -36,9 +40,11 @@ import java.util.UUID;
 public class TeachingChatService {
 
     private final ConversationMapper conversationMapper;
-    private final ChatModel chatModel;
-    private final JdbcTemplate jdbcTemplate;
+    private final ChatClientRegistry chatClientRegistry;
     private final ObjectMapper objectMapper;
+    private final LlmRequestCoalescer llmRequestCoalescer;
+    private final LlmCallScheduler llmCallScheduler;
+    private final ModelRouter modelRouter;
     
     /**
      * 获取教学建议
@@ -56,13 +62,9 @@ public class TeachingChatService {
                 ? UUID.randomUUID().toString().replace("-", "")
                 : "teaching_advice_" + userId;
             
-            // 创建ChatClient
-            ChatClient chatClient = createTeachingChatClient(systemPrompt);
-            
-            // 发送请求
-            ChatResponse response = chatClient.prompt(userQuery)
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .call().chatResponse();
+            // 发送请求（按场景路由模型，交互式通道）
+            ModelRouter.Decision route = route(ConversationScenario.TEACHING_ADVICE, userQuery, systemPrompt);
+            ChatResponse response = callTeaching(route, userQuery, systemPrompt, conversationId);
             
             // 保存对话记录（消息由Spring AI自动管理）
             saveConversation(conversationId, userId, "教学建议对话", "teaching_advice", adviceDTO);
@@ -77,7 +79,7 @@ public class TeachingChatService {
                         "totalTokens", response.getMetadata().getUsage().getTotalTokens()
                     ))
                     .responseTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                    .model("qwen-plus")
+                    .model(route.model())
                     .scenario("teaching_advice")
                     .build();
                     
@@ -101,13 +103,9 @@ public class TeachingChatService {
             // 创建对话ID
             String conversationId = "content_analysis_" + UUID.randomUUID().toString().replace("-", "");
             
-            // 创建ChatClient
-            ChatClient chatClient = createTeachingChatClient(systemPrompt);
-            
-            // 发送请求
-            ChatResponse response = chatClient.prompt(analysisQuery)
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .call().chatResponse();
+            // 发送请求（按场景路由模型，交互式通道）
+            ModelRouter.Decision route = route(ConversationScenario.CONTENT_ANALYSIS, analysisQuery, systemPrompt);
+            ChatResponse response = callTeaching(route, analysisQuery, systemPrompt, conversationId);
             
             // 保存对话记录（消息由Spring AI自动管理）
             saveConversation(conversationId, userId, "课程内容分析", "content_analysis", analysisDTO);
@@ -122,7 +120,7 @@ public class TeachingChatService {
                         "totalTokens", response.getMetadata().getUsage().getTotalTokens()
                     ))
                     .responseTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                    .model("qwen-plus")
+                    .model(route.model())
                     .scenario("content_analysis")
                     .build();
                     
@@ -146,13 +144,9 @@ public class TeachingChatService {
             // 创建对话ID
             String conversationId = "writing_assistance_" + UUID.randomUUID().toString().replace("-", "");
             
-            // 创建ChatClient
-            ChatClient chatClient = createTeachingChatClient(systemPrompt);
-            
-            // 发送请求
-            ChatResponse response = chatClient.prompt(writingQuery)
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .call().chatResponse();
+            // 发送请求（按场景路由模型，交互式通道）
+            ModelRouter.Decision route = route(ConversationScenario.WRITING_ASSISTANCE, writingQuery, systemPrompt);
+            ChatResponse response = callTeaching(route, writingQuery, systemPrompt, conversationId);
             
             // 保存对话记录（消息由Spring AI自动管理）
             saveConversation(conversationId, userId, "学术写作辅助", "writing_assistance", writingDTO);
@@ -167,7 +161,7 @@ public class TeachingChatService {
                         "totalTokens", response.getMetadata().getUsage().getTotalTokens()
                     ))
                     .responseTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                    .model("qwen-plus")
+                    .model(route.model())
                     .scenario("writing_assistance")
                     .build();
                     
@@ -190,13 +184,22 @@ public class TeachingChatService {
                 ? assistantDTO.getConversationId()
                 : "assistant_" + UUID.randomUUID().toString().replace("-", "");
             
-            // 创建ChatClient
-            ChatClient chatClient = createTeachingChatClient(systemPrompt);
-            
-            // 发送请求
-            ChatResponse response = chatClient.prompt(assistantDTO.getMessage())
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .call().chatResponse();
+            // 发送请求；新对话没有历史，相同的在途提问合并为一次调用，继续已有对话的请求不合并
+            ModelRouter.Decision route = route(ConversationScenario.GENERAL_CHAT, assistantDTO.getMessage(), systemPrompt);
+            String coalescingKey = assistantDTO.getConversationId() == null
+                ? LlmRequestCoalescer.key(ChatClientScenario.TEACHING.name(), assistantDTO.getMessage(), null, systemPrompt, route.model())
+                : null;
+            AtomicBoolean executed = new AtomicBoolean();
+            ChatResponse response = llmRequestCoalescer.call(coalescingKey, () -> {
+                executed.set(true);
+                return callTeaching(route, assistantDTO.getMessage(), systemPrompt, conversationId);
+            });
+            if (!executed.get()) {
+                // 合并的请求未经过记忆Advisor（记忆写入了首个请求的对话），手动写入本对话
+                chatClientRegistry.chatMemory().add(conversationId, List.of(
+                        new UserMessage(assistantDTO.getMessage()),
+                        new AssistantMessage(response.getResult().getOutput().getText())));
+            }
 
             // 保存对话记录
             try {
@@ -224,7 +227,7 @@ public class TeachingChatService {
                         "totalTokens", response.getMetadata().getUsage().getTotalTokens()
                     ))
                     .responseTime(LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
-                    .model("qwen-plus")
+                    .model(route.model())
                     .scenario(ConversationScenario.GENERAL_CHAT.getCode())
                     .build();
                     
@@ -247,19 +250,25 @@ public class TeachingChatService {
                 ? assistantDTO.getConversationId()
                 : "assistant_stream_" + UUID.randomUUID().toString().replace("-", "");
             
-            // 创建ChatClient
-            ChatClient chatClient = createTeachingChatClient(systemPrompt);
-            
             // 保存对话记录（消息由Spring AI自动管理）
             if (assistantDTO.getConversationId() == null) {
                 saveConversation(conversationId, userId, "智能对话助手(流式)", "general_chat", assistantDTO);
             }
 
-            // 返回流式响应
-            return chatClient.prompt(assistantDTO.getMessage())
-                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
-                    .stream()
-                    .content();
+            // 返回流式响应（按场景路由模型，交互式通道）；客户端断开取消时已生成的部分回答补写到记忆
+            ModelRouter.Decision route = route(ConversationScenario.GENERAL_CHAT, assistantDTO.getMessage(), systemPrompt);
+            Flux<String> content = llmCallScheduler.stream(LlmLane.INTERACTIVE,
+                    LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS, assistantDTO.getMessage(), systemPrompt),
+                    () -> modelRouter.timed(route, chatClientRegistry.get(ChatClientScenario.TEACHING)
+                            .prompt(assistantDTO.getMessage())
+                            .system(systemPrompt)
+                            .options(chatClientRegistry.options(ChatClientScenario.TEACHING, route.model()))
+                            .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
+                            .stream()
+                            .content()));
+            return InterruptedAnswers.onCancel(content, partial -> InterruptedAnswers.appendToAdvisedTurn(
+                            chatClientRegistry.chatMemory(), conversationId, assistantDTO.getMessage(), partial))
+                    .contextWrite(ModelCallContext.captureEndpoint());
                     
         } catch (Exception e) {
             log.error("流式对话助手失败", e);
@@ -268,28 +277,31 @@ public class TeachingChatService {
     }
     
     // ============ 私有辅助方法 ============
-    
-    private ChatClient createTeachingChatClient(String systemPrompt) {
-        var chatMemoryRepository = MysqlChatMemoryRepository.mysqlBuilder()
-                .jdbcTemplate(jdbcTemplate)
-                .build();
-        var chatMemory = MessageWindowChatMemory.builder()
-                .chatMemoryRepository(chatMemoryRepository)
-                .build();
-        
-        return ChatClient.builder(chatModel)
-                .defaultSystem(systemPrompt)
-                .defaultAdvisors(
-                        new SimpleLoggerAdvisor(),
-                        MessageChatMemoryAdvisor.builder(chatMemory).build()
-                )
-                .defaultOptions(
-                        DashScopeChatOptions.builder()
-                                .withTopP(0.7)
-                                .withTemperature(0.7)
-                                .build()
-                )
-                .build();
+
+    /**
+     * 按会话场景与提示词大小选择模型
+     */
+    private ModelRouter.Decision route(ConversationScenario scenario, String message, String systemPrompt) {
+        return modelRouter.route(ModelRouter.RoutingRequest.builder()
+                .clientScenario(ChatClientScenario.TEACHING)
+                .scenario(scenario)
+                .question(message)
+                .estimatedTokens(LlmCallScheduler.estimateTokens(0, message, systemPrompt))
+                .build());
+    }
+
+    /**
+     * 使用路由选定的模型在交互式通道中调用教学客户端，对话记忆由客户端上的记忆Advisor写入
+     */
+    private ChatResponse callTeaching(ModelRouter.Decision route, String message, String systemPrompt, String conversationId) {
+        return llmCallScheduler.call(LlmLane.INTERACTIVE,
+                LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS, message, systemPrompt),
+                () -> modelRouter.timed(route, () -> chatClientRegistry.get(ChatClientScenario.TEACHING)
+                        .prompt(message)
+                        .system(systemPrompt)
+                        .options(chatClientRegistry.options(ChatClientScenario.TEACHING, route.model()))
+                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId))
+                        .call().chatResponse()));
     }
     
     private String buildTeachingAdviceSystemPrompt(TeachingAdviceDTO adviceDTO) {
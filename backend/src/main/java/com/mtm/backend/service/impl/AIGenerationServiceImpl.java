@@ -1,5 +1,7 @@
 package com.mtm.backend.service.impl;
 
+import com.mtm.backend.enums.ChatClientScenario;
+import com.mtm.backend.enums.LlmLane;
 import com.mtm.backend.model.DTO.ExplanationRequestDTO;
 import com.mtm.backend.model.DTO.PPTGenerationDTO;
 import com.mtm.backend.model.DTO.QuizGenerationDTO;
@@ -7,9 +9,11 @@ import com.mtm.backend.model.VO.TaskResponseVO;
 import com.mtm.backend.service.AIGenerationService;
 import com.mtm.backend.service.PPTGenerationService;
 import com.mtm.backend.service.TaskService;
+import com.mtm.backend.service.llm.ChatClientRegistry;
+import com.mtm.backend.service.llm.LlmCallScheduler;
+import com.mtm.backend.service.llm.ModelRouter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
@@ -30,7 +34,12 @@ import org.apache.poi.xwpf.usermodel.XWPFRun;
 @Slf4j
 public class AIGenerationServiceImpl implements AIGenerationService {
 
-    private final ChatClient.Builder chatClientBuilder;
+    /** 生成PPT、习题、讲解文档时预估的输出令牌数 */
+    private static final int GENERATION_OUTPUT_TOKENS = 4096;
+
+    private final ChatClientRegistry chatClientRegistry;
+    private final LlmCallScheduler llmCallScheduler;
+    private final ModelRouter modelRouter;
     private final TaskService taskService;
     private final PPTGenerationService pptGenerationService;
     
@@ -73,14 +82,8 @@ public class AIGenerationServiceImpl implements AIGenerationService {
             // 更新任务状态
             taskService.updateTaskStatus(taskId, "processing", 30, "正在调用AI模型...");
             
-            // 创建ChatClient并生成内容
-            ChatClient chatClient = chatClientBuilder
-                    .defaultSystem(systemPrompt)
-                    .build();
-            
-            String explanation = chatClient.prompt(userQuery)
-                    .call()
-                    .content();
+            // 调用AI模型（路由选择模型，批量通道执行）
+            String explanation = callGeneration(userQuery, systemPrompt);
             
             // 更新任务状态
             taskService.updateTaskStatus(taskId, "processing", 60, "正在生成讲解文档...");
@@ -220,14 +223,8 @@ public class AIGenerationServiceImpl implements AIGenerationService {
             // 更新任务状态
             taskService.updateTaskStatus(taskId, "processing", 30, "正在调用AI模型生成PPT...");
             
-            // 创建ChatClient并生成内容
-            ChatClient chatClient = chatClientBuilder
-                    .defaultSystem(systemPrompt)
-                    .build();
-            
-            String pptContent = chatClient.prompt(userQuery)
-                    .call()
-                    .content();
+            // 调用AI模型（路由选择模型，批量通道执行）
+            String pptContent = callGeneration(userQuery, systemPrompt);
             
             // 更新任务状态
             taskService.updateTaskStatus(taskId, "processing", 60, "正在生成PPT文件...");
@@ -279,14 +276,8 @@ public class AIGenerationServiceImpl implements AIGenerationService {
             // 更新任务状态
             taskService.updateTaskStatus(taskId, "processing", 30, "正在调用AI模型生成习题...");
             
-            // 创建ChatClient并生成内容
-            ChatClient chatClient = chatClientBuilder
-                    .defaultSystem(systemPrompt)
-                    .build();
-            
-            String quizContent = chatClient.prompt(userQuery)
-                    .call()
-                    .content();
+            // 调用AI模型（路由选择模型，批量通道执行）
+            String quizContent = callGeneration(userQuery, systemPrompt);
             
             // 更新任务状态
             taskService.updateTaskStatus(taskId, "processing", 60, "正在生成习题文档...");
@@ -404,6 +395,25 @@ public class AIGenerationServiceImpl implements AIGenerationService {
         return prompt.toString();
     }
     
+    /**
+     * 调用生成场景客户端：模型由路由选择（生成任务走大模型），批量通道执行
+     */
+    private String callGeneration(String userQuery, String systemPrompt) {
+        int estimatedTokens = LlmCallScheduler.estimateTokens(GENERATION_OUTPUT_TOKENS, userQuery, systemPrompt);
+        ModelRouter.Decision route = modelRouter.route(ModelRouter.RoutingRequest.builder()
+                .clientScenario(ChatClientScenario.GENERATION)
+                .question(userQuery)
+                .estimatedTokens(estimatedTokens)
+                .build());
+        return llmCallScheduler.call(LlmLane.BATCH, estimatedTokens,
+                () -> modelRouter.timed(route, () -> chatClientRegistry.get(ChatClientScenario.GENERATION)
+                        .prompt(userQuery)
+                        .system(systemPrompt)
+                        .options(chatClientRegistry.options(ChatClientScenario.GENERATION, route.model()))
+                        .call()
+                        .content()));
+    }
+
     private String buildQuizQuery(QuizGenerationDTO request) {
         return "请为主题\"" + request.getTopic() + "\"出一套完整的习题。";
     }
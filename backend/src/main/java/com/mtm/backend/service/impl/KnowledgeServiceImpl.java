@@ -4,14 +4,18 @@ import com.mtm.backend.model.VO.KnowledgeItemVO;
 import com.mtm.backend.model.VO.PaginationVO;
 import com.mtm.backend.model.VO.UploadResultVO;
 import com.mtm.backend.service.KnowledgeService;
+import com.mtm.backend.service.rag.FilteredSearchPlanner;
+import com.mtm.backend.service.rag.SearchResultCache;
+import com.mtm.backend.service.rag.VectorFilter;
+import com.mtm.backend.service.rag.VectorService;
 import com.mtm.backend.utils.LocalFileUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
@@ -28,7 +32,11 @@ import java.util.stream.Collectors;
 public class KnowledgeServiceImpl implements KnowledgeService {
     
     private final VectorStore vectorStore;
+    private final VectorService vectorService;
+    private final FilteredSearchPlanner filteredSearchPlanner;
+    private final SearchResultCache searchResultCache;
     private final LocalFileUtil localFileUtil;
+    private final TokenCountEstimator tokenCountEstimator;
     
     @Override
     public PaginationVO<KnowledgeItemVO> getKnowledgeItems(int page, int size, String subject, 
@@ -36,53 +44,45 @@ public class KnowledgeServiceImpl implements KnowledgeService {
         try {
             log.info("获取知识库项目列表，用户ID：{}，页码：{}，大小：{}", userId, page, size);
             
-            // 构建搜索请求
-            SearchRequest.Builder searchBuilder = SearchRequest.builder()
-                    .topK(size * 2) // 获取更多结果用于分页
-                    .similarityThreshold(0.1);
-            
-            // 添加搜索条件
-            if (search != null && !search.trim().isEmpty()) {
-                searchBuilder.query(search);
-            } else {
-                searchBuilder.query("*"); // 获取所有文档
-            }
-            
-            // 添加过滤条件
-            List<String> filters = new ArrayList<>();
-            filters.add("user_id == " + userId);
-            
+            // 过滤条件（均为索引字段，直接下推到Redis）
+            Map<String, Object> filters = new LinkedHashMap<>();
+            filters.put("user_id", userId);
             if (subject != null && !subject.trim().isEmpty()) {
-                filters.add("subject == '" + subject + "'");
+                filters.put("subject", subject);
             }
-            
             if (category != null && !category.trim().isEmpty()) {
-                filters.add("category == '" + category + "'");
+                filters.put("category", category);
             }
             
-            if (!filters.isEmpty()) {
-                searchBuilder.filterExpression(String.join(" && ", filters));
+            long total;
+            List<Document> pageDocuments;
+            if (search != null && !search.trim().isEmpty()) {
+                // 有搜索词时按语义相关度排序，取到当前页为止的结果再切片；
+                // 相关度检索没有精确总数，多取一条判断是否还有下一页：有则total为已知下界（总页数为当前页+1），否则为准确值
+                VectorFilter.Builder filter = VectorFilter.builder();
+                filters.forEach(filter::eq);
+                List<Document> documents = filteredSearchPlanner.search(search, filter.build(), page * size + 1, 0.1);
+                int start = Math.min((page - 1) * size, documents.size());
+                pageDocuments = documents.subList(start, Math.min(start + size, documents.size()));
+                total = documents.size();
+            } else {
+                // 纯浏览：索引原生分页，不调用嵌入模型
+                VectorService.ChunkPage chunkPage = vectorService.listDocuments(filters, page, size);
+                pageDocuments = chunkPage.getItems();
+                total = chunkPage.getTotal();
             }
             
-            // 执行搜索
-            List<Document> documents = vectorStore.similaritySearch(searchBuilder.build());
-            
             // 转换为VO对象
-            List<KnowledgeItemVO> items = documents.stream()
+            List<KnowledgeItemVO> pageItems = pageDocuments.stream()
                     .map(this::convertToKnowledgeItemVO)
                     .collect(Collectors.toList());
             
-            // 手动分页
-            int start = (page - 1) * size;
-            int end = Math.min(start + size, items.size());
-            List<KnowledgeItemVO> pageItems = items.subList(start, end);
-            
             return PaginationVO.<KnowledgeItemVO>builder()
                     .items(pageItems)
-                    .total(items.size())
+                    .total(total)
                     .page(page)
                     .size(size)
-                    .totalPages((int) Math.ceil((double) items.size() / size))
+                    .totalPages((int) Math.ceil((double) total / size))
                     .build();
                     
         } catch (Exception e) {
@@ -111,6 +111,7 @@ public class KnowledgeServiceImpl implements KnowledgeService {
             // 存储到向量数据库
             if (!documents.isEmpty()) {
                 vectorStore.add(documents);
+                searchResultCache.invalidateUser(userId);
                 log.info("成功向量化 {} 个文档块", documents.size());
             }
             
@@ -138,6 +139,7 @@ public class KnowledgeServiceImpl implements KnowledgeService {
             
             // 从向量数据库删除
             vectorStore.delete(List.of(itemId));
+            searchResultCache.invalidateUser(userId);
             
             // TODO: 如果需要删除本地文件，可以在这里添加逻辑
             // 需要先从向量数据库查询文件路径，然后调用 localFileUtil.deleteFile()
@@ -169,6 +171,7 @@ public class KnowledgeServiceImpl implements KnowledgeService {
             
             // 重新添加到向量数据库
             vectorStore.add(List.of(document));
+            searchResultCache.invalidateUser(userId);
             
             return convertToKnowledgeItemVO(document);
             
@@ -209,6 +212,8 @@ public class KnowledgeServiceImpl implements KnowledgeService {
             Document doc = documents.get(i);
             doc.getMetadata().put("id", fileId + "_chunk_" + i);
             doc.getMetadata().put("file_id", fileId);
+            doc.getMetadata().put("chunk_index", i);
+            doc.getMetadata().put("token_count", tokenCountEstimator.estimate(doc.getText()));
             doc.getMetadata().put("source", file.getOriginalFilename());
             doc.getMetadata().put("file_path", filePath); // 本地文件路径
             doc.getMetadata().put("file_url", localFileUtil.generateUrl(filePath)); // 访问URL
@@ -227,7 +232,7 @@ public class KnowledgeServiceImpl implements KnowledgeService {
         Map<String, Object> metadata = document.getMetadata();
         
         return KnowledgeItemVO.builder()
-                .id((String) metadata.get("id"))
+                .id((String) metadata.getOrDefault("id", document.getId()))
                 .title((String) metadata.getOrDefault("title", ""))
                 .content(document.getText()) // 修改为 getText()
                 .source((String) metadata.getOrDefault("source", ""))
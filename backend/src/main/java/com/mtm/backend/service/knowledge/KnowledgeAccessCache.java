@@ -0,0 +1,170 @@
+package com.mtm.backend.service.knowledge;
+
+import com.mtm.backend.repository.mapper.KnowledgeBaseMapper;
+import com.mtm.backend.repository.mapper.TeachingResourceMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 知识库/资源归属缓存 - RAG热路径上的权限校验
+ * 归属关系在进程内按需加载，命中时不访问数据库；
+ * 知识库或资源被删除、归属变化时通过Redis发布订阅通知集群内所有实例失效对应条目
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class KnowledgeAccessCache implements MessageListener {
+
+    /** 失效通知频道，消息格式为 kb:<id> 或 resource:<id> */
+    public static final String INVALIDATION_CHANNEL = "acl:invalidate";
+
+    private static final String KNOWLEDGE_BASE_SCOPE = "kb:";
+    private static final String RESOURCE_SCOPE = "resource:";
+
+    /** 条目最长保留时间，防止失效消息丢失时长期使用旧归属 */
+    private static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final TeachingResourceMapper teachingResourceMapper;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final Map<String, Owner> knowledgeBaseOwners = new ConcurrentHashMap<>();
+    private final Map<String, Owner> resourceOwners = new ConcurrentHashMap<>();
+
+    /** 每次失效递增；加载期间发生过失效的结果不写入缓存，避免删除与加载交错时留下旧条目 */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+    }
+
+    /**
+     * 校验用户对一组知识库的访问权限，未缓存的知识库一次批量加载
+     */
+    public void checkKnowledgeBaseAccess(Collection<String> knowledgeBaseIds, Integer userId) {
+        Map<String, Owner> owners = resolve(knowledgeBaseOwners, knowledgeBaseIds, missing ->
+            knowledgeBaseMapper.selectBatchIds(missing).stream()
+                .collect(HashMap::new, (map, kb) -> map.put(kb.getId(), kb.getUserId()), Map::putAll));
+        for (String knowledgeBaseId : knowledgeBaseIds) {
+            Owner owner = owners.get(knowledgeBaseId);
+            if (owner == null) {
+                throw new RuntimeException("知识库不存在: " + knowledgeBaseId);
+            }
+            if (!Objects.equals(owner.userId(), userId)) {
+                throw new RuntimeException("无权访问该知识库: " + knowledgeBaseId);
+            }
+        }
+    }
+
+    /**
+     * 资源是否存在且属于该用户
+     */
+    public boolean canAccessResource(String resourceId, Integer userId) {
+        Owner owner = resolve(resourceOwners, List.of(resourceId), missing ->
+            teachingResourceMapper.selectBatchIds(missing).stream()
+                .collect(HashMap::new, (map, resource) -> map.put(resource.getId(), resource.getUserId()), Map::putAll))
+            .get(resourceId);
+        return owner != null && Objects.equals(owner.userId(), userId);
+    }
+
+    /**
+     * 知识库删除或归属变化后调用，通知所有实例
+     */
+    public void evictKnowledgeBase(String knowledgeBaseId) {
+        publish(KNOWLEDGE_BASE_SCOPE + knowledgeBaseId);
+    }
+
+    /**
+     * 资源删除或归属变化后调用，通知所有实例
+     */
+    public void evictResource(String resourceId) {
+        publish(RESOURCE_SCOPE + resourceId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        evictLocal(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    // ============ 私有工具方法 ============
+
+    /**
+     * 读取缓存的归属，缺失或过期的ID批量加载；不存在的ID不缓存
+     */
+    private Map<String, Owner> resolve(Map<String, Owner> cache, Collection<String> ids,
+                                       Function<List<String>, Map<String, Integer>> loader) {
+        long now = System.currentTimeMillis();
+        Map<String, Owner> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Owner owner = cache.get(id);
+            if (owner != null && now - owner.loadedAt() < MAX_AGE_MILLIS) {
+                result.put(id, owner);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long generation = invalidations.get();
+        Map<String, Integer> loaded = loader.apply(missing);
+        if (cache.size() + loaded.size() > MAX_ENTRIES) {
+            log.debug("归属缓存超出容量，清空 {} 条", cache.size());
+            cache.clear();
+        }
+        loaded.forEach((id, userId) -> {
+            Owner owner = new Owner(userId, now);
+            result.put(id, owner);
+            if (invalidations.get() == generation) {
+                cache.put(id, owner);
+            }
+        });
+        return result;
+    }
+
+    private void publish(String entry) {
+        // 先失效本实例，即使Redis不可用也保证本实例立即生效
+        evictLocal(entry);
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, entry);
+        } catch (Exception e) {
+            log.error("发布归属缓存失效通知失败: {}，其他实例将在 {} 分钟内过期", entry,
+                TimeUnit.MILLISECONDS.toMinutes(MAX_AGE_MILLIS), e);
+        }
+    }
+
+    private void evictLocal(String entry) {
+        invalidations.incrementAndGet();
+        if (entry.startsWith(KNOWLEDGE_BASE_SCOPE)) {
+            knowledgeBaseOwners.remove(entry.substring(KNOWLEDGE_BASE_SCOPE.length()));
+        } else if (entry.startsWith(RESOURCE_SCOPE)) {
+            resourceOwners.remove(entry.substring(RESOURCE_SCOPE.length()));
+        } else {
+            log.warn("无法识别的归属缓存失效消息: {}", entry);
+            return;
+        }
+        log.debug("归属缓存失效: {}", entry);
+    }
+
+    private record Owner(Integer userId, long loadedAt) {
+    }
+}
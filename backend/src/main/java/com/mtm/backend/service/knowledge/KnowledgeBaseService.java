@@ -37,6 +37,7 @@ public class KnowledgeBaseService {
     private final TeachingResourceMapper teachingResourceMapper;
     private final DocumentService documentService;
     private final VectorService vectorService;
+    private final KnowledgeAccessCache knowledgeAccessCache;
 
     /**
      * 创建知识库
@@ -221,6 +222,7 @@ public class KnowledgeBaseService {
             
             // 删除数据库记录
             knowledgeBaseMapper.deleteById(knowledgeBaseId);
+            knowledgeAccessCache.evictKnowledgeBase(knowledgeBaseId);
             
             log.info("成功删除知识库: {}", knowledgeBaseId);
             
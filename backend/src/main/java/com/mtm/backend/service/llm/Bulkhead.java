@@ -0,0 +1,75 @@
+package com.mtm.backend.service.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下游并发隔离（信号量）
+ * 调用前获取许可，超过上限的调用在调用线程上等待，等待超时即失败，不无限排队；
+ * 虚拟线程模式下等待不占用平台线程
+ */
+public class Bulkhead {
+
+    public static final String WAIT_TIMER = "downstream.bulkhead.wait";
+    public static final String REJECTED_COUNTER = "downstream.bulkhead.rejected";
+    public static final String IN_USE_GAUGE = "downstream.bulkhead.in.use";
+
+    private final String name;
+    private final int maxConcurrency;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public Bulkhead(String name, int maxConcurrency, long acquireTimeoutMs, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        // 公平模式：先到先得，避免个别调用长时间饥饿
+        this.permits = new Semaphore(maxConcurrency, true);
+        this.waitTimer = Timer.builder(WAIT_TIMER)
+            .description("等待下游调用许可的时间")
+            .tag("downstream", name)
+            .register(meterRegistry);
+        this.rejected = Counter.builder(REJECTED_COUNTER)
+            .description("等待许可超时被拒绝的下游调用数")
+            .tag("downstream", name)
+            .register(meterRegistry);
+        Gauge.builder(IN_USE_GAUGE, this, Bulkhead::inUse)
+            .description("正在进行的下游调用数")
+            .tag("downstream", name)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 获取一个许可，等待超时抛出异常；成功后必须调用 {@link #release()}
+     */
+    public void acquire() {
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待" + name + "调用许可被中断");
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (!acquired) {
+            rejected.increment();
+            throw new RuntimeException(name + "调用并发已满（上限" + maxConcurrency + "），等待" + acquireTimeoutMs + "ms后仍无空闲许可");
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public int inUse() {
+        return maxConcurrency - permits.availablePermits();
+    }
+}
@@ -0,0 +1,81 @@
+package com.mtm.backend.service.llm;
+
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemoryRepository;
+import com.mtm.backend.enums.ChatClientScenario;
+import com.mtm.backend.service.rag.PreparedContextAdvisor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
+import org.springframework.ai.chat.client.advisor.SimpleLoggerAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 按场景预构建的ChatClient注册表
+ * 每个场景启动时用独立的Builder构建一次，之后只读共享；不再在请求中修改注入的共享Builder（会导致Advisor累积）
+ * 或每次重新构建客户端。系统提示词、会话ID、上下文文档等请求级数据通过 .system()/Advisor参数 传入
+ */
+@Component
+@Slf4j
+public class ChatClientRegistry {
+
+    private final Map<ChatClientScenario, ChatClient> clients = new EnumMap<>(ChatClientScenario.class);
+    private final ChatMemory chatMemory;
+
+    public ChatClientRegistry(ObjectProvider<ChatClient.Builder> chatClientBuilders,
+                              MysqlChatMemoryRepository chatMemoryRepository) {
+        // ChatClient.Builder为原型Bean，每次getObject()得到一个新的Builder，场景之间互不影响
+        clients.put(ChatClientScenario.DEFAULT, chatClientBuilders.getObject().build());
+
+        clients.put(ChatClientScenario.RAG, chatClientBuilders.getObject()
+            .defaultAdvisors(new PreparedContextAdvisor())
+            .build());
+
+        clients.put(ChatClientScenario.GENERATION, chatClientBuilders.getObject().build());
+
+        chatMemory = MessageWindowChatMemory.builder()
+            .chatMemoryRepository(chatMemoryRepository)
+            .build();
+        clients.put(ChatClientScenario.TEACHING, chatClientBuilders.getObject()
+            .defaultAdvisors(
+                new SimpleLoggerAdvisor(),
+                MessageChatMemoryAdvisor.builder(chatMemory).build())
+            .defaultOptions(options(ChatClientScenario.TEACHING, null))
+            .build());
+
+        log.info("ChatClient注册表初始化完成: {}", clients.keySet());
+    }
+
+    public ChatClient get(ChatClientScenario scenario) {
+        return clients.get(scenario);
+    }
+
+    /**
+     * 场景的调用选项并指定模型，供路由后的请求通过 .options() 传入
+     * 请求级选项会整体替换客户端默认选项，因此场景自身的采样参数也在这里一并给出；model为null时使用配置的默认模型
+     */
+    public ChatOptions options(ChatClientScenario scenario, String model) {
+        DashScopeChatOptions.DashscopeChatOptionsBuilder builder = DashScopeChatOptions.builder();
+        if (model != null) {
+            builder.withModel(model);
+        }
+        if (scenario == ChatClientScenario.TEACHING) {
+            builder.withTopP(0.7).withTemperature(0.7);
+        }
+        return builder.build();
+    }
+
+    /**
+     * TEACHING场景记忆Advisor使用的会话记忆，供未经过Advisor的回合（如合并的请求）手动写入
+     */
+    public ChatMemory chatMemory() {
+        return chatMemory;
+    }
+}
@@ -0,0 +1,207 @@
+package com.mtm.backend.service.llm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.retry.NonTransientAiException;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 模型调用熔断器
+ * CLOSED：正常放行，连续失败达到阈值后打开；
+ * OPEN：直接拒绝调用（快速失败），冷却时间过后进入HALF_OPEN；
+ * HALF_OPEN：只放行一个试探调用，成功则关闭，失败则重新打开。
+ * 后台健康探测的结果也会反馈到熔断器：探测成功可提前结束冷却，探测失败会延长冷却。
+ * 延迟SLO：最近 {@value #SLOW_WINDOW_SIZE} 次成功调用中超过慢调用阈值的比例达到一半时同样打开，
+ * 在服务变慢、线程池被长时间占满之前就开始快速失败；半开试探调用过慢也会重新打开
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /** 慢调用统计窗口 */
+    static final int SLOW_WINDOW_SIZE = 20;
+
+    /** 窗口内样本数达到该值才按慢调用比例判定 */
+    private static final int SLOW_MIN_CALLS = 10;
+
+    private static final double SLOW_RATE_THRESHOLD = 0.5;
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final long slowCallMillis;
+    private final boolean[] slowWindow = new boolean[SLOW_WINDOW_SIZE];
+    private int slowWindowCount;
+    private int slowWindowIndex;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+    private volatile long lastSuccessAt;
+    private volatile String lastFailure;
+
+    /**
+     * @param slowCallThreshold 超过该耗时的成功调用记为慢调用
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Duration slowCallThreshold) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openDuration.toMillis();
+        this.slowCallMillis = slowCallThreshold.toMillis();
+    }
+
+    /**
+     * 申请一次调用许可，熔断期间抛出 {@link CallNotPermittedException}
+     */
+    public synchronized void acquirePermission() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            transition(State.HALF_OPEN);
+        }
+        switch (state) {
+            case CLOSED -> {
+            }
+            case HALF_OPEN -> {
+                if (trialInFlight) {
+                    throw new CallNotPermittedException(name);
+                }
+                trialInFlight = true;
+            }
+            default -> throw new CallNotPermittedException(name);
+        }
+    }
+
+    /**
+     * 记录一次成功调用
+     *
+     * @param latencyMillis 用于延迟SLO判定的耗时（流式调用为首个片段的耗时）
+     */
+    public synchronized void onSuccess(long latencyMillis) {
+        lastSuccessAt = System.currentTimeMillis();
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        boolean slow = latencyMillis > slowCallMillis;
+        if (state == State.HALF_OPEN && slow) {
+            lastFailure = "试探调用过慢: " + latencyMillis + "ms";
+            open();
+            return;
+        }
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+            return;
+        }
+        recordLatency(slow);
+        if (slowWindowCount >= SLOW_MIN_CALLS && slowCalls >= slowWindowCount * SLOW_RATE_THRESHOLD) {
+            lastFailure = "慢调用比例过高: " + slowCalls + "/" + slowWindowCount + " 超过 " + slowCallMillis + "ms";
+            open();
+        }
+    }
+
+    /**
+     * 记录一次失败；请求本身有误（4xx类非瞬时错误）不代表服务不可用，不计入
+     */
+    public synchronized void onFailure(Throwable error) {
+        if (error instanceof CallNotPermittedException) {
+            return;
+        }
+        trialInFlight = false;
+        if (error instanceof NonTransientAiException) {
+            return;
+        }
+        lastFailure = error.getClass().getSimpleName() + ": " + error.getMessage();
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * 调用未完成就被取消（如客户端断开），释放试探许可，不计成败
+     */
+    public synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    /**
+     * 后台探测成功：若处于熔断冷却中，提前进入半开状态放行试探调用
+     */
+    public synchronized void onProbeSuccess() {
+        if (state == State.OPEN) {
+            transition(State.HALF_OPEN);
+        }
+    }
+
+    /**
+     * 后台探测失败：等同一次调用失败，熔断中则重新计算冷却时间
+     */
+    public void onProbeFailure(String reason) {
+        onFailure(new IllegalStateException("健康探测失败: " + reason));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 最近一次调用成功的时间戳，从未成功时为0
+     */
+    public long getLastSuccessAt() {
+        return lastSuccessAt;
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    public long getSlowCallMillis() {
+        return slowCallMillis;
+    }
+
+    private void open() {
+        openedAt = System.currentTimeMillis();
+        if (state != State.OPEN) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void recordLatency(boolean slow) {
+        if (slowWindowCount == SLOW_WINDOW_SIZE && slowWindow[slowWindowIndex]) {
+            slowCalls--;
+        }
+        slowWindow[slowWindowIndex] = slow;
+        if (slow) {
+            slowCalls++;
+        }
+        slowWindowIndex = (slowWindowIndex + 1) % SLOW_WINDOW_SIZE;
+        slowWindowCount = Math.min(slowWindowCount + 1, SLOW_WINDOW_SIZE);
+    }
+
+    private void transition(State next) {
+        log.warn("熔断器[{}]状态变化: {} -> {}", name, state, next);
+        state = next;
+        trialInFlight = false;
+        // 状态变化后重新统计慢调用
+        Arrays.fill(slowWindow, false);
+        slowWindowCount = 0;
+        slowWindowIndex = 0;
+        slowCalls = 0;
+    }
+
+    /**
+     * 熔断期间拒绝调用
+     */
+    public static class CallNotPermittedException extends RuntimeException {
+        public CallNotPermittedException(String name) {
+            super("模型服务暂不可用（" + name + " 熔断中），请稍后重试");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.mtm.backend.service.llm;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+
+/**
+ * DashScope后台健康探测
+ * 按固定间隔刷新内存中的健康状态，健康检查端点与就绪探针只读取缓存结果；
+ * 近期有真实调用成功且熔断器关闭时不发起探测，探测使用不计费的模型列表接口。
+ * 探测结果反馈给模型熔断器；llm.health-probe.enabled=false 时不主动探测（压测等无外网环境）
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DashScopeHealthProber {
+
+    private static final long PROBE_INTERVAL_MS = 30_000;
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(3);
+
+    /** OpenAI兼容模式的模型列表接口，只校验连通性与凭证，不产生调用费用 */
+    private static final String PROBE_URL = "https://dashscope.aliyuncs.com/compatible-mode/v1/models";
+
+    private final WebClient dashScopeWebClient;
+    private final ModelCircuitBreakers modelCircuitBreakers;
+
+    @Value("${llm.health-probe.enabled:true}")
+    private boolean enabled;
+
+    private volatile ProbeResult lastResult;
+
+    @Scheduled(fixedDelay = PROBE_INTERVAL_MS)
+    public void probe() {
+        long now = System.currentTimeMillis();
+        if (!enabled) {
+            lastResult = new ProbeResult(true, "主动探测已关闭", now, 0, true);
+            return;
+        }
+        CircuitBreaker chat = modelCircuitBreakers.chat();
+        CircuitBreaker embedding = modelCircuitBreakers.embedding();
+        if (chat.getState() == CircuitBreaker.State.CLOSED && embedding.getState() == CircuitBreaker.State.CLOSED
+                && now - Math.min(chat.getLastSuccessAt(), embedding.getLastSuccessAt()) < PROBE_INTERVAL_MS) {
+            lastResult = new ProbeResult(true, "近期模型调用成功", now, 0, true);
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        try {
+            dashScopeWebClient.get()
+                .uri(PROBE_URL)
+                .retrieve()
+                .toBodilessEntity()
+                .timeout(PROBE_TIMEOUT)
+                .block();
+            lastResult = new ProbeResult(true, "DashScope API连接正常", now, System.currentTimeMillis() - startTime, false);
+            chat.onProbeSuccess();
+            embedding.onProbeSuccess();
+
+        } catch (WebClientResponseException e) {
+            String message = "DashScope API返回 " + e.getStatusCode().value();
+            lastResult = new ProbeResult(false, message, now, System.currentTimeMillis() - startTime, false);
+            // 4xx（如凭证错误）不是服务故障，不反馈给熔断器
+            if (e.getStatusCode().is5xxServerError()) {
+                chat.onProbeFailure(message);
+                embedding.onProbeFailure(message);
+            }
+            log.warn("DashScope健康探测失败: {}", message);
+
+        } catch (Exception e) {
+            String message = "DashScope API连接异常: " + e.getMessage();
+            lastResult = new ProbeResult(false, message, now, System.currentTimeMillis() - startTime, false);
+            chat.onProbeFailure(message);
+            embedding.onProbeFailure(message);
+            log.warn("DashScope健康探测失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 最近一次探测结果，尚未探测时为null
+     */
+    public ProbeResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * 探测正常且对话模型未熔断
+     */
+    public boolean isAvailable() {
+        ProbeResult result = lastResult;
+        return result != null && result.up() && modelCircuitBreakers.chat().getState() != CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * 探测结果
+     *
+     * @param passive 为true表示依据近期真实调用判定，未发起探测请求
+     */
+    public record ProbeResult(boolean up, String message, long checkedAt, long latencyMs, boolean passive) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.mtm.backend.service.llm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 被中断的流式回答
+ * 客户端断开后流被取消，记忆Advisor只在流正常结束时写入回答，会话记忆里会留下没有回答的用户消息，
+ * 下一轮对话出现连续两条用户消息。这里在取消时把已生成的部分回答加上中断标记写入记忆，保持问答成对
+ */
+@Slf4j
+public final class InterruptedAnswers {
+
+    public static final String INTERRUPTED_MARK = "（回答已中断）";
+
+    private InterruptedAnswers() {
+    }
+
+    /**
+     * 累积流中的文本片段，流被取消时在后台线程上把部分回答交给persist（取消发生在容器线程上，不在其上写库）
+     */
+    public static Flux<String> onCancel(Flux<String> stream, Consumer<String> persist) {
+        return Flux.defer(() -> {
+            StringBuffer partial = new StringBuffer();
+            return stream
+                .doOnNext(partial::append)
+                .doOnCancel(() -> Schedulers.boundedElastic().schedule(() -> persist.accept(partial.toString())));
+        });
+    }
+
+    /**
+     * 部分回答加上中断标记
+     */
+    public static String mark(String partial) {
+        return partial == null || partial.isEmpty() ? INTERRUPTED_MARK : partial + INTERRUPTED_MARK;
+    }
+
+    /**
+     * 为记忆Advisor管理的一轮对话补写部分回答：仅当记忆最后一条是本轮的用户消息时写入，
+     * 取消发生在Advisor写入用户消息之前（如仍在调度队列中）时记忆里没有这一轮，不写入
+     */
+    public static void appendToAdvisedTurn(ChatMemory chatMemory, String conversationId, String question, String partial) {
+        try {
+            List<Message> messages = chatMemory.get(conversationId);
+            if (messages.isEmpty()
+                || !(messages.get(messages.size() - 1) instanceof UserMessage last)
+                || !question.equals(last.getText())) {
+                return;
+            }
+            chatMemory.add(conversationId, new AssistantMessage(mark(partial)));
+            log.debug("已写入被中断的部分回答: conversationId={}, length={}", conversationId, partial.length());
+        } catch (Exception e) {
+            log.warn("写入被中断的部分回答失败: conversationId={}, {}", conversationId, e.getMessage());
+        }
+    }
+}
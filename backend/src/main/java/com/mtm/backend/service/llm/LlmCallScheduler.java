@@ -0,0 +1,302 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.config.LlmSchedulerConfig;
+import com.mtm.backend.enums.LlmLane;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用调度器
+ * 所有对话模型调用按通道排队：通道按优先级出队，排队中的交互式请求总是先于排队中的批量任务获得执行许可；
+ * 每个通道有独立的并发上限，全局并发上限与全进程共享的令牌桶预算约束所有通道。
+ * 高优先级通道达到自身并发上限时，空闲的全局并发让给低优先级通道（不浪费配额）；
+ * 低优先级通道只能在令牌桶余量高于其保留比例时取用令牌，为交互式请求保留突发预算
+ */
+@Component
+@Slf4j
+public class LlmCallScheduler {
+
+    public static final String QUEUE_WAIT_TIMER = "llm.scheduler.queue.wait";
+
+    /** 估算令牌数时默认的输出长度 */
+    public static final int DEFAULT_OUTPUT_TOKENS = 1024;
+
+    private final LlmSchedulerConfig config;
+    private final Map<LlmLane, ArrayDeque<Waiter>> queues = new EnumMap<>(LlmLane.class);
+    private final Map<LlmLane, Integer> running = new EnumMap<>(LlmLane.class);
+    private final Map<LlmLane, Timer> queueWaitTimers = new EnumMap<>(LlmLane.class);
+    private final ScheduledExecutorService refillTimer;
+
+    private int runningTotal;
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean refillScheduled;
+
+    public LlmCallScheduler(LlmSchedulerConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.tokens = config.getTokensPerMinute();
+        this.lastRefillNanos = System.nanoTime();
+        this.refillTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-scheduler-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (LlmLane lane : LlmLane.values()) {
+            queues.put(lane, new ArrayDeque<>());
+            running.put(lane, 0);
+            queueWaitTimers.put(lane, Timer.builder(QUEUE_WAIT_TIMER)
+                .description("大模型调用排队等待时间")
+                .tag("lane", lane.getCode())
+                .register(meterRegistry));
+            Gauge.builder("llm.scheduler.queued", this, scheduler -> scheduler.queued(lane))
+                .tag("lane", lane.getCode())
+                .register(meterRegistry);
+            Gauge.builder("llm.scheduler.running", this, scheduler -> scheduler.running(lane))
+                .tag("lane", lane.getCode())
+                .register(meterRegistry);
+        }
+        Gauge.builder("llm.scheduler.tokens.available", this, LlmCallScheduler::availableTokens)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 估算一次调用消耗的令牌数：输入按每字符一个令牌（中文偏保守），加上预期的输出长度
+     */
+    public static int estimateTokens(int expectedOutputTokens, String... texts) {
+        long total = expectedOutputTokens;
+        for (String text : texts) {
+            if (text != null) {
+                total += text.length();
+            }
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 同步调用：在调用线程中排队，获得许可后执行
+     */
+    public <T> T call(LlmLane lane, int estimatedTokens, Supplier<T> supplier) {
+        if (!config.isEnabled()) {
+            return supplier.get();
+        }
+        long queuedAt = System.nanoTime();
+        CompletableFuture<Permit> ticket = acquire(lane, estimatedTokens);
+        Permit permit;
+        try {
+            permit = ticket.get(config.lane(lane).getQueueTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(ticket);
+            throw new RuntimeException("大模型调用排队超时: lane=" + lane.getCode());
+        } catch (InterruptedException e) {
+            abandon(ticket);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("大模型调用排队被中断: lane=" + lane.getCode());
+        } catch (ExecutionException e) {
+            throw new RuntimeException("大模型调用排队失败: " + e.getCause().getMessage(), e.getCause());
+        }
+        queueWaitTimers.get(lane).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+
+        try {
+            return supplier.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * 流式调用：订阅时排队，获得许可后订阅上游；上游结束、出错或下游取消时归还许可
+     */
+    public <T> Flux<T> stream(LlmLane lane, int estimatedTokens, Supplier<Flux<T>> supplier) {
+        if (!config.isEnabled()) {
+            return Flux.defer(supplier);
+        }
+        return Flux.defer(() -> {
+            long queuedAt = System.nanoTime();
+            Mono<Permit> permit = Mono.fromFuture(() -> acquire(lane, estimatedTokens), false)
+                .timeout(Duration.ofMillis(config.lane(lane).getQueueTimeoutMs()),
+                    Mono.error(() -> new RuntimeException("大模型调用排队超时: lane=" + lane.getCode())))
+                .doOnNext(granted -> queueWaitTimers.get(lane).record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS))
+                // 许可已发放但下游在交付前取消时归还
+                .doOnDiscard(Permit.class, Permit::release);
+            return Flux.usingWhen(permit,
+                granted -> supplier.get(),
+                granted -> Mono.fromRunnable(granted::release),
+                (granted, error) -> Mono.fromRunnable(granted::release),
+                granted -> Mono.fromRunnable(granted::release));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refillTimer.shutdownNow();
+    }
+
+    // ============ 私有工具方法 ============
+
+    private CompletableFuture<Permit> acquire(LlmLane lane, int estimatedTokens) {
+        Waiter waiter = new Waiter(lane, estimatedTokens, new CompletableFuture<>());
+        synchronized (this) {
+            queues.get(lane).addLast(waiter);
+        }
+        dispatch();
+        return waiter.future();
+    }
+
+    /**
+     * 放弃排队：已出队发放的许可立即归还，仍在队列中的直接移除
+     */
+    private void abandon(CompletableFuture<Permit> ticket) {
+        if (!ticket.cancel(false)) {
+            Permit permit = ticket.getNow(null);
+            if (permit != null) {
+                permit.release();
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * 按优先级出队：同一时刻只有在更高优先级通道没有可出队请求（队列为空或达到通道上限）时才轮到低优先级通道；
+     * 令牌不足时整体等待补充，不让低优先级请求越过等令牌的高优先级请求
+     */
+    private void dispatch() {
+        List<Map.Entry<Waiter, Permit>> granted = new ArrayList<>();
+        synchronized (this) {
+            refill();
+            outer:
+            for (LlmLane lane : LlmLane.values()) {
+                ArrayDeque<Waiter> queue = queues.get(lane);
+                while (!queue.isEmpty()) {
+                    Waiter waiter = queue.peekFirst();
+                    if (waiter.future().isDone()) {
+                        queue.pollFirst();
+                        continue;
+                    }
+                    if (runningTotal >= config.getMaxConcurrency()) {
+                        break outer;
+                    }
+                    if (running.get(lane) >= config.lane(lane).getMaxConcurrency()) {
+                        continue outer;
+                    }
+                    double floor = tokenFloor(lane);
+                    double cost = Math.min(waiter.estimatedTokens(), config.getTokensPerMinute() - floor);
+                    if (tokens - cost < floor) {
+                        scheduleRefill(cost - (tokens - floor));
+                        break outer;
+                    }
+                    queue.pollFirst();
+                    tokens -= cost;
+                    running.merge(lane, 1, Integer::sum);
+                    runningTotal++;
+                    granted.add(Map.entry(waiter, new Permit(lane)));
+                }
+            }
+        }
+        // 在锁外完成，避免在锁内执行等待方的回调（如订阅上游流）
+        for (Map.Entry<Waiter, Permit> entry : granted) {
+            if (!entry.getKey().future().complete(entry.getValue())) {
+                entry.getValue().release();
+            }
+        }
+    }
+
+    private synchronized void onRelease(LlmLane lane) {
+        running.merge(lane, -1, Integer::sum);
+        runningTotal--;
+    }
+
+    /**
+     * 通道的令牌保留下限：容量 × 更高优先级通道权重之和 / 全部权重之和
+     */
+    private double tokenFloor(LlmLane lane) {
+        int higher = 0;
+        int total = 0;
+        for (LlmLane other : LlmLane.values()) {
+            int weight = config.lane(other).getWeight();
+            total += weight;
+            if (other.ordinal() < lane.ordinal()) {
+                higher += weight;
+            }
+        }
+        return total == 0 ? 0 : (double) config.getTokensPerMinute() * higher / total;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double perNano = config.getTokensPerMinute() / (double) TimeUnit.MINUTES.toNanos(1);
+        tokens = Math.min(config.getTokensPerMinute(), tokens + (now - lastRefillNanos) * perNano);
+        lastRefillNanos = now;
+    }
+
+    private void scheduleRefill(double deficit) {
+        if (refillScheduled) {
+            return;
+        }
+        refillScheduled = true;
+        long delayMs = Math.max(10, (long) Math.ceil(deficit * 60_000 / config.getTokensPerMinute()));
+        refillTimer.schedule(() -> {
+            synchronized (this) {
+                refillScheduled = false;
+            }
+            dispatch();
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized int queued(LlmLane lane) {
+        return queues.get(lane).size();
+    }
+
+    private synchronized int running(LlmLane lane) {
+        return running.get(lane);
+    }
+
+    private synchronized double availableTokens() {
+        refill();
+        return tokens;
+    }
+
+    private record Waiter(LlmLane lane, int estimatedTokens, CompletableFuture<Permit> future) {
+    }
+
+    /**
+     * 执行许可，重复归还只生效一次
+     */
+    private final class Permit {
+
+        private final LlmLane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(LlmLane lane) {
+            this.lane = lane;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                onRelease(lane);
+                dispatch();
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.mtm.backend.service.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 相同在途大模型请求合并（single-flight）
+ * 同一时刻归一化提示词、知识库与选项完全相同的请求只向DashScope发起一次调用，其余请求等待同一结果；
+ * 流式请求通过带重放的多播共享同一个上游Flux，后加入的订阅者先收到已生成的片段再继续接收。
+ * 只合并在途请求，完成后立即移除，不缓存结果。默认关闭，通过 rag.coalescing.enabled 开启；
+ * 带会话记忆的多轮对话由调用方传入null键排除
+ */
+@Component
+@Slf4j
+public class LlmRequestCoalescer {
+
+    public static final String COALESCED_COUNTER = "llm.requests.coalesced";
+
+    private final boolean enabled;
+    private final Counter coalescedCalls;
+    private final Counter coalescedStreams;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlightCalls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Flux<?>> inFlightStreams = new ConcurrentHashMap<>();
+
+    public LlmRequestCoalescer(@Value("${rag.coalescing.enabled:false}") boolean enabled,
+                               MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.coalescedCalls = Counter.builder(COALESCED_COUNTER)
+            .description("合并到已有在途请求的大模型调用数")
+            .tag("type", "call")
+            .register(meterRegistry);
+        this.coalescedStreams = Counter.builder(COALESCED_COUNTER)
+            .description("合并到已有在途请求的大模型调用数")
+            .tag("type", "stream")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 合并键：场景 + 归一化提示词 + 排序后的知识库ID + 其余影响生成结果的选项（系统提示词、上下文文档等）
+     */
+    public static String key(String scenario, String prompt, Collection<String> knowledgeBaseIds, Object... options) {
+        StringBuilder material = new StringBuilder(scenario).append('|').append(normalize(prompt));
+        material.append("|kb=");
+        if (knowledgeBaseIds != null) {
+            material.append(String.join(",", new TreeSet<>(knowledgeBaseIds)));
+        }
+        for (Object option : options) {
+            material.append('|').append(option);
+        }
+        return scenario + ":" + sha256(material.toString());
+    }
+
+    /**
+     * 同步调用合并；key为null或未开启时直接执行
+     * 首个请求在自身线程中执行调用，其余相同请求阻塞等待同一结果（包括异常）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(String key, Supplier<T> supplier) {
+        if (!enabled || key == null) {
+            return supplier.get();
+        }
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlightCalls.putIfAbsent(key, created);
+        if (existing != null) {
+            coalescedCalls.increment();
+            log.debug("合并到在途大模型调用: key={}", key);
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw new RuntimeException("合并的大模型调用失败: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        try {
+            T result = supplier.get();
+            created.complete(result);
+            return result;
+        } catch (Throwable e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCalls.remove(key, created);
+        }
+    }
+
+    /**
+     * 流式调用合并；key为null或未开启时直接返回原始流
+     * 首个订阅触发上游调用，全部订阅者取消后上游随之取消；上游结束后移除，之后的相同请求重新发起调用
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Flux<T> stream(String key, Supplier<Flux<T>> supplier) {
+        if (!enabled || key == null) {
+            return supplier.get();
+        }
+        return Flux.defer(() -> {
+            AtomicBoolean created = new AtomicBoolean();
+            Flux<T> shared = (Flux<T>) inFlightStreams.computeIfAbsent(key, k -> {
+                created.set(true);
+                return share(k, supplier);
+            });
+            if (!created.get()) {
+                coalescedStreams.increment();
+                log.debug("合并到在途大模型流式调用: key={}", key);
+            }
+            return shared;
+        });
+    }
+
+    // ============ 私有工具方法 ============
+
+    private <T> Flux<T> share(String key, Supplier<Flux<T>> supplier) {
+        AtomicReference<Flux<T>> self = new AtomicReference<>();
+        Flux<T> shared = Flux.defer(supplier)
+            .doFinally(signal -> inFlightStreams.remove(key, self.get()))
+            .replay()
+            .refCount();
+        self.set(shared);
+        return shared;
+    }
+
+    /**
+     * 全角转半角（NFKC）、合并空白、转小写
+     */
+    private static String normalize(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        return Normalizer.normalize(prompt, Normalizer.Form.NFKC)
+            .trim()
+            .replaceAll("\\s+", " ")
+            .toLowerCase(Locale.ROOT);
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
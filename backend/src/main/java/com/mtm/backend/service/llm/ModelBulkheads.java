@@ -0,0 +1,91 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.config.DownstreamLimitConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 嵌入与转录模型的并发隔离
+ * 以拦截器的形式挂在模型Bean代理的最外层（见 {@link com.mtm.backend.config.ModelResilienceConfig}），
+ * 等待许可的时间单独记录（downstream.bulkhead.wait），不计入模型调用耗时；对话模型的并发由 {@link LlmCallScheduler} 限制
+ */
+public class ModelBulkheads {
+
+    private static final Set<String> EMBEDDING_METHODS = Set.of("call", "embed", "embedForResponse");
+
+    /** 流式转录返回Flux，许可无法覆盖其生命周期，不经过隔离 */
+    private static final Set<String> TRANSCRIPTION_METHODS = Set.of("call", "asyncCall");
+
+    private final ObjectProvider<DownstreamLimitConfig> configProvider;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private volatile Bulkhead embedding;
+    private volatile Bulkhead transcription;
+
+    /**
+     * 模型Bean在后置处理阶段包装，此时配置与注册表可能尚未就绪，首次调用时再创建信号量
+     */
+    public ModelBulkheads(ObjectProvider<DownstreamLimitConfig> configProvider,
+                          ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.configProvider = configProvider;
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    public MethodInterceptor embeddingInterceptor() {
+        return interceptor(EMBEDDING_METHODS, ModelBulkheads::embedding);
+    }
+
+    public MethodInterceptor transcriptionInterceptor() {
+        return interceptor(TRANSCRIPTION_METHODS, ModelBulkheads::transcription);
+    }
+
+    public Bulkhead embedding() {
+        Bulkhead bulkhead = embedding;
+        if (bulkhead == null) {
+            synchronized (this) {
+                if (embedding == null) {
+                    embedding = create("embedding", configProvider.getObject().getEmbedding());
+                }
+                bulkhead = embedding;
+            }
+        }
+        return bulkhead;
+    }
+
+    public Bulkhead transcription() {
+        Bulkhead bulkhead = transcription;
+        if (bulkhead == null) {
+            synchronized (this) {
+                if (transcription == null) {
+                    transcription = create("transcription", configProvider.getObject().getTranscription());
+                }
+                bulkhead = transcription;
+            }
+        }
+        return bulkhead;
+    }
+
+    // ============ 私有工具方法 ============
+
+    private MethodInterceptor interceptor(Set<String> limitedMethods, Function<ModelBulkheads, Bulkhead> selector) {
+        return invocation -> {
+            if (!limitedMethods.contains(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            Bulkhead bulkhead = selector.apply(this);
+            bulkhead.acquire();
+            try {
+                return invocation.proceed();
+            } finally {
+                bulkhead.release();
+            }
+        };
+    }
+
+    private Bulkhead create(String name, DownstreamLimitConfig.Limit limit) {
+        return new Bulkhead(name, limit.getMaxConcurrency(), limit.getAcquireTimeoutMs(), meterRegistryProvider.getObject());
+    }
+}
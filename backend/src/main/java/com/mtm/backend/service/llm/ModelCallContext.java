@@ -0,0 +1,144 @@
+package com.mtm.backend.service.llm;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 模型调用的指标上下文（场景、入口接口）
+ * 同步调用经线程变量传递，流式调用经Reactor Context传递；入口接口在请求线程上取自当前HTTP请求的路由模板，
+ * 不在请求线程上发起的调用（异步生成任务、定时任务）记为 background
+ */
+public final class ModelCallContext {
+
+    public static final String UNKNOWN = "unknown";
+    public static final String BACKGROUND = "background";
+
+    private static final String SCENARIO_KEY = ModelCallContext.class.getName() + ".scenario";
+    private static final String ENDPOINT_KEY = ModelCallContext.class.getName() + ".endpoint";
+
+    private static final ThreadLocal<Snapshot> CURRENT = new ThreadLocal<>();
+
+    private ModelCallContext() {
+    }
+
+    /**
+     * 在指定场景下执行同步调用；入口接口沿用外层上下文，没有时取当前请求
+     */
+    public static <T> T call(String scenario, Supplier<T> supplier) {
+        Snapshot previous = CURRENT.get();
+        CURRENT.set(new Snapshot(scenario, previous != null ? previous.endpoint() : requestEndpoint()));
+        try {
+            return supplier.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 为流式调用写入场景；入口接口优先取下游已写入的值，其次取组装时所在的请求
+     */
+    public static <T> Flux<T> stream(String scenario, Flux<T> flux) {
+        String assemblyEndpoint = current().endpoint();
+        return flux.contextWrite(context -> context
+            .put(SCENARIO_KEY, scenario)
+            .put(ENDPOINT_KEY, context.getOrDefault(ENDPOINT_KEY, assemblyEndpoint)));
+    }
+
+    /**
+     * 在请求线程上组装流时记录入口接口，供之后在其他线程上订阅的模型调用使用
+     */
+    public static Function<Context, Context> captureEndpoint() {
+        String endpoint = requestEndpoint();
+        return context -> context.hasKey(ENDPOINT_KEY) ? context : context.put(ENDPOINT_KEY, endpoint);
+    }
+
+    /**
+     * 包装交给其他线程执行的调用，使其沿用当前线程的上下文
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> supplier) {
+        Snapshot captured = CURRENT.get();
+        if (captured == null) {
+            return supplier;
+        }
+        return () -> {
+            Snapshot previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                return supplier.get();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 线程池任务装饰器：任务沿用提交线程的上下文，没有时沿用提交时所在的请求，
+     * RAG检索与准备阶段在线程池中发起的模型调用仍归入发起请求的入口接口
+     */
+    public static Runnable decorate(Runnable task) {
+        Snapshot captured = current();
+        return () -> {
+            Snapshot previous = CURRENT.get();
+            CURRENT.set(captured);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    /**
+     * 当前线程的上下文，没有时场景为unknown、入口接口取当前请求
+     */
+    public static Snapshot current() {
+        Snapshot snapshot = CURRENT.get();
+        return snapshot != null ? snapshot : new Snapshot(UNKNOWN, requestEndpoint());
+    }
+
+    /**
+     * 流式调用的上下文：Reactor Context优先，其次为订阅线程的上下文
+     */
+    public static Snapshot fromContext(ContextView context) {
+        Snapshot fallback = current();
+        return new Snapshot(context.getOrDefault(SCENARIO_KEY, fallback.scenario()),
+            context.getOrDefault(ENDPOINT_KEY, fallback.endpoint()));
+    }
+
+    // ============ 私有工具方法 ============
+
+    private static void restore(Snapshot previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private static String requestEndpoint() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return BACKGROUND;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        // 路由模板（如 /api/resources/qa/{messageId}/related）而非实际路径，避免指标标签基数膨胀
+        return pattern != null ? pattern.toString() : UNKNOWN;
+    }
+
+    /**
+     * @param scenario 调用场景
+     * @param endpoint 入口接口的路由模板
+     */
+    public record Snapshot(String scenario, String endpoint) {
+    }
+}
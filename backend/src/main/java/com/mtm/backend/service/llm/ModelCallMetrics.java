@@ -0,0 +1,310 @@
+package com.mtm.backend.service.llm;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.ai.audio.transcription.AudioTranscriptionPrompt;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 模型调用指标
+ * 以拦截器的形式挂在对话、嵌入、转录模型Bean的代理上（见 {@link com.mtm.backend.config.ModelResilienceConfig}），
+ * 所有经由Bean的调用都会记录：
+ * <ul>
+ *   <li>llm.model.latency：调用耗时直方图（type/mode/model/scenario/endpoint/outcome）</li>
+ *   <li>llm.model.tokens：提示词与生成令牌数（kind=prompt/completion）</li>
+ *   <li>llm.model.ttft、llm.model.tokens.per.second：流式调用的首个令牌耗时与生成速度</li>
+ *   <li>llm.model.errors、llm.model.retries：失败次数（按异常类型）与Spring AI重试次数</li>
+ * </ul>
+ * 场景与入口接口取自 {@link ModelCallContext}
+ */
+public class ModelCallMetrics {
+
+    public static final String LATENCY = "llm.model.latency";
+    public static final String TOKENS = "llm.model.tokens";
+    public static final String TTFT = "llm.model.ttft";
+    public static final String TOKENS_PER_SECOND = "llm.model.tokens.per.second";
+    public static final String ERRORS = "llm.model.errors";
+    public static final String RETRIES = "llm.model.retries";
+
+    private static final String TYPE_CHAT = "chat";
+    private static final String TYPE_EMBEDDING = "embedding";
+    private static final String TYPE_TRANSCRIPTION = "transcription";
+
+    private static final Set<String> CHAT_METHODS = Set.of("call", "stream");
+    private static final Set<String> EMBEDDING_METHODS = Set.of("call", "embed", "embedForResponse");
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * 模型Bean在后置处理阶段包装，此时注册表可能尚未就绪，首次记录时再获取
+     */
+    public ModelCallMetrics(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    public MethodInterceptor chatInterceptor() {
+        return invocation -> {
+            if (!CHAT_METHODS.contains(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            String requestedModel = invocation.getArguments().length > 0
+                && invocation.getArguments()[0] instanceof Prompt prompt && prompt.getOptions() != null
+                ? prompt.getOptions().getModel() : null;
+            if (Flux.class.isAssignableFrom(invocation.getMethod().getReturnType())) {
+                return instrumentStream((Flux<?>) invocation.proceed(), requestedModel);
+            }
+            return instrumentCall(invocation, TYPE_CHAT, requestedModel, ModelCallContext.current());
+        };
+    }
+
+    public MethodInterceptor embeddingInterceptor() {
+        return invocation -> {
+            if (!EMBEDDING_METHODS.contains(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            Object[] arguments = invocation.getArguments();
+            String requestedModel = arguments.length > 0 && arguments[0] instanceof EmbeddingRequest request
+                && request.getOptions() != null ? request.getOptions().getModel() : null;
+            ModelCallContext.Snapshot context = ModelCallContext.current();
+            if (ModelCallContext.UNKNOWN.equals(context.scenario())) {
+                // 未声明场景的嵌入调用按输入条数区分查询向量化与文档入库
+                context = new ModelCallContext.Snapshot(
+                    ModelCircuitBreakers.isSingleInput(arguments) ? "query" : "ingestion", context.endpoint());
+            }
+            return instrumentCall(invocation, TYPE_EMBEDDING, requestedModel, context);
+        };
+    }
+
+    public MethodInterceptor transcriptionInterceptor() {
+        return invocation -> {
+            if (!"call".equals(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            Object[] arguments = invocation.getArguments();
+            String requestedModel = arguments.length > 0 && arguments[0] instanceof AudioTranscriptionPrompt prompt
+                && prompt.getOptions() != null ? prompt.getOptions().getModel() : null;
+            ModelCallContext.Snapshot context = ModelCallContext.current();
+            if (ModelCallContext.UNKNOWN.equals(context.scenario())) {
+                context = new ModelCallContext.Snapshot(TYPE_TRANSCRIPTION, context.endpoint());
+            }
+            return instrumentCall(invocation, TYPE_TRANSCRIPTION, requestedModel, context);
+        };
+    }
+
+    /**
+     * Spring AI重试模板的监听器：每次重试计数一次（最终失败的那次尝试不计）
+     */
+    public RetryListener retryListener() {
+        return new RetryListener() {
+            @Override
+            public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+                int retries = context.getRetryCount() - (throwable != null ? 1 : 0);
+                if (retries > 0) {
+                    ModelCallContext.Snapshot snapshot = ModelCallContext.current();
+                    Counter.builder(RETRIES)
+                        .description("模型调用重试次数")
+                        .tags("scenario", snapshot.scenario(), "endpoint", snapshot.endpoint())
+                        .register(registry())
+                        .increment(retries);
+                }
+            }
+        };
+    }
+
+    // ============ 私有工具方法 ============
+
+    private MeterRegistry registry() {
+        MeterRegistry registry = meterRegistry;
+        if (registry == null) {
+            registry = meterRegistryProvider.getObject();
+            meterRegistry = registry;
+        }
+        return registry;
+    }
+
+    private Object instrumentCall(MethodInvocation invocation, String type, String requestedModel,
+                                  ModelCallContext.Snapshot context) throws Throwable {
+        long startTime = System.nanoTime();
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            Tags tags = tags(type, "call", modelOf(null, requestedModel), context);
+            recordLatency(tags, System.nanoTime() - startTime, "error");
+            recordError(tags, e);
+            throw e;
+        }
+        Tags tags = tags(type, "call", modelOf(result, requestedModel), context);
+        recordLatency(tags, System.nanoTime() - startTime, "success");
+        recordUsage(tags, result);
+        return result;
+    }
+
+    private Flux<?> instrumentStream(Flux<?> stream, String requestedModel) {
+        return Flux.deferContextual(contextView -> {
+            ModelCallContext.Snapshot context = ModelCallContext.fromContext(contextView);
+            long startTime = System.nanoTime();
+            AtomicLong firstTokenAt = new AtomicLong();
+            AtomicReference<Object> lastUsage = new AtomicReference<>();
+            AtomicReference<String> model = new AtomicReference<>(requestedModel);
+            return stream
+                .doOnNext(element -> {
+                    if (element instanceof ChatResponse response) {
+                        if (response.getResult() != null && StringUtils.hasLength(response.getResult().getOutput().getText())) {
+                            firstTokenAt.compareAndSet(0, System.nanoTime());
+                        }
+                        if (response.getMetadata() != null) {
+                            Usage usage = response.getMetadata().getUsage();
+                            if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                                lastUsage.set(response);
+                            }
+                            if (StringUtils.hasText(response.getMetadata().getModel())) {
+                                model.set(response.getMetadata().getModel());
+                            }
+                        }
+                    } else {
+                        firstTokenAt.compareAndSet(0, System.nanoTime());
+                    }
+                })
+                .doOnComplete(() -> {
+                    long endTime = System.nanoTime();
+                    Tags tags = tags(TYPE_CHAT, "stream", modelOf(null, model.get()), context);
+                    recordLatency(tags, endTime - startTime, "success");
+                    recordUsage(tags, lastUsage.get());
+                    recordStreamTiming(tags, startTime, firstTokenAt.get(), endTime, lastUsage.get());
+                })
+                .doOnError(error -> {
+                    Tags tags = tags(TYPE_CHAT, "stream", modelOf(null, model.get()), context);
+                    recordLatency(tags, System.nanoTime() - startTime, "error");
+                    recordError(tags, error);
+                })
+                .doOnCancel(() -> recordLatency(tags(TYPE_CHAT, "stream", modelOf(null, model.get()), context),
+                    System.nanoTime() - startTime, "cancelled"));
+        });
+    }
+
+    private void recordStreamTiming(Tags tags, long startTime, long firstTokenAt, long endTime, Object usageHolder) {
+        if (firstTokenAt == 0) {
+            return;
+        }
+        Timer.builder(TTFT)
+            .description("流式调用首个令牌耗时")
+            .tags(tags)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(50))
+            .maximumExpectedValue(Duration.ofSeconds(60))
+            .register(registry())
+            .record(firstTokenAt - startTime, TimeUnit.NANOSECONDS);
+
+        Usage usage = usageOf(usageHolder);
+        long generationNanos = endTime - firstTokenAt;
+        if (usage != null && usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0 && generationNanos > 0) {
+            DistributionSummary.builder(TOKENS_PER_SECOND)
+                .description("流式调用首个令牌之后的生成速度")
+                .baseUnit("tokens")
+                .tags(tags)
+                .register(registry())
+                .record(usage.getCompletionTokens() * (double) TimeUnit.SECONDS.toNanos(1) / generationNanos);
+        }
+    }
+
+    private void recordLatency(Tags tags, long nanos, String outcome) {
+        Timer.builder(LATENCY)
+            .description("模型调用耗时")
+            .tags(tags)
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofMillis(10))
+            .maximumExpectedValue(Duration.ofSeconds(120))
+            .register(registry())
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordUsage(Tags tags, Object result) {
+        Usage usage = usageOf(result);
+        if (usage == null) {
+            return;
+        }
+        if (usage.getPromptTokens() != null && usage.getPromptTokens() > 0) {
+            tokenCounter(tags, "prompt").increment(usage.getPromptTokens());
+        }
+        if (usage.getCompletionTokens() != null && usage.getCompletionTokens() > 0) {
+            tokenCounter(tags, "completion").increment(usage.getCompletionTokens());
+        }
+    }
+
+    private Counter tokenCounter(Tags tags, String kind) {
+        return Counter.builder(TOKENS)
+            .description("模型调用令牌数")
+            .baseUnit("tokens")
+            .tags(tags)
+            .tag("kind", kind)
+            .register(registry());
+    }
+
+    private void recordError(Tags tags, Throwable error) {
+        Counter.builder(ERRORS)
+            .description("模型调用失败次数")
+            .tags(tags)
+            .tag("error", error.getClass().getSimpleName())
+            .register(registry())
+            .increment();
+    }
+
+    private static Usage usageOf(Object result) {
+        if (result instanceof ChatResponse response && response.getMetadata() != null) {
+            return response.getMetadata().getUsage();
+        }
+        if (result instanceof EmbeddingResponse response && response.getMetadata() != null) {
+            return response.getMetadata().getUsage();
+        }
+        return null;
+    }
+
+    /**
+     * 响应中声明的模型优先，其次为请求选项中的模型，都没有时为default（配置文件中的默认模型）
+     */
+    private static String modelOf(Object result, String requestedModel) {
+        String responseModel = null;
+        if (result instanceof ChatResponse response && response.getMetadata() != null) {
+            responseModel = response.getMetadata().getModel();
+        } else if (result instanceof EmbeddingResponse response && response.getMetadata() != null) {
+            responseModel = response.getMetadata().getModel();
+        }
+        if (StringUtils.hasText(responseModel)) {
+            return responseModel;
+        }
+        return StringUtils.hasText(requestedModel) ? requestedModel : "default";
+    }
+
+    private static Tags tags(String type, String mode, String model, ModelCallContext.Snapshot context) {
+        return Tags.of(
+            "type", type,
+            "mode", mode,
+            "model", model,
+            "scenario", context.scenario(),
+            "endpoint", context.endpoint());
+    }
+}
@@ -0,0 +1,157 @@
+package com.mtm.backend.service.llm;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 模型客户端熔断器
+ * 对话模型与嵌入模型各一个熔断器；模型Bean由 {@link com.mtm.backend.config.ModelResilienceConfig}
+ * 包装为保留原类型的代理，所有经由Bean的调用（ChatClient、向量存储、直接注入的模型）都受熔断保护。
+ * 熔断器同时按延迟SLO判定：对话同步调用扣除按输出令牌数折算的生成时间，流式调用取首个片段的耗时；
+ * 单条文本的嵌入调用（查询向量化）额外经过对冲
+ */
+public class ModelCircuitBreakers {
+
+    /** 连续失败次数阈值 */
+    private static final int FAILURE_THRESHOLD = 5;
+
+    /** 熔断冷却时间 */
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    /** 对话慢调用阈值（首个令牌耗时） */
+    private static final Duration CHAT_SLOW_CALL = Duration.ofSeconds(10);
+
+    /** 嵌入慢调用阈值 */
+    private static final Duration EMBEDDING_SLOW_CALL = Duration.ofSeconds(3);
+
+    /** 折算生成耗时用的每个输出令牌耗时 */
+    private static final long MILLIS_PER_OUTPUT_TOKEN = 25;
+
+    private static final Set<String> CHAT_METHODS = Set.of("call", "stream");
+    private static final Set<String> EMBEDDING_METHODS = Set.of("call", "embed", "embedForResponse");
+
+    private final CircuitBreaker chat = new CircuitBreaker("chat", FAILURE_THRESHOLD, OPEN_DURATION, CHAT_SLOW_CALL);
+    private final CircuitBreaker embedding = new CircuitBreaker("embedding", FAILURE_THRESHOLD, OPEN_DURATION, EMBEDDING_SLOW_CALL);
+
+    public CircuitBreaker chat() {
+        return chat;
+    }
+
+    public CircuitBreaker embedding() {
+        return embedding;
+    }
+
+    /**
+     * 包装对话模型：同步调用与流式调用都经过熔断器
+     */
+    public Object protectChatModel(Object chatModel) {
+        return proxy(chatModel, chat, CHAT_METHODS, null);
+    }
+
+    /**
+     * 包装嵌入模型，dimensions()等元数据方法不经过熔断器；单条文本的嵌入调用经过对冲
+     */
+    public Object protectEmbeddingModel(Object embeddingModel, RequestHedger hedger) {
+        return proxy(embeddingModel, embedding, EMBEDDING_METHODS, hedger);
+    }
+
+    // ============ 私有工具方法 ============
+
+    private static Object proxy(Object target, CircuitBreaker breaker, Set<String> protectedMethods, RequestHedger hedger) {
+        ProxyFactory factory = new ProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice((MethodInterceptor) invocation -> {
+            Method method = invocation.getMethod();
+            if (!protectedMethods.contains(method.getName())) {
+                return invocation.proceed();
+            }
+            Object[] arguments = invocation.getArguments();
+            if (Flux.class.isAssignableFrom(method.getReturnType())) {
+                // 流式调用在订阅时申请许可，以流的终止信号判定成败，以首个片段的耗时判定快慢
+                AtomicLong subscribedAt = new AtomicLong();
+                AtomicLong firstElementMillis = new AtomicLong(-1);
+                return Flux.defer(() -> {
+                        breaker.acquirePermission();
+                        subscribedAt.set(System.currentTimeMillis());
+                        return (Flux<?>) invoke(method, target, arguments);
+                    })
+                    .doOnNext(element -> firstElementMillis.compareAndSet(-1, System.currentTimeMillis() - subscribedAt.get()))
+                    .doOnComplete(() -> breaker.onSuccess(Math.max(firstElementMillis.get(), 0)))
+                    .doOnError(breaker::onFailure)
+                    .doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) {
+                            breaker.onIgnored();
+                        }
+                    });
+            }
+
+            Supplier<Object> attempt = () -> {
+                breaker.acquirePermission();
+                long startTime = System.currentTimeMillis();
+                Object result;
+                try {
+                    result = invoke(method, target, arguments);
+                } catch (RuntimeException e) {
+                    breaker.onFailure(e);
+                    throw e;
+                }
+                breaker.onSuccess(latencyForSlo(result, System.currentTimeMillis() - startTime));
+                return result;
+            };
+            if (hedger != null && isSingleInput(arguments)) {
+                return hedger.call(breaker.getName(), attempt);
+            }
+            return attempt.get();
+        });
+        return factory.getProxy(target.getClass().getClassLoader());
+    }
+
+    /**
+     * 同步对话的耗时包含整段生成，扣除按输出令牌数折算的生成时间后近似首个令牌耗时
+     */
+    private static long latencyForSlo(Object result, long elapsedMillis) {
+        if (result instanceof ChatResponse response && response.getMetadata() != null
+            && response.getMetadata().getUsage() != null
+            && response.getMetadata().getUsage().getCompletionTokens() != null) {
+            return Math.max(0, elapsedMillis - response.getMetadata().getUsage().getCompletionTokens() * MILLIS_PER_OUTPUT_TOKEN);
+        }
+        return elapsedMillis;
+    }
+
+    /**
+     * 单条输入的嵌入调用（查询向量化，延迟敏感且开销小）才对冲，批量入库的嵌入不对冲
+     */
+    static boolean isSingleInput(Object[] arguments) {
+        if (arguments.length != 1) {
+            return false;
+        }
+        Object argument = arguments[0];
+        return argument instanceof String
+            || argument instanceof Document
+            || (argument instanceof EmbeddingRequest request && request.getInstructions().size() == 1)
+            || (argument instanceof List<?> list && list.size() == 1);
+    }
+
+    private static Object invoke(Method method, Object target, Object[] arguments) {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : new RuntimeException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.config.ModelRoutingConfig;
+import com.mtm.backend.enums.ChatClientScenario;
+import com.mtm.backend.enums.ConversationScenario;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 对话模型路由
+ * 按估算的提示词大小、会话场景、回答模式与各模型当前的首个令牌耗时为每次调用选择模型，
+ * 决策计入 llm.routing.decisions（按模型、场景、原因打标签）
+ */
+@Component
+@Slf4j
+public class ModelRouter {
+
+    public static final String DECISION_COUNTER = "llm.routing.decisions";
+
+    /** 同步调用折算生成耗时用的每个输出令牌耗时 */
+    private static final long MILLIS_PER_OUTPUT_TOKEN = 25;
+
+    /** 延迟指数移动平均的平滑系数 */
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final ModelRoutingConfig config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LatencySample> latencies = new ConcurrentHashMap<>();
+
+    public ModelRouter(ModelRoutingConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        for (String model : new String[]{config.getFastModel(), config.getLargeModel()}) {
+            Gauge.builder("llm.routing.latency", latencies,
+                    values -> values.containsKey(model) ? values.get(model).millis() : 0.0)
+                .description("各模型首个令牌耗时的指数移动平均（毫秒）")
+                .tag("model", model)
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 为一次调用选择模型
+     */
+    public Decision route(RoutingRequest request) {
+        String scenario = request.getScenario() != null ? request.getScenario().getCode()
+            : request.getClientScenario() != null ? request.getClientScenario().getCode() : ModelCallContext.UNKNOWN;
+        Decision decision = config.isEnabled() ? decide(request) : new Decision(config.getFastModel(), "disabled", null);
+        decision = new Decision(decision.model(), decision.reason(), scenario);
+        Counter.builder(DECISION_COUNTER)
+            .description("对话模型路由决策次数")
+            .tag("model", decision.model())
+            .tag("scenario", scenario)
+            .tag("reason", decision.reason())
+            .register(meterRegistry)
+            .increment();
+        log.debug("模型路由: scenario={}, model={}, reason={}", scenario, decision.model(), decision.reason());
+        return decision;
+    }
+
+    /**
+     * 执行同步调用并记录所选模型的耗时（扣除按输出长度折算的生成时间），调用期间的模型指标按决策的场景打标签
+     */
+    public <T> T timed(Decision decision, Supplier<T> call) {
+        long startTime = System.currentTimeMillis();
+        T result = ModelCallContext.call(decision.scenario(), call);
+        long elapsed = System.currentTimeMillis() - startTime;
+        long outputTokens = result instanceof ChatResponse response && response.getMetadata() != null
+            && response.getMetadata().getUsage() != null && response.getMetadata().getUsage().getCompletionTokens() != null
+            ? response.getMetadata().getUsage().getCompletionTokens()
+            : result instanceof String text ? text.length() : 0;
+        recordLatency(decision.model(), Math.max(0, elapsed - outputTokens * MILLIS_PER_OUTPUT_TOKEN));
+        return result;
+    }
+
+    /**
+     * 流式调用记录所选模型的首个片段耗时，模型指标按决策的场景打标签
+     */
+    public <T> Flux<T> timed(Decision decision, Flux<T> stream) {
+        return ModelCallContext.stream(decision.scenario(), Flux.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            AtomicBoolean first = new AtomicBoolean(true);
+            return stream.doOnNext(element -> {
+                if (first.compareAndSet(true, false)) {
+                    recordLatency(decision.model(), System.currentTimeMillis() - startTime);
+                }
+            });
+        }));
+    }
+
+    // ============ 私有工具方法 ============
+
+    private Decision decide(RoutingRequest request) {
+        Decision preferred = preferredModel(request);
+        String alternative = preferred.model().equals(config.getLargeModel()) ? config.getFastModel() : config.getLargeModel();
+        // 改道后首选模型没有新样本，过期的样本不再参与判断，调用回到首选模型重新测量
+        Double preferredLatency = freshLatency(preferred.model());
+        Double alternativeLatency = freshLatency(alternative);
+        if (preferredLatency != null && alternativeLatency != null
+            && preferredLatency > config.getLatencyFallbackMinMs()
+            && preferredLatency > alternativeLatency * config.getLatencyFallbackRatio()) {
+            return new Decision(alternative, "latency_fallback", null);
+        }
+        return preferred;
+    }
+
+    private Decision preferredModel(RoutingRequest request) {
+        if (request.getClientScenario() == ChatClientScenario.GENERATION) {
+            return new Decision(config.getLargeModel(), "generation", null);
+        }
+        if (request.getScenario() != null && request.getScenario() != ConversationScenario.GENERAL_CHAT) {
+            return new Decision(config.getLargeModel(), "analytical_scenario", null);
+        }
+        if (request.getEstimatedTokens() >= config.getLongPromptTokens()) {
+            return new Decision(config.getLargeModel(), "long_prompt", null);
+        }
+        if ("tutorial".equals(request.getAnswerMode())) {
+            return new Decision(config.getLargeModel(), "answer_mode", null);
+        }
+        if ("concise".equals(request.getAnswerMode())) {
+            return new Decision(config.getFastModel(), "answer_mode", null);
+        }
+        return isAnalytical(request.getQuestion())
+            ? new Decision(config.getLargeModel(), "analytical_question", null)
+            : new Decision(config.getFastModel(), "short_factual", null);
+    }
+
+    private boolean isAnalytical(String question) {
+        if (question == null) {
+            return false;
+        }
+        if (question.trim().length() > config.getLongQuestionChars()) {
+            return true;
+        }
+        String normalized = question.toLowerCase(Locale.ROOT);
+        return config.getAnalyticalKeywords().stream().anyMatch(normalized::contains);
+    }
+
+    private Double freshLatency(String model) {
+        LatencySample sample = latencies.get(model);
+        if (sample == null || System.currentTimeMillis() - sample.updatedAt() > config.getLatencySampleMaxAgeMs()) {
+            return null;
+        }
+        return sample.millis();
+    }
+
+    private void recordLatency(String model, long latencyMillis) {
+        long now = System.currentTimeMillis();
+        // 过期的平均值不再平滑，直接以新样本重新开始
+        latencies.merge(model, new LatencySample(latencyMillis, now), (previous, sample) ->
+            now - previous.updatedAt() > config.getLatencySampleMaxAgeMs()
+                ? sample
+                : new LatencySample(previous.millis() + LATENCY_ALPHA * (sample.millis() - previous.millis()), now));
+    }
+
+    /**
+     * 路由请求
+     */
+    @Data
+    @Builder
+    public static class RoutingRequest {
+        /** 预构建客户端场景 */
+        private ChatClientScenario clientScenario;
+        /** 会话场景，RAG问答为空 */
+        private ConversationScenario scenario;
+        /** 回答模式：detailed / concise / tutorial */
+        private String answerMode;
+        /** 用户问题原文 */
+        private String question;
+        /** 估算的提示词令牌数（含上下文与历史） */
+        private int estimatedTokens;
+    }
+
+    /**
+     * 路由结果
+     *
+     * @param reason   决策原因，作为指标标签
+     * @param scenario 场景编码，作为模型调用指标的场景标签
+     */
+    public record Decision(String model, String reason, String scenario) {
+    }
+
+    /**
+     * 延迟的指数移动平均及其最近更新时间
+     */
+    private record LatencySample(double millis, long updatedAt) {
+    }
+}
@@ -0,0 +1,233 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.config.ExecutionMode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 对冲请求（hedged request）
+ * 只用于幂等调用（单条文本嵌入、不经过记忆Advisor的对话）：按操作统计最近的调用耗时，
+ * 超过p95仍未返回时再发出一个相同请求，取先成功的结果。
+ * 落后的请求不会被取消：阻塞中的模型HTTP调用无法可靠中断，它会一直执行到模型返回，
+ * 期间继续占用自己的线程与调度许可并消耗令牌，结果直接丢弃。
+ * 对冲次数不超过调用次数的 {@value #HEDGE_BUDGET_PERCENT}%，避免服务整体变慢时放大负载
+ */
+@Component
+@Slf4j
+public class RequestHedger {
+
+    public static final String HEDGE_COUNTER = "llm.hedge";
+
+    /** 每个操作保留的耗时样本数 */
+    private static final int WINDOW_SIZE = 256;
+
+    /** 样本数不足时不对冲 */
+    private static final int MIN_SAMPLES = 20;
+
+    /** 对冲等待时间下限 */
+    private static final long MIN_HEDGE_DELAY_MS = 100;
+
+    private static final int HEDGE_BUDGET_PERCENT = 10;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final AtomicInteger threadIndex = new AtomicInteger();
+    private final Executor executor;
+
+    public RequestHedger(MeterRegistry meterRegistry, Environment environment) {
+        this.meterRegistry = meterRegistry;
+        // 首发与对冲请求都阻塞等待模型返回，虚拟线程模式下不占用平台线程
+        this.executor = ExecutionMode.isVirtual(environment)
+            ? ExecutionMode.virtualThreadExecutor("llm-hedge-")
+            : Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "llm-hedge-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * 执行一次可对冲的调用；样本不足时在当前线程直接执行并记录耗时
+     *
+     * @param operation 操作名，耗时分布按操作分别统计（不同类型的调用耗时差异很大）
+     */
+    public <T> T call(String operation, Supplier<T> supplier) {
+        return call(operation, supplier, UnaryOperator.identity());
+    }
+
+    /**
+     * 执行一次可对冲的调用，对冲请求经 hedgeAdmission 包装后发出
+     * 调用方在调度器许可内执行时，主请求的许可不能与对冲请求共用，对冲请求须自行取得许可（排队超时视为对冲失败）
+     *
+     * @param hedgeAdmission 包装对冲请求，例如先取得调度器许可；被包装的调用只统计模型耗时，不含排队时间
+     */
+    public <T> T call(String operation, Supplier<T> supplier, UnaryOperator<Supplier<T>> hedgeAdmission) {
+        LatencyWindow window = windows.computeIfAbsent(operation, name -> new LatencyWindow());
+        long hedgeDelay = window.hedgeDelayMillis();
+        if (hedgeDelay < 0) {
+            return window.timed(supplier).get();
+        }
+
+        window.calls.incrementAndGet();
+        CompletableFuture<T> primary = CompletableFuture.supplyAsync(ModelCallContext.propagate(window.timed(supplier)), executor);
+        try {
+            return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 超过p95仍未返回，尝试对冲
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("模型调用被中断: " + operation);
+        }
+
+        if (!window.tryAcquireHedge()) {
+            return await(primary, operation);
+        }
+        counter(operation, "hedged").increment();
+        log.debug("模型调用超过p95 {}ms未返回，发出对冲请求: {}", hedgeDelay, operation);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        // 对冲请求取得许可时主请求可能已经返回，此时不再调用模型
+        Supplier<T> timedHedge = window.timed(supplier);
+        Supplier<T> hedgeAttempt = () -> {
+            if (winner.isDone()) {
+                throw new CancellationException("主请求已返回，放弃对冲: " + operation);
+            }
+            return timedHedge.get();
+        };
+        CompletableFuture<T> hedge = CompletableFuture.supplyAsync(
+            ModelCallContext.propagate(hedgeAdmission.apply(hedgeAttempt)), executor);
+
+        primary.whenComplete((value, error) -> settle(winner, value, error, failures));
+        hedge.whenComplete((value, error) -> {
+            if (error == null && winner.complete(value)) {
+                counter(operation, "won").increment();
+                return;
+            }
+            settle(winner, value, error, failures);
+        });
+        return await(winner, operation);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        } else if (executor instanceof SimpleAsyncTaskExecutor virtualExecutor) {
+            virtualExecutor.close();
+        }
+    }
+
+    // ============ 私有工具方法 ============
+
+    /**
+     * 任一请求成功即完成；两个请求都失败时以后失败的异常结束
+     */
+    private static <T> void settle(CompletableFuture<T> winner, T value, Throwable error, AtomicInteger failures) {
+        if (error == null) {
+            winner.complete(value);
+        } else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(error);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future, String operation) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("模型调用被中断: " + operation);
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof RuntimeException runtime ? runtime : new RuntimeException(error.getMessage(), error);
+    }
+
+    private Counter counter(String operation, String result) {
+        return Counter.builder(HEDGE_COUNTER)
+            .description("对冲请求次数（hedged：发出对冲，won：对冲请求先返回）")
+            .tag("operation", operation)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 单个操作最近的成功调用耗时（环形缓冲），p95每积累一批新样本重新计算一次
+     */
+    private static class LatencyWindow {
+
+        private static final int RECOMPUTE_EVERY = 16;
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int index;
+        private int sinceRecompute;
+        private volatile long p95 = -1;
+
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong hedges = new AtomicLong();
+
+        <T> Supplier<T> timed(Supplier<T> supplier) {
+            return () -> {
+                long start = System.nanoTime();
+                T result = supplier.get();
+                record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return result;
+            };
+        }
+
+        long hedgeDelayMillis() {
+            long current = p95;
+            return current < 0 ? -1 : Math.max(current, MIN_HEDGE_DELAY_MS);
+        }
+
+        boolean tryAcquireHedge() {
+            if ((hedges.get() + 1) * 100 > calls.get() * HEDGE_BUDGET_PERCENT) {
+                return false;
+            }
+            hedges.incrementAndGet();
+            return true;
+        }
+
+        private synchronized void record(long latencyMillis) {
+            samples[index] = latencyMillis;
+            index = (index + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+            if (++sinceRecompute >= RECOMPUTE_EVERY && count >= MIN_SAMPLES) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                p95 = sorted[(int) Math.ceil(count * 0.95) - 1];
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mtm.backend.service.llm.perf;
+
+import com.alibaba.cloud.ai.dashscope.audio.transcription.AudioTranscriptionModel;
+import com.mtm.backend.config.PerfModelConfig;
+import org.springframework.ai.audio.transcription.AudioTranscription;
+import org.springframework.ai.audio.transcription.AudioTranscriptionPrompt;
+import org.springframework.ai.audio.transcription.AudioTranscriptionResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 模拟语音转录模型
+ * 转录文本由文件名与文件大小确定，耗时按配置的分布模拟
+ */
+public class FakeAudioTranscriptionModel implements AudioTranscriptionModel {
+
+    private final LatencyDistribution latency;
+
+    public FakeAudioTranscriptionModel(PerfModelConfig.Latency latency) {
+        this.latency = new LatencyDistribution(latency);
+    }
+
+    @Override
+    public AudioTranscriptionResponse call(AudioTranscriptionPrompt prompt) {
+        LatencyDistribution.sleep(latency.sampleMillis());
+        return new AudioTranscriptionResponse(new AudioTranscription(transcript(prompt)));
+    }
+
+    @Override
+    public AudioTranscriptionResponse asyncCall(AudioTranscriptionPrompt prompt) {
+        return call(prompt);
+    }
+
+    @Override
+    public AudioTranscriptionResponse fetch(String taskId) {
+        throw new UnsupportedOperationException("模拟转录模型不支持按任务ID查询: " + taskId);
+    }
+
+    @Override
+    public Flux<AudioTranscriptionResponse> stream(AudioTranscriptionPrompt prompt) {
+        return Flux.defer(() -> Flux.just(call(prompt))).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // ============ 私有工具方法 ============
+
+    private static String transcript(AudioTranscriptionPrompt prompt) {
+        String filename = prompt.getInstructions().getFilename();
+        long size;
+        try {
+            size = prompt.getInstructions().contentLength();
+        } catch (Exception e) {
+            size = -1;
+        }
+        return "本节课介绍" + (filename != null ? filename : "课程内容") + "中的核心概念与典型例题，"
+            + "音频大小" + size + "字节，以下为模拟转录文本。";
+    }
+}
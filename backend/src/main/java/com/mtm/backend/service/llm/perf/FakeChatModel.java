@@ -0,0 +1,109 @@
+package com.mtm.backend.service.llm.perf;
+
+import com.mtm.backend.config.PerfModelConfig;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 模拟对话模型
+ * 回答内容与长度由提示词确定（相同提示词得到相同回答），耗时按配置的首个令牌耗时分布与生成速度模拟：
+ * 同步调用阻塞调用线程，流式调用在Reactor定时器上按生成速度逐片段发出，不占用线程。
+ * 一个中文字符按一个令牌计，与调度器的令牌估算一致
+ */
+public class FakeChatModel implements ChatModel {
+
+    private static final String[] PHRASES = {
+        "从教学目标出发，", "结合课程的知识结构，", "首先需要明确核心概念，", "在此基础上引入典型例题，",
+        "通过对比分析可以发现，", "学生常见的误区在于", "忽略了前提条件，", "建议采用循序渐进的讲解方式，",
+        "并配合课堂练习巩固理解。", "从理论推导的角度看，", "该方法的关键步骤包括", "建立模型、求解与验证，",
+        "实际应用中还需考虑", "数据规模与计算成本。", "综上所述，", "可以按照以下思路组织教学内容。"
+    };
+
+    private final PerfModelConfig.Chat config;
+    private final LatencyDistribution firstToken;
+
+    public FakeChatModel(PerfModelConfig.Chat config) {
+        this.config = config;
+        this.firstToken = new LatencyDistribution(config.getFirstToken());
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        String input = prompt.getContents();
+        String answer = answer(input);
+        LatencyDistribution.sleep(firstToken.sampleMillis() + generationMillis(answer.length()));
+        return response(answer, model(prompt), input.length(), answer.length());
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            String input = prompt.getContents();
+            String model = model(prompt);
+            List<String> chunks = chunks(answer(input));
+            int completionTokens = chunks.stream().mapToInt(String::length).sum();
+            Duration interval = Duration.ofNanos(Math.max(1, config.getTokensPerChunk()) * 1_000_000_000L
+                / Math.max(1, config.getTokensPerSecond()));
+
+            // 首个片段在首个令牌耗时后发出，之后按生成速度逐片段发出；最后一个片段携带用量
+            return Mono.delay(Duration.ofMillis(firstToken.sampleMillis()))
+                .thenMany(Flux.range(0, chunks.size())
+                    .delayUntil(index -> index == 0 ? Mono.empty() : Mono.delay(interval)))
+                .map(index -> index == chunks.size() - 1
+                    ? response(chunks.get(index), model, input.length(), completionTokens)
+                    : new ChatResponse(List.of(new Generation(new AssistantMessage(chunks.get(index))))));
+        });
+    }
+
+    // ============ 私有工具方法 ============
+
+    private String answer(String input) {
+        SplittableRandom random = new SplittableRandom(input.hashCode());
+        int min = Math.max(1, config.getMinOutputTokens());
+        int length = min + random.nextInt(Math.max(1, config.getMaxOutputTokens() - min + 1));
+        StringBuilder answer = new StringBuilder(length + 16);
+        while (answer.length() < length) {
+            answer.append(PHRASES[random.nextInt(PHRASES.length)]);
+        }
+        answer.setLength(length);
+        return answer.toString();
+    }
+
+    private List<String> chunks(String answer) {
+        int size = Math.max(1, config.getTokensPerChunk());
+        List<String> chunks = new ArrayList<>(answer.length() / size + 1);
+        for (int start = 0; start < answer.length(); start += size) {
+            chunks.add(answer.substring(start, Math.min(answer.length(), start + size)));
+        }
+        return chunks;
+    }
+
+    private long generationMillis(int tokens) {
+        return tokens * 1000L / Math.max(1, config.getTokensPerSecond());
+    }
+
+    private String model(Prompt prompt) {
+        return prompt.getOptions() != null && prompt.getOptions().getModel() != null
+            ? prompt.getOptions().getModel() : config.getModel();
+    }
+
+    private static ChatResponse response(String text, String model, int promptTokens, int completionTokens) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))),
+            ChatResponseMetadata.builder()
+                .model(model)
+                .usage(new DefaultUsage(promptTokens, completionTokens))
+                .build());
+    }
+}
@@ -0,0 +1,102 @@
+package com.mtm.backend.service.llm.perf;
+
+import com.mtm.backend.config.PerfModelConfig;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模拟嵌入模型
+ * 向量由文本确定：字符一元组与二元组哈希到各维度后归一化（feature hashing），
+ * 相同文本得到相同向量，字面相近的文本向量也相近，检索结果与相似度分布接近真实场景
+ */
+public class FakeEmbeddingModel implements EmbeddingModel {
+
+    private final PerfModelConfig.Embedding config;
+    private final LatencyDistribution latency;
+
+    public FakeEmbeddingModel(PerfModelConfig.Embedding config) {
+        this.config = config;
+        this.latency = new LatencyDistribution(config.getLatency());
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> inputs = request.getInstructions();
+        LatencyDistribution.sleep(latency.sampleMillis() + config.getPerInputMs() * inputs.size());
+
+        List<Embedding> embeddings = new ArrayList<>(inputs.size());
+        int tokens = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            String text = inputs.get(i) != null ? inputs.get(i) : "";
+            embeddings.add(new Embedding(vector(text), i));
+            tokens += text.length();
+        }
+        return new EmbeddingResponse(embeddings,
+            new EmbeddingResponseMetadata(config.getModel(), new DefaultUsage(tokens, 0)));
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText() != null ? document.getText() : "");
+    }
+
+    @Override
+    public int dimensions() {
+        return config.getDimensions();
+    }
+
+    // ============ 私有工具方法 ============
+
+    private float[] vector(String text) {
+        int dimensions = config.getDimensions();
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < text.length(); i++) {
+            addFeature(vector, text.charAt(i));
+            if (i + 1 < text.length()) {
+                addFeature(vector, (text.charAt(i) << 16) | text.charAt(i + 1));
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            // 空文本：固定落在第一维，保证向量可归一化
+            vector[0] = 1;
+            return vector;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] *= scale;
+        }
+        return vector;
+    }
+
+    private static void addFeature(float[] vector, int feature) {
+        int hash = mix(feature);
+        // 高位决定符号，抵消哈希冲突带来的偏差
+        vector[Math.floorMod(hash, vector.length)] += hash < 0 ? -1 : 1;
+    }
+
+    /**
+     * murmur3 finalizer
+     */
+    private static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
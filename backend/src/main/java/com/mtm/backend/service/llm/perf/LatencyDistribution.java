@@ -0,0 +1,47 @@
+package com.mtm.backend.service.llm.perf;
+
+import com.mtm.backend.config.PerfModelConfig;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 对数正态耗时分布
+ * 由中位数与p99确定：sigma = ln(p99 / median) / z(0.99)，采样值 = median × e^(sigma × N(0,1))
+ */
+public class LatencyDistribution {
+
+    /** 标准正态分布的0.99分位数 */
+    private static final double Z_99 = 2.326;
+
+    private final long medianMs;
+    private final double sigma;
+
+    public LatencyDistribution(PerfModelConfig.Latency latency) {
+        this.medianMs = Math.max(0, latency.getMedianMs());
+        this.sigma = latency.getP99Ms() > latency.getMedianMs() && latency.getMedianMs() > 0
+            ? Math.log((double) latency.getP99Ms() / latency.getMedianMs()) / Z_99
+            : 0;
+    }
+
+    public long sampleMillis() {
+        if (sigma == 0) {
+            return medianMs;
+        }
+        return Math.round(medianMs * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * 阻塞当前线程，模拟同步HTTP调用等待响应
+     */
+    static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("模拟模型调用被中断");
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.mtm.backend.service.rag;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import com.mtm.backend.enums.ChatClientScenario;
+import com.mtm.backend.enums.LlmLane;
+import com.mtm.backend.service.llm.ChatClientRegistry;
+import com.mtm.backend.service.llm.LlmCallScheduler;
+import com.mtm.backend.service.llm.ModelCallContext;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 回答后置增强服务
+ * 相关问题等增强内容在回答发出之后异步生成，不占用回答的关键路径；
+ * 结果按 知识库+问题 缓存到Redis，并按消息ID记录，供流式通道推送或客户端凭messageId后续获取
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerEnrichmentService {
+
+    private static final String RELATED_CACHE_PREFIX = "rag:related:";
+    private static final String ENRICHMENT_PREFIX = "rag:enrichment:";
+    private static final long RELATED_CACHE_HOURS = 24;
+    private static final long ENRICHMENT_EXPIRE_HOURS = 1;
+
+    /** 生成提示词中携带的回答长度上限 */
+    private static final int ANSWER_EXCERPT_LENGTH = 600;
+    private static final int RELATED_QUESTION_COUNT = 3;
+    private static final int RELATED_OUTPUT_TOKENS = 200;
+
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+
+    private final ChatClientRegistry chatClientRegistry;
+    private final LlmCallScheduler llmCallScheduler;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Executor enrichmentExecutor;
+
+    /** 相同 知识库+问题 的生成任务只执行一次 */
+    private final Map<String, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 读取已缓存的相关问题，未命中返回null
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getCachedRelatedQuestions(String query, List<String> knowledgeBaseIds) {
+        try {
+            Object cached = redisTemplate.opsForValue().get(relatedCacheKey(query, knowledgeBaseIds));
+            return cached instanceof List<?> list ? (List<String>) list : null;
+        } catch (Exception e) {
+            log.warn("读取相关问题缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 回答完成后异步生成增强内容，立即返回
+     * 命中缓存时返回已完成的future；结果同时记录到消息ID下，供后续获取
+     */
+    public CompletableFuture<List<String>> enrichAsync(String messageId, Integer userId, String query,
+                                                       List<String> knowledgeBaseIds, String answer) {
+        String enrichmentKey = ENRICHMENT_PREFIX + messageId;
+        try {
+            Map<String, Object> record = new HashMap<>();
+            record.put("messageId", messageId);
+            record.put("userId", userId);
+            record.put("status", STATUS_PENDING);
+            redisTemplate.opsForHash().putAll(enrichmentKey, record);
+            redisTemplate.expire(enrichmentKey, ENRICHMENT_EXPIRE_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("记录回答增强任务失败: messageId={}, {}", messageId, e.getMessage());
+        }
+
+        CompletableFuture<List<String>> future;
+        List<String> cached = getCachedRelatedQuestions(query, knowledgeBaseIds);
+        if (cached != null) {
+            future = CompletableFuture.completedFuture(cached);
+        } else {
+            String cacheKey = relatedCacheKey(query, knowledgeBaseIds);
+            CompletableFuture<List<String>> created = new CompletableFuture<>();
+            CompletableFuture<List<String>> existing = inFlight.putIfAbsent(cacheKey, created);
+            future = existing != null ? existing : startGeneration(cacheKey, created, query, answer);
+        }
+
+        return future.whenComplete((questions, error) -> recordResult(enrichmentKey, questions, error));
+    }
+
+    /**
+     * 按消息ID获取增强结果
+     */
+    public Map<String, Object> getEnrichment(String messageId, Integer userId) {
+        try {
+            Map<Object, Object> record = redisTemplate.opsForHash().entries(ENRICHMENT_PREFIX + messageId);
+            if (record.isEmpty()) {
+                throw new RuntimeException("增强结果不存在或已过期");
+            }
+            if (!Objects.equals(record.get("userId"), userId)) {
+                throw new RuntimeException("无权限访问该消息");
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("messageId", messageId);
+            result.put("status", record.get("status"));
+            result.put("relatedQuestions", record.getOrDefault("relatedQuestions", List.of()));
+            return result;
+
+        } catch (Exception e) {
+            log.error("获取回答增强结果失败，消息ID：{}", messageId, e);
+            throw new RuntimeException("获取回答增强结果失败: " + e.getMessage());
+        }
+    }
+
+    // ============ 私有工具方法 ============
+
+    /**
+     * 提交相关问题生成任务；线程池满载时放弃本次生成并记为失败，不在请求线程上执行
+     */
+    private CompletableFuture<List<String>> startGeneration(String cacheKey, CompletableFuture<List<String>> future,
+                                                            String query, String answer) {
+        future.whenComplete((questions, error) -> {
+            if (error == null && !questions.isEmpty()) {
+                cacheRelatedQuestions(cacheKey, questions);
+            }
+            inFlight.remove(cacheKey, future);
+        });
+        try {
+            enrichmentExecutor.execute(() -> {
+                try {
+                    future.complete(generateRelatedQuestions(query, answer));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("回答增强线程池已满，跳过相关问题生成");
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 调用模型生成相关问题，每行一个
+     */
+    private List<String> generateRelatedQuestions(String query, String answer) {
+        long startTime = System.currentTimeMillis();
+        String excerpt = answer == null ? "" : answer.length() > ANSWER_EXCERPT_LENGTH
+            ? answer.substring(0, ANSWER_EXCERPT_LENGTH) : answer;
+
+        // 回答已送达后的后台补充，走批量通道，不与在线对话争抢配额
+        String prompt = "根据下面的问题和回答，生成" + RELATED_QUESTION_COUNT + "个学习者可能继续追问的相关问题。"
+            + "每行一个问题，不要编号，不要输出其他内容。\n\n"
+            + "问题：" + query + "\n\n回答：" + excerpt;
+        String content = llmCallScheduler.call(LlmLane.BATCH, LlmCallScheduler.estimateTokens(RELATED_OUTPUT_TOKENS, prompt),
+            () -> ModelCallContext.call("related_questions", () -> chatClientRegistry.get(ChatClientScenario.DEFAULT)
+                .prompt()
+                .user(prompt)
+                .call()
+                .content()));
+
+        List<String> questions = content == null ? List.of() : content.lines()
+            .map(line -> line.replaceFirst("^\\s*(\\d+[.、)）]|[-*•])\\s*", "").trim())
+            .filter(line -> !line.isEmpty())
+            .limit(RELATED_QUESTION_COUNT)
+            .collect(Collectors.toList());
+
+        log.debug("相关问题生成完成: {} 个, 耗时 {}ms", questions.size(), System.currentTimeMillis() - startTime);
+        return questions;
+    }
+
+    private void cacheRelatedQuestions(String cacheKey, List<String> questions) {
+        try {
+            redisTemplate.opsForValue().set(cacheKey, new ArrayList<>(questions), RELATED_CACHE_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("写入相关问题缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private void recordResult(String enrichmentKey, List<String> questions, Throwable error) {
+        try {
+            if (error != null) {
+                log.warn("相关问题生成失败: {}", error.getMessage());
+                redisTemplate.opsForHash().put(enrichmentKey, "status", STATUS_FAILED);
+                return;
+            }
+            redisTemplate.opsForHash().put(enrichmentKey, "relatedQuestions", new ArrayList<>(questions));
+            redisTemplate.opsForHash().put(enrichmentKey, "status", STATUS_COMPLETED);
+        } catch (Exception e) {
+            log.warn("记录回答增强结果失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存键：知识库ID排序后与归一化的问题一起取摘要
+     */
+    private String relatedCacheKey(String query, List<String> knowledgeBaseIds) {
+        String scope = knowledgeBaseIds == null ? "" : knowledgeBaseIds.stream()
+            .sorted()
+            .collect(Collectors.joining(","));
+        String normalized = query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return RELATED_CACHE_PREFIX + sha256(scope + "|" + normalized);
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,20 +1,50 @@
 package com.mtm.backend.service.rag;
 
+import com.alibaba.cloud.ai.memory.jdbc.MysqlChatMemoryRepository;
+import com.mtm.backend.enums.ChatClientScenario;
+import com.mtm.backend.enums.LlmLane;
+import com.mtm.backend.enums.RetrievalMode;
 import com.mtm.backend.model.DTO.RAGQueryDTO;
 import com.mtm.backend.model.VO.RAGResponseVO;
+import com.mtm.backend.service.knowledge.KnowledgeAccessCache;
+import com.mtm.backend.service.llm.ChatClientRegistry;
+import com.mtm.backend.service.llm.InterruptedAnswers;
+import com.mtm.backend.service.llm.LlmCallScheduler;
+import com.mtm.backend.service.llm.LlmRequestCoalescer;
+import com.mtm.backend.service.llm.ModelCallContext;
+import com.mtm.backend.service.llm.ModelRouter;
+import com.mtm.backend.service.llm.RequestHedger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
-import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -26,55 +56,86 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ChatService {
 
+    /** 流式对话的SSE事件类型 */
+    public static final String EVENT_REFERENCES = "references";
+    public static final String EVENT_TOKEN = "token";
+    public static final String EVENT_USAGE = "usage";
+    public static final String EVENT_RELATED = "related";
+    public static final String EVENT_ERROR = "error";
+
+    /** 检索、记忆、权限等并发准备阶段的整体截止时间 */
+    private static final long PREPARE_DEADLINE_MS = 5000;
+
+    /** 流式回答结束后在同一连接上等待相关问题的时间 */
+    private static final long RELATED_EVENT_WAIT_MS = 8000;
+
     private final VectorStore vectorStore;
-    private final ChatClient.Builder chatClientBuilder;
+    private final ChatClientRegistry chatClientRegistry;
+    private final SearchService searchService;
+    private final ExactRerankService exactRerankService;
+    private final FilteredSearchPlanner filteredSearchPlanner;
+    private final KnowledgeAccessCache knowledgeAccessCache;
+    private final MysqlChatMemoryRepository chatMemoryRepository;
+    private final AsyncTaskExecutor ragPrepareExecutor;
+    private final Scheduler blockingScheduler;
+    private final AnswerEnrichmentService answerEnrichmentService;
+    private final ContextPacker contextPacker;
+    private final LlmRequestCoalescer llmRequestCoalescer;
+    private final LlmCallScheduler llmCallScheduler;
+    private final RequestHedger requestHedger;
+    private final ModelRouter modelRouter;
 
     /**
-     * RAG对话 - 使用QuestionAnswerAdvisor
+     * RAG对话 - 使用预构建的RAG客户端与PreparedContextAdvisor
      */
     public RAGResponseVO chat(RAGQueryDTO queryDTO, Integer userId) {
         try {
             long startTime = System.currentTimeMillis();
             
-            // 验证权限
-            validateAccess(queryDTO.getKnowledgeBaseId(), userId);
-            
-            // 构建搜索请求
-            SearchRequest searchRequest = createSearchRequest(queryDTO);
-            
-            // 使用QuestionAnswerAdvisor
-            QuestionAnswerAdvisor ragAdvisor = QuestionAnswerAdvisor.builder(vectorStore)
-                .searchRequest(searchRequest)
-                .build();
-            
-            // 构建时注册Advisor（推荐模式）
-            ChatClient chatClient = chatClientBuilder
-                .defaultAdvisors(ragAdvisor)
-                .build();
+            // 权限校验、上下文检索、对话记忆、参考文档并发准备
+            PreparedInputs inputs = prepareInputs(queryDTO, userId, true);
             
             // 构建提示词
             String prompt = buildPrompt(queryDTO);
             
-            // 执行对话
-            String answer = chatClient.prompt()
-                .user(prompt)
-                .call()
-                .content();
+            // 执行对话，预先检索的上下文通过Advisor参数交给预构建客户端上的PreparedContextAdvisor；
+            // 无会话的相同在途请求合并为一次调用；RAG客户端不带记忆Advisor（记忆由saveTurn写入），调用幂等，可对冲；
+            // 对冲请求另取一个调度许可，落后的请求不会被取消，执行完才归还许可
+            int estimatedTokens = estimateTokens(prompt, inputs);
+            ModelRouter.Decision route = routeRag(queryDTO, estimatedTokens);
+            String answer = llmRequestCoalescer.call(coalescingKey(queryDTO, prompt, inputs.context(), route), () ->
+                llmCallScheduler.call(LlmLane.INTERACTIVE, estimatedTokens, () ->
+                    modelRouter.timed(route, () ->
+                        requestHedger.call("chat.rag:" + route.model(), () -> chatClientRegistry.get(ChatClientScenario.RAG)
+                            .prompt()
+                            .options(chatClientRegistry.options(ChatClientScenario.RAG, route.model()))
+                            .messages(inputs.history())
+                            .advisors(a -> a.param(PreparedContextAdvisor.CONTEXT_DOCUMENTS, inputs.context()))
+                            .user(prompt)
+                            .call()
+                            .content(),
+                            hedge -> () -> llmCallScheduler.call(LlmLane.INTERACTIVE, estimatedTokens, hedge)))));
             
-            // 获取参考文档
-            List<Map<String, Object>> references = getReferences(queryDTO);
+            saveTurn(queryDTO, answer);
             
-            // 生成相关问题
-            List<String> relatedQuestions = generateRelatedQuestions(queryDTO.getQuery());
+            // 参考文档（与检索并发获取）
+            List<Map<String, Object>> references = inputs.references();
+            
+            // 相关问题在回答之后异步生成；命中缓存时直接返回，否则客户端凭messageId后续获取
+            String messageId = generateMessageId();
+            List<String> relatedQuestions = answerEnrichmentService.enrichAsync(messageId, userId,
+                queryDTO.getQuery(), resolveKnowledgeBaseIds(queryDTO), answer).getNow(null);
             
             double processingTime = (System.currentTimeMillis() - startTime) / 1000.0;
             
             return RAGResponseVO.builder()
                 .answer(answer)
                 .conversationId(queryDTO.getConversationId())
-                .messageId(generateMessageId())
+                .messageId(messageId)
                 .references(references)
-                .relatedQuestions(relatedQuestions)
+                .relatedQuestions(relatedQuestions != null ? relatedQuestions : new ArrayList<>())
+                .relatedQuestionsPending(relatedQuestions == null)
+                .model(route.model())
                 .processingTime(processingTime)
                 .timestamp(new Date())
                 .build();
@@ -86,37 +147,122 @@ public class ChatService {
     }
 
     /**
-     * 流式RAG对话
+     * 流式RAG对话 - 类型化SSE事件
+     * 检索完成后立即推送references事件，随后逐个推送token事件，最后推送usage事件（令牌用量与各阶段耗时）；
+     * 上下文只检索一次，参考来源即为实际送入模型的上下文
      */
-    public Flux<String> chatStream(RAGQueryDTO queryDTO, Integer userId) {
-        try {
-            // 验证权限
-            validateAccess(queryDTO.getKnowledgeBaseId(), userId);
-            
-            // 构建搜索请求
-            SearchRequest searchRequest = createSearchRequest(queryDTO);
-            
-            // 使用QuestionAnswerAdvisor
-            QuestionAnswerAdvisor ragAdvisor = QuestionAnswerAdvisor.builder(vectorStore)
-                .searchRequest(searchRequest)
-                .build();
-            
-            ChatClient chatClient = chatClientBuilder
-                .defaultAdvisors(ragAdvisor)
-                .build();
-            
-            String prompt = buildPrompt(queryDTO);
-            
-            // 返回流式响应
-            return chatClient.prompt()
-                .user(prompt)
-                .stream()
-                .content();
-                
-        } catch (Exception e) {
-            log.error("流式RAG对话失败", e);
-            return Flux.error(new RuntimeException("流式RAG对话失败: " + e.getMessage()));
-        }
+    public Flux<ServerSentEvent<Object>> chatStream(RAGQueryDTO queryDTO, Integer userId) {
+        long startTime = System.currentTimeMillis();
+        String messageId = generateMessageId();
+
+        Mono<PreparedInputs> inputsMono = Mono.fromCallable(() -> prepareInputs(queryDTO, userId, false))
+            .subscribeOn(blockingScheduler);
+
+        return inputsMono
+            .flatMapMany(inputs -> {
+                List<Document> documents = inputs.context();
+                long retrievalMs = System.currentTimeMillis() - startTime;
+                log.debug("流式RAG检索完成: {} 个上下文文档, 耗时 {}ms", documents.size(), retrievalMs);
+
+                Map<String, Object> referencesPayload = new HashMap<>();
+                referencesPayload.put("messageId", messageId);
+                referencesPayload.put("conversationId", queryDTO.getConversationId());
+                referencesPayload.put("references", documents.stream()
+                    .map(this::toReference)
+                    .collect(Collectors.toList()));
+                ServerSentEvent<Object> referencesEvent = sseEvent(EVENT_REFERENCES, referencesPayload);
+
+                AtomicReference<Usage> usage = new AtomicReference<>();
+                AtomicLong firstTokenAt = new AtomicLong();
+                AtomicInteger tokenEvents = new AtomicInteger();
+                // 取消可能与令牌写入并发发生
+                StringBuffer answer = new StringBuffer();
+                AtomicReference<CompletableFuture<List<String>>> enrichment = new AtomicReference<>();
+
+                // 已检索到的上下文直接交给Advisor，不再重复检索；无会话的相同在途请求共享同一上游流
+                String prompt = buildPrompt(queryDTO);
+                int estimatedTokens = estimateTokens(prompt, inputs);
+                ModelRouter.Decision route = routeRag(queryDTO, estimatedTokens);
+                Flux<ChatResponse> responses = llmRequestCoalescer.stream(coalescingKey(queryDTO, prompt, documents, route), () ->
+                    llmCallScheduler.stream(LlmLane.INTERACTIVE, estimatedTokens, () ->
+                        modelRouter.timed(route, chatClientRegistry.get(ChatClientScenario.RAG)
+                            .prompt()
+                            .options(chatClientRegistry.options(ChatClientScenario.RAG, route.model()))
+                            .messages(inputs.history())
+                            .advisors(a -> a.param(PreparedContextAdvisor.CONTEXT_DOCUMENTS, documents))
+                            .user(prompt)
+                            .stream()
+                            .chatResponse())));
+
+                Flux<ServerSentEvent<Object>> tokens = responses
+                    .doOnNext(response -> {
+                        if (response.getMetadata() != null && response.getMetadata().getUsage() != null
+                            && response.getMetadata().getUsage().getTotalTokens() != null
+                            && response.getMetadata().getUsage().getTotalTokens() > 0) {
+                            usage.set(response.getMetadata().getUsage());
+                        }
+                    })
+                    .map(response -> response.getResult() != null && response.getResult().getOutput().getText() != null
+                        ? response.getResult().getOutput().getText() : "")
+                    .filter(text -> !text.isEmpty())
+                    .doOnNext(text -> {
+                        firstTokenAt.compareAndSet(0, System.currentTimeMillis());
+                        tokenEvents.incrementAndGet();
+                        answer.append(text);
+                    })
+                    .doOnComplete(() -> {
+                        saveTurn(queryDTO, answer.toString());
+                        enrichment.set(answerEnrichmentService.enrichAsync(messageId, userId, queryDTO.getQuery(),
+                            resolveKnowledgeBaseIds(queryDTO), answer.toString()));
+                    })
+                    // 客户端断开取消生成时，已生成的部分回答加中断标记写入记忆；取消发生在容器线程上，不在其上写库
+                    .doOnCancel(() -> {
+                        String partial = answer.toString();
+                        blockingScheduler.schedule(() -> saveTurn(queryDTO, InterruptedAnswers.mark(partial)));
+                    })
+                    .map(text -> sseEvent(EVENT_TOKEN, text));
+
+                Mono<ServerSentEvent<Object>> usageEvent = Mono.fromSupplier(() -> {
+                    long totalMs = System.currentTimeMillis() - startTime;
+                    Map<String, Object> payload = new HashMap<>();
+                    payload.put("messageId", messageId);
+                    payload.put("model", route.model());
+                    Usage finalUsage = usage.get();
+                    if (finalUsage != null) {
+                        payload.put("promptTokens", finalUsage.getPromptTokens());
+                        payload.put("completionTokens", finalUsage.getCompletionTokens());
+                        payload.put("totalTokens", finalUsage.getTotalTokens());
+                    }
+                    Map<String, Object> timing = new HashMap<>();
+                    timing.put("retrievalMs", retrievalMs);
+                    timing.put("firstTokenMs", firstTokenAt.get() > 0 ? firstTokenAt.get() - startTime : null);
+                    timing.put("totalMs", totalMs);
+                    payload.put("timing", timing);
+                    payload.put("tokenEvents", tokenEvents.get());
+                    return sseEvent(EVENT_USAGE, payload);
+                });
+
+                // 回答已全部送出后，在同一连接上等待相关问题；超时则由客户端凭messageId后续获取
+                Mono<ServerSentEvent<Object>> relatedEvent = Mono.defer(() -> enrichment.get() == null
+                        ? Mono.<List<String>>empty()
+                        : Mono.fromFuture(enrichment.get(), true))
+                    .timeout(Duration.ofMillis(RELATED_EVENT_WAIT_MS))
+                    .filter(questions -> !questions.isEmpty())
+                    .map(questions -> sseEvent(EVENT_RELATED, Map.of(
+                        "messageId", messageId,
+                        "relatedQuestions", questions)))
+                    .onErrorResume(e -> Mono.empty());
+
+                return Flux.concat(Mono.just(referencesEvent), tokens, usageEvent, relatedEvent);
+            })
+            .onErrorResume(e -> {
+                log.error("流式RAG对话失败", e);
+                return Flux.just(sseEvent(EVENT_ERROR, Map.of(
+                    "messageId", messageId,
+                    "message", "流式RAG对话失败: " + e.getMessage())));
+            })
+            // 模型调用在检索线程上订阅，入口接口在请求线程上组装时记录
+            .contextWrite(ModelCallContext.captureEndpoint());
     }
 
     /**
@@ -124,12 +270,22 @@ public class ChatService {
      */
     public String simpleChat(String message) {
         try {
-            ChatClient chatClient = chatClientBuilder.build();
-            
-            return chatClient.prompt()
-                .user(message)
-                .call()
-                .content();
+            int estimatedTokens = LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS, message);
+            ModelRouter.Decision route = modelRouter.route(ModelRouter.RoutingRequest.builder()
+                .clientScenario(ChatClientScenario.DEFAULT)
+                .question(message)
+                .estimatedTokens(estimatedTokens)
+                .build());
+            // 对冲请求另取一个调度许可
+            return llmCallScheduler.call(LlmLane.INTERACTIVE, estimatedTokens, () ->
+                modelRouter.timed(route, () ->
+                    requestHedger.call("chat.simple:" + route.model(), () -> chatClientRegistry.get(ChatClientScenario.DEFAULT)
+                        .prompt()
+                        .options(chatClientRegistry.options(ChatClientScenario.DEFAULT, route.model()))
+                        .user(message)
+                        .call()
+                        .content(),
+                        hedge -> () -> llmCallScheduler.call(LlmLane.INTERACTIVE, estimatedTokens, hedge))));
                 
         } catch (Exception e) {
             log.error("简单对话失败", e);
@@ -137,6 +293,194 @@ public class ChatService {
         }
     }
 
+    /**
+     * 并发准备LLM调用的输入：知识库权限校验、上下文检索（嵌入+向量检索）、对话记忆加载、参考文档检索同时启动，
+     * 统一按截止时间汇合，首个token的等待时间取决于最慢的阶段而不是各阶段之和。
+     * 检索是推测执行的：只有权限校验通过后其结果才会被使用
+     */
+    private PreparedInputs prepareInputs(RAGQueryDTO queryDTO, Integer userId, boolean withReferences) {
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + PREPARE_DEADLINE_MS;
+        List<String> knowledgeBaseIds = resolveKnowledgeBaseIds(queryDTO);
+        SearchRequest searchRequest = createSearchRequest(queryDTO);
+
+        // 以Future提交而不是CompletableFuture：cancel(true)能中断仍在执行的阶段
+        Future<?> access = ragPrepareExecutor.submit(() -> validateAccess(knowledgeBaseIds, userId));
+        // 检索后按回答模式的令牌预算装配上下文：截尾、合并相邻分块、去除重叠
+        Future<List<Document>> context = ragPrepareExecutor.submit(
+            () -> contextPacker.pack(createContextStore(queryDTO, searchRequest).similaritySearch(searchRequest),
+                queryDTO.getAnswerMode()));
+        Future<List<Message>> history = ragPrepareExecutor.submit(() -> loadHistory(queryDTO.getConversationId()));
+        Future<List<Map<String, Object>>> references = withReferences
+            ? ragPrepareExecutor.submit(() -> getReferences(queryDTO))
+            : CompletableFuture.completedFuture(List.of());
+
+        // 权限校验失败或超时都拒绝请求，此时中断并丢弃推测执行的检索、记忆与参考文档加载
+        List<Document> documents;
+        try {
+            await(access, deadline, "知识库权限校验", null, true);
+            documents = await(context, deadline, "上下文检索", null, true);
+        } catch (RuntimeException e) {
+            cancelAll(context, history, references);
+            throw e;
+        }
+        // 记忆与参考文档超时降级为空，不阻塞回答
+        List<Message> messages = await(history, deadline, "对话记忆加载", List.of(), false);
+        List<Map<String, Object>> referenceList = await(references, deadline, "参考文档检索", List.of(), false);
+
+        log.debug("RAG输入准备完成: 上下文 {} 个, 历史消息 {} 条, 耗时 {}ms",
+            documents.size(), messages.size(), System.currentTimeMillis() - startTime);
+        return new PreparedInputs(documents, messages, referenceList);
+    }
+
+    /**
+     * 按截止时间等待某个准备阶段
+     *
+     * @param required 必需阶段失败或超时时抛出异常，否则返回fallback
+     */
+    private <T> T await(Future<T> future, long deadline, String stage, T fallback, boolean required) {
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            if (required) {
+                throw new RuntimeException(stage + "超时");
+            }
+            log.warn("{}超时，已降级跳过", stage);
+            return fallback;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (required) {
+                throw cause instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException(stage + "失败: " + cause.getMessage(), cause);
+            }
+            log.warn("{}失败，已降级跳过: {}", stage, cause.getMessage());
+            return fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(stage + "被中断");
+        }
+    }
+
+    /**
+     * 中断尚未结束的准备阶段，已结束的阶段不受影响
+     */
+    private static void cancelAll(Future<?>... futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 加载会话的历史消息，未指定会话时为空
+     */
+    private List<Message> loadHistory(String conversationId) {
+        if (conversationId == null || conversationId.isBlank()) {
+            return List.of();
+        }
+        return chatMemory().get(conversationId);
+    }
+
+    /**
+     * 将本轮问答写入会话记忆（记录原始问题而非拼接后的提示词）
+     */
+    private void saveTurn(RAGQueryDTO queryDTO, String answer) {
+        String conversationId = queryDTO.getConversationId();
+        if (conversationId == null || conversationId.isBlank() || answer == null || answer.isEmpty()) {
+            return;
+        }
+        try {
+            chatMemory().add(conversationId, List.of(new UserMessage(queryDTO.getQuery()), new AssistantMessage(answer)));
+        } catch (Exception e) {
+            log.warn("保存会话记忆失败: conversationId={}, {}", conversationId, e.getMessage());
+        }
+    }
+
+    private ChatMemory chatMemory() {
+        return MessageWindowChatMemory.builder()
+            .chatMemoryRepository(chatMemoryRepository)
+            .build();
+    }
+
+    /**
+     * 创建本次请求的上下文检索视图：单知识库精确重排检索，多知识库并发扇出检索
+     */
+    private ContextRetrievalStore createContextStore(RAGQueryDTO queryDTO, SearchRequest searchRequest) {
+        List<String> knowledgeBaseIds = resolveKnowledgeBaseIds(queryDTO);
+        IntFunction<List<Document>> retriever = knowledgeBaseIds.size() > 1
+            ? topK -> searchService.multiKnowledgeBaseSearch(queryDTO.getQuery(), knowledgeBaseIds, topK,
+                searchRequest.getSimilarityThreshold(), RetrievalMode.VECTOR, SearchService.DEFAULT_PER_KB_DEADLINE_MS)
+            : topK -> filteredSearchPlanner.search(queryDTO.getQuery(), knowledgeBaseFilter(queryDTO), topK,
+                searchRequest.getSimilarityThreshold());
+        return new ContextRetrievalStore(vectorStore, exactRerankService, retriever,
+            searchRequest.getTopK(), queryDTO.getMmrLambda());
+    }
+
+    /**
+     * 在途请求合并键；带会话ID的请求依赖各自的历史并写入各自的记忆，不参与合并（返回null）
+     */
+    private String coalescingKey(RAGQueryDTO queryDTO, String prompt, List<Document> context, ModelRouter.Decision route) {
+        if (!llmRequestCoalescer.isEnabled()
+            || (queryDTO.getConversationId() != null && !queryDTO.getConversationId().isBlank())) {
+            return null;
+        }
+        String contextIds = context.stream().map(Document::getId).collect(Collectors.joining(","));
+        return LlmRequestCoalescer.key(ChatClientScenario.RAG.name(), prompt, resolveKnowledgeBaseIds(queryDTO),
+            contextIds, route.model());
+    }
+
+    /**
+     * RAG问答按回答模式、问题与提示词大小（含上下文与历史）选择模型
+     */
+    private ModelRouter.Decision routeRag(RAGQueryDTO queryDTO, int estimatedTokens) {
+        return modelRouter.route(ModelRouter.RoutingRequest.builder()
+            .clientScenario(ChatClientScenario.RAG)
+            .answerMode(queryDTO.getAnswerMode())
+            .question(queryDTO.getQuery())
+            .estimatedTokens(estimatedTokens)
+            .build());
+    }
+
+    /**
+     * 合并单个与多个知识库ID参数
+     */
+    private List<String> resolveKnowledgeBaseIds(RAGQueryDTO queryDTO) {
+        Set<String> knowledgeBaseIds = new LinkedHashSet<>();
+        if (queryDTO.getKnowledgeBaseId() != null) {
+            knowledgeBaseIds.add(queryDTO.getKnowledgeBaseId());
+        }
+        if (queryDTO.getKnowledgeBaseIds() != null) {
+            queryDTO.getKnowledgeBaseIds().stream()
+                .filter(Objects::nonNull)
+                .forEach(knowledgeBaseIds::add);
+        }
+        return new ArrayList<>(knowledgeBaseIds);
+    }
+
+    /**
+     * 调度用的令牌估算：提示词 + 上下文文档 + 历史消息 + 预期输出
+     */
+    private int estimateTokens(String prompt, PreparedInputs inputs) {
+        int estimate = LlmCallScheduler.estimateTokens(LlmCallScheduler.DEFAULT_OUTPUT_TOKENS, prompt);
+        for (Document document : inputs.context()) {
+            estimate += document.getText() != null ? document.getText().length() : 0;
+        }
+        for (Message message : inputs.history()) {
+            estimate += message.getText() != null ? message.getText().length() : 0;
+        }
+        return estimate;
+    }
+
+    /**
+     * 知识库过滤条件：单个知识库为等值过滤，多个为IN过滤
+     */
+    private VectorFilter knowledgeBaseFilter(RAGQueryDTO queryDTO) {
+        return VectorFilter.builder()
+            .in("knowledge_base_id", resolveKnowledgeBaseIds(queryDTO))
+            .build();
+    }
+
     /**
      * 创建搜索请求
      */
@@ -148,15 +492,9 @@ public class ChatService {
                 .similarityThreshold(0.7);  // Spring AI推荐阈值
             
             // 构建过滤条件
-            if (queryDTO.getKnowledgeBaseId() != null) {
-                log.debug("创建知识库过滤条件: knowledge_base_id = {}", queryDTO.getKnowledgeBaseId());
-                
-                FilterExpressionBuilder filterBuilder = new FilterExpressionBuilder();
-                Filter.Expression filterExpression = filterBuilder
-                    .eq("knowledge_base_id", queryDTO.getKnowledgeBaseId())
-                    .build();
+            Filter.Expression filterExpression = filteredSearchPlanner.compile(knowledgeBaseFilter(queryDTO)).expression();
+            if (filterExpression != null) {
                 searchBuilder.filterExpression(filterExpression);
-                
                 log.debug("过滤表达式: {}", filterExpression);
             }
             
@@ -209,30 +547,21 @@ public class ChatService {
                 return new ArrayList<>();
             }
             
-            SearchRequest.Builder searchBuilder = SearchRequest.builder()
-                .query(queryDTO.getQuery())
-                .topK(3)  // 限制参考文档数量
-                .similarityThreshold(0.7);
-            
-            if (queryDTO.getKnowledgeBaseId() != null) {
-                FilterExpressionBuilder filterBuilder = new FilterExpressionBuilder();
-                Filter.Expression filterExpression = filterBuilder
-                    .eq("knowledge_base_id", queryDTO.getKnowledgeBaseId())
-                    .build();
-                searchBuilder.filterExpression(filterExpression);
-            }
-            
-            List<Document> documents = vectorStore.similaritySearch(searchBuilder.build());
+            // 按检索模式路由：关键字查询只走BM25全文检索，不产生嵌入调用
+            RetrievalMode retrievalMode = RetrievalMode.fromCode(queryDTO.getRetrievalMode());
+            List<String> knowledgeBaseIds = resolveKnowledgeBaseIds(queryDTO);
+            List<Document> documents = knowledgeBaseIds.size() > 1
+                ? searchService.multiKnowledgeBaseSearch(queryDTO.getQuery(), knowledgeBaseIds, 3, 0.7,
+                    retrievalMode, SearchService.DEFAULT_PER_KB_DEADLINE_MS)
+                : searchService.semanticSearch(
+                    queryDTO.getQuery(),
+                    knowledgeBaseIds.isEmpty() ? null : knowledgeBaseIds.get(0),
+                    3,  // 限制参考文档数量
+                    0.7,
+                    retrievalMode);
             
             return documents.stream()
-                .map(doc -> {
-                    Map<String, Object> reference = new HashMap<>();
-                    reference.put("resourceId", doc.getMetadata().get("resource_id"));
-                    reference.put("title", doc.getMetadata().get("title"));
-                    reference.put("relevanceScore", calculateRelevanceScore(doc));
-                    reference.put("excerpt", truncateText(doc.getText(), 200));
-                    return reference;
-                })
+                .map(this::toReference)
                 .collect(Collectors.toList());
                 
         } catch (Exception e) {
@@ -242,40 +571,39 @@ public class ChatService {
     }
 
     /**
-     * 生成相关问题
+     * 参考文档的对外表示
      */
-    private List<String> generateRelatedQuestions(String query) {
-        // TODO: 可以使用AI来生成更智能的相关问题
-        return Arrays.asList(
-            "能否提供更多相关的例子？",
-            "这个概念在实际应用中如何使用？",
-            "有哪些常见的误区需要注意？"
-        );
+    private Map<String, Object> toReference(Document doc) {
+        Map<String, Object> reference = new HashMap<>();
+        reference.put("resourceId", doc.getMetadata().get("resource_id"));
+        reference.put("title", doc.getMetadata().get("title"));
+        reference.put("relevanceScore", calculateRelevanceScore(doc));
+        reference.put("excerpt", truncateText(doc.getText(), 200));
+        return reference;
+    }
+
+    private ServerSentEvent<Object> sseEvent(String event, Object data) {
+        return ServerSentEvent.builder(data)
+            .event(event)
+            .build();
     }
 
     /**
-     * 验证知识库访问权限
+     * 验证知识库访问权限（归属缓存命中时不访问数据库）
      */
-    private void validateAccess(String knowledgeBaseId, Integer userId) {
-        if (knowledgeBaseId == null) {
+    private void validateAccess(List<String> knowledgeBaseIds, Integer userId) {
+        if (knowledgeBaseIds.isEmpty()) {
             return; // 全局搜索，不需要特定权限验证
         }
-        
-        // TODO: 实现知识库权限验证逻辑
-        // 可以注入KnowledgeBaseService或直接查询数据库
+        knowledgeAccessCache.checkKnowledgeBaseAccess(knowledgeBaseIds, userId);
     }
 
     /**
      * 计算相关度评分
      */
     private double calculateRelevanceScore(Document document) {
-        // Spring AI会在元数据中提供相似度分数
-        Object distance = document.getMetadata().get("distance");
-        if (distance instanceof Number) {
-            // 将距离转换为相似度（1 - distance）
-            return Math.max(0, 1.0 - ((Number) distance).doubleValue());
-        }
-        return 0.95; // 默认评分
+        // 精确余弦得分（见ExactRerankService），缺失时由向量距离换算
+        return ExactRerankService.relevanceOf(document);
     }
 
     /**
@@ -294,4 +622,11 @@ public class ChatService {
     private String generateMessageId() {
         return "msg_" + UUID.randomUUID().toString().replace("-", "");
     }
-}
\ No newline at end of file
+
+    /**
+     * 并发准备阶段的产出
+     */
+    private record PreparedInputs(List<Document> context, List<Message> history,
+                                  List<Map<String, Object>> references) {
+    }
+}
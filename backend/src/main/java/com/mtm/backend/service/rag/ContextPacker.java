@@ -0,0 +1,212 @@
+package com.mtm.backend.service.rag;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 上下文装配器 - 在检索结果交给模型之前压缩上下文
+ * 1. 相对最高分动态截掉低分尾部
+ * 2. 按回答模式的令牌预算贪心选取（使用入库时预先计算的 token_count）
+ * 3. 同一资源中 chunk_index 相邻的分块合并，并去掉相邻分块之间的重叠文本
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextPacker {
+
+    /** 分块元数据：入库时计算的令牌数 */
+    public static final String TOKEN_COUNT_KEY = "token_count";
+
+    /** 与最高分相差超过该值的文档视为低分尾部 */
+    private static final double TAIL_SCORE_MARGIN = 0.15;
+
+    /** 判定为重叠文本的最小长度（字符），过短的公共前后缀可能只是巧合 */
+    private static final int MIN_OVERLAP_CHARS = 16;
+
+    private final TokenCountEstimator tokenCountEstimator;
+
+    /**
+     * 各回答模式的上下文令牌预算
+     */
+    public int budgetFor(String answerMode) {
+        if (answerMode == null) {
+            return 3000;
+        }
+        return switch (answerMode) {
+            case "concise" -> 1500;
+            case "tutorial" -> 4500;
+            default -> 3000;
+        };
+    }
+
+    /**
+     * 装配上下文
+     *
+     * @param documents  检索结果（已按相关度排序或带得分）
+     * @param answerMode 回答模式，决定令牌预算
+     * @return 合并去重后的上下文文档，按相关度降序
+     */
+    public List<Document> pack(List<Document> documents, String answerMode) {
+        if (documents.isEmpty()) {
+            return documents;
+        }
+        int budget = budgetFor(answerMode);
+
+        List<Document> ranked = new ArrayList<>(documents);
+        ranked.sort(Comparator.comparingDouble(ExactRerankService::relevanceOf).reversed());
+
+        // 动态截尾：没有得分信息（如纯全文召回）时不截
+        double best = ExactRerankService.relevanceOf(ranked.get(0));
+        if (best > 0) {
+            ranked.removeIf(doc -> ExactRerankService.relevanceOf(doc) < best - TAIL_SCORE_MARGIN);
+        }
+
+        // 预算内贪心选取，最相关的文档总会被选中
+        List<Document> selected = new ArrayList<>();
+        int used = 0;
+        for (Document doc : ranked) {
+            int tokens = tokenCount(doc);
+            if (!selected.isEmpty() && used + tokens > budget) {
+                continue;
+            }
+            selected.add(doc);
+            used += tokens;
+        }
+
+        List<Document> packed = mergeAdjacent(selected);
+        log.debug("上下文装配: 检索 {} 个 -> 选取 {} 个 -> 合并为 {} 段, 约 {} tokens (预算 {})",
+            documents.size(), selected.size(), packed.size(),
+            packed.stream().mapToInt(this::tokenCount).sum(), budget);
+        return packed;
+    }
+
+    /**
+     * 文档令牌数：优先使用入库时记录的值，缺失时现场估算
+     */
+    public int tokenCount(Document document) {
+        Object stored = document.getMetadata().get(TOKEN_COUNT_KEY);
+        if (stored instanceof Number number) {
+            return number.intValue();
+        }
+        if (stored != null) {
+            try {
+                return (int) Double.parseDouble(stored.toString());
+            } catch (NumberFormatException ignored) {
+                // 回退到估算
+            }
+        }
+        return estimate(document.getText());
+    }
+
+    public int estimate(String text) {
+        return text == null || text.isEmpty() ? 0 : tokenCountEstimator.estimate(text);
+    }
+
+    // ============ 私有工具方法 ============
+
+    /**
+     * 按资源分组，chunk_index 连续的分块合并为一段
+     */
+    private List<Document> mergeAdjacent(List<Document> selected) {
+        Map<Object, List<Document>> byResource = new LinkedHashMap<>();
+        List<Document> standalone = new ArrayList<>();
+        for (Document doc : selected) {
+            Object resourceId = doc.getMetadata().get("resource_id");
+            if (resourceId == null || chunkIndex(doc) == null) {
+                standalone.add(doc);
+            } else {
+                byResource.computeIfAbsent(resourceId.toString(), key -> new ArrayList<>()).add(doc);
+            }
+        }
+
+        List<Document> merged = new ArrayList<>(standalone);
+        for (List<Document> chunks : byResource.values()) {
+            chunks.sort(Comparator.comparingInt(this::chunkIndex));
+            List<Document> run = new ArrayList<>();
+            for (Document chunk : chunks) {
+                if (!run.isEmpty() && chunkIndex(chunk) != chunkIndex(run.get(run.size() - 1)) + 1) {
+                    merged.add(mergeRun(run));
+                    run = new ArrayList<>();
+                }
+                run.add(chunk);
+            }
+            merged.add(mergeRun(run));
+        }
+
+        merged.sort(Comparator.comparingDouble(ExactRerankService::relevanceOf).reversed());
+        return merged;
+    }
+
+    private Document mergeRun(List<Document> run) {
+        if (run.size() == 1) {
+            return run.get(0);
+        }
+        StringBuilder text = new StringBuilder(run.get(0).getText());
+        int tokens = tokenCount(run.get(0));
+        Document best = run.get(0);
+        for (int i = 1; i < run.size(); i++) {
+            Document chunk = run.get(i);
+            String next = chunk.getText() != null ? chunk.getText() : "";
+            int overlap = overlapLength(text, next);
+            text.append(overlap > 0 ? "" : "\n").append(next, overlap, next.length());
+            tokens += tokenCount(chunk) - (overlap > 0 ? estimate(next.substring(0, overlap)) : 0);
+            if (ExactRerankService.relevanceOf(chunk) > ExactRerankService.relevanceOf(best)) {
+                best = chunk;
+            }
+        }
+
+        // 以得分最高的分块为基准保留元数据与得分
+        Map<String, Object> metadata = new HashMap<>(best.getMetadata());
+        metadata.put(TOKEN_COUNT_KEY, tokens);
+        metadata.put("chunk_index", chunkIndex(run.get(0)));
+        metadata.put("chunk_range", chunkIndex(run.get(0)) + "-" + chunkIndex(run.get(run.size() - 1)));
+        metadata.put("merged_ids", run.stream().map(Document::getId).collect(Collectors.toList()));
+        return best.mutate()
+            .text(text.toString())
+            .metadata(metadata)
+            .build();
+    }
+
+    /**
+     * 前一段结尾与后一段开头的最长公共部分（分块重叠）
+     */
+    static int overlapLength(CharSequence previous, String next) {
+        if (next.length() < MIN_OVERLAP_CHARS || previous.length() < MIN_OVERLAP_CHARS) {
+            return 0;
+        }
+        String prev = previous.toString();
+        String probe = next.substring(0, MIN_OVERLAP_CHARS);
+        int maxLength = Math.min(prev.length(), next.length());
+        // 从最靠前（即最长重叠）的候选位置开始验证
+        int from = prev.indexOf(probe, prev.length() - maxLength);
+        while (from >= 0) {
+            int length = prev.length() - from;
+            if (prev.regionMatches(from, next, 0, length)) {
+                return length;
+            }
+            from = prev.indexOf(probe, from + 1);
+        }
+        return 0;
+    }
+
+    private Integer chunkIndex(Document document) {
+        Object value = document.getMetadata().get("chunk_index");
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value != null) {
+            try {
+                return (int) Double.parseDouble(value.toString());
+            } catch (NumberFormatException ignored) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.service.rag.similarity.MaximalMarginalRelevance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 单次请求的上下文检索视图，交给QuestionAnswerAdvisor使用
+ * 检索固定使用请求构造时确定的检索逻辑（用户原始问题而非拼接后的提示词，单知识库或多知识库扇出），
+ * 之后可选地做MMR多样化，去除重叠分块带来的近似重复上下文。
+ * 只读视图：写操作直接委托给底层向量存储
+ */
+@Slf4j
+public class ContextRetrievalStore implements VectorStore {
+
+    /** MMR候选池相对topK的倍数 */
+    private static final int MMR_POOL_FACTOR = 3;
+
+    private final VectorStore delegate;
+    private final ExactRerankService exactRerankService;
+    private final IntFunction<List<Document>> retriever;
+    private final int topK;
+    private final Double mmrLambda;
+
+    /**
+     * @param retriever 按给定数量检索候选文档
+     * @param mmrLambda MMR相关性权重，为null时不做多样化
+     */
+    public ContextRetrievalStore(VectorStore delegate, ExactRerankService exactRerankService,
+                                 IntFunction<List<Document>> retriever, int topK, Double mmrLambda) {
+        this.delegate = delegate;
+        this.exactRerankService = exactRerankService;
+        this.retriever = retriever;
+        this.topK = topK;
+        this.mmrLambda = mmrLambda;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest ignored) {
+        if (mmrLambda == null) {
+            return retriever.apply(topK);
+        }
+
+        List<Document> pool = retriever.apply(topK * MMR_POOL_FACTOR);
+        if (pool.size() <= topK) {
+            return pool;
+        }
+
+        Map<String, float[]> vectors = exactRerankService.fetchVectors(pool.stream()
+            .map(Document::getId)
+            .toList());
+        double[] relevance = new double[pool.size()];
+        float[][] candidateVectors = new float[pool.size()][];
+        for (int i = 0; i < pool.size(); i++) {
+            relevance[i] = ExactRerankService.relevanceOf(pool.get(i));
+            candidateVectors[i] = vectors.get(pool.get(i).getId());
+        }
+
+        List<Document> selected = new ArrayList<>(topK);
+        for (int index : MaximalMarginalRelevance.select(relevance, candidateVectors, topK, mmrLambda)) {
+            selected.add(pool.get(index));
+        }
+        log.debug("MMR多样化: 候选 {} 个 -> 选中 {} 个, lambda={}", pool.size(), selected.size(), mmrLambda);
+        return selected;
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        delegate.add(documents);
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        delegate.delete(idList);
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        delegate.delete(filterExpression);
+    }
+}
@@ -2,12 +2,14 @@ package com.mtm.backend.service.rag;
 
 import com.mtm.backend.repository.TeachingResource;
 import com.mtm.backend.repository.mapper.TeachingResourceMapper;
+import com.mtm.backend.service.knowledge.KnowledgeAccessCache;
 import com.mtm.backend.utils.LocalFileUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.tokenizer.TokenCountEstimator;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.stereotype.Service;
@@ -32,8 +34,10 @@ import java.util.Map;
 public class DocumentService {
 
     private final TeachingResourceMapper teachingResourceMapper;
+    private final KnowledgeAccessCache knowledgeAccessCache;
     private final TokenTextSplitter textSplitter;
     private final LocalFileUtil localFileUtil;
+    private final TokenCountEstimator tokenCountEstimator;
 
 
     /**
@@ -114,6 +118,7 @@ public class DocumentService {
             metadata.put("id", resource.getId() + "_chunk_" + i);
             metadata.put("resource_id", resource.getId());
             metadata.put("chunk_index", i);
+            metadata.put("token_count", tokenCountEstimator.estimate(doc.getText()));
             
             // 业务元数据
             metadata.put("title", resource.getTitle());
@@ -160,7 +165,6 @@ public class DocumentService {
      * 检查资源是否存在且用户有权限访问
      */
     public boolean validateAccess(String resourceId, Integer userId) {
-        TeachingResource resource = teachingResourceMapper.selectById(resourceId);
-        return resource != null && resource.getUserId().equals(userId);
+        return knowledgeAccessCache.canAccessResource(resourceId, userId);
     }
 }
\ No newline at end of file
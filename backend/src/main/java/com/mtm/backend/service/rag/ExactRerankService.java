@@ -0,0 +1,272 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.config.ModelConfig;
+import com.mtm.backend.service.rag.similarity.VectorMath;
+import com.mtm.backend.service.rag.store.MappedHnswVectorStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.json.Path2;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.RediSearchUtil;
+import redis.clients.jedis.search.SearchResult;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 精确重排服务
+ * 对近似(HNSW)检索的超取候选集取回原始向量，计算精确余弦相似度后重新排序；
+ * 过滤后的候选集足够小时直接暴力精确检索，绕开HNSW的召回损失
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExactRerankService {
+
+    /** 过滤后候选集不超过该规模时走暴力精确检索 */
+    public static final int EXACT_SEARCH_LIMIT = 500;
+
+    /** 精确相似度写入的元数据字段 */
+    public static final String EXACT_SCORE_KEY = "exact_score";
+
+    /** 暴力精确检索中RediSearch返回的余弦距离字段 */
+    private static final String EXACT_DISTANCE_FIELD = "exact_distance";
+
+    /** 近似检索超取倍数 */
+    private static final int OVER_FETCH_FACTOR = 4;
+
+    private final VectorStore vectorStore;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final JedisPooled jedisPooled;
+    private final Executor ragLegExecutor;
+
+    /**
+     * 近似检索 + 精确重排
+     * 查询向量的计算与HNSW超取检索并行进行
+     */
+    public List<Document> search(SearchRequest request) {
+        // 嵌入式存储的候选得分本身就是精确余弦，无需重排
+        if (!(vectorStore instanceof RedisVectorStore)) {
+            return vectorStore.similaritySearch(request);
+        }
+
+        // 与向量存储共用查询向量缓存，两处并发请求只触发一次嵌入调用；
+        // 调用方可能运行在ragSearchExecutor上，查询向量放到内层分支执行器计算，避免同一线程池内嵌套等待
+        CompletableFuture<float[]> queryVector = CompletableFuture.supplyAsync(
+            () -> queryEmbeddingCache.embed(request.getQuery()), ragLegExecutor);
+
+        SearchRequest overFetch = SearchRequest.from(request)
+            .topK(request.getTopK() * OVER_FETCH_FACTOR)
+            .build();
+        List<Document> candidates = vectorStore.similaritySearch(overFetch);
+
+        return rerank(RetrievalLegs.await(queryVector, RetrievalLegs.LEG_TIMEOUT_MS, "查询向量计算"),
+            candidates, request.getTopK(), request.getSimilarityThreshold());
+    }
+
+    /**
+     * 不带过滤条件超取candidates个近似结果，在内存中后过滤后再精确重排
+     * 适用于过滤条件命中大部分文档的场景，避免HNSW在过滤后的子图上遍历
+     */
+    public List<Document> searchWithPostFilter(SearchRequest request, int candidates, Predicate<Document> accept) {
+        CompletableFuture<float[]> queryVector = CompletableFuture.supplyAsync(
+            () -> queryEmbeddingCache.embed(request.getQuery()), ragLegExecutor);
+
+        SearchRequest overFetch = SearchRequest.from(request)
+            .topK(candidates)
+            .filterExpression((Filter.Expression) null)
+            .build();
+        List<Document> filtered = vectorStore.similaritySearch(overFetch).stream()
+            .filter(accept)
+            .collect(Collectors.toList());
+
+        return rerank(RetrievalLegs.await(queryVector, RetrievalLegs.LEG_TIMEOUT_MS, "查询向量计算"),
+            filtered, request.getTopK(), request.getSimilarityThreshold());
+    }
+
+    /**
+     * 对候选文档按精确余弦相似度重排
+     */
+    public List<Document> rerank(float[] queryVector, List<Document> candidates, int topK, double threshold) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Map<String, float[]> vectors = fetchVectors(candidates.stream()
+            .map(Document::getId)
+            .collect(Collectors.toList()));
+
+        List<ScoredDocument> scored = new ArrayList<>(candidates.size());
+        for (Document candidate : candidates) {
+            float[] vector = vectors.get(candidate.getId());
+            if (vector == null) {
+                continue;
+            }
+            scored.add(new ScoredDocument(candidate, VectorMath.cosine(queryVector, vector)));
+        }
+        return topByScore(scored, topK, threshold);
+    }
+
+    /**
+     * 暴力精确检索：过滤条件命中的文档数不超过 {@link #EXACT_SEARCH_LIMIT} 时逐一精确打分
+     * 打分在RediSearch内完成（KNN + HYBRID_POLICY ADHOC_BF：对过滤命中的文档逐一计算余弦距离），
+     * 只返回前topK个文档的正文与元数据，不把候选向量以JSON文本传回应用
+     *
+     * @param redisFilter RediSearch原生过滤子句（如 @knowledge_base_id:{kb}）
+     * @return 候选集过大或不适用时返回empty，由调用方退回近似检索
+     */
+    public Optional<List<Document>> exactSearch(String query, String redisFilter, int topK, double threshold) {
+        if (!(vectorStore instanceof RedisVectorStore) || redisFilter == null || redisFilter.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            long matching = jedisPooled.ftSearch(ModelConfig.VECTOR_INDEX_NAME,
+                new Query(redisFilter).limit(0, 0).dialect(2)).getTotalResults();
+            if (matching > EXACT_SEARCH_LIMIT) {
+                return Optional.empty();
+            }
+            if (matching == 0) {
+                return Optional.of(new ArrayList<>());
+            }
+
+            float[] queryVector = queryEmbeddingCache.embed(query);
+
+            List<String> returnFields = new ArrayList<>();
+            returnFields.add(ModelConfig.VECTOR_CONTENT_FIELD);
+            returnFields.add(EXACT_DISTANCE_FIELD);
+            ModelConfig.VECTOR_METADATA_FIELDS.forEach(field -> returnFields.add(field.name()));
+
+            String knnQuery = "(" + redisFilter + ")=>[KNN $K @" + ModelConfig.VECTOR_EMBEDDING_FIELD
+                + " $BLOB HYBRID_POLICY ADHOC_BF AS " + EXACT_DISTANCE_FIELD + "]";
+            SearchResult result = jedisPooled.ftSearch(ModelConfig.VECTOR_INDEX_NAME,
+                new Query(knnQuery)
+                    .addParam("K", topK)
+                    .addParam("BLOB", RediSearchUtil.toByteArray(queryVector))
+                    .returnFields(returnFields.toArray(new String[0]))
+                    .setSortBy(EXACT_DISTANCE_FIELD, true)
+                    .limit(0, topK)
+                    .dialect(2));
+
+            List<ScoredDocument> scored = new ArrayList<>(result.getDocuments().size());
+            for (redis.clients.jedis.search.Document ftDocument : result.getDocuments()) {
+                if (!ftDocument.hasProperty(EXACT_DISTANCE_FIELD)) {
+                    continue;
+                }
+                // COSINE距离 = 1 - 余弦相似度
+                float score = 1.0f - Float.parseFloat(ftDocument.getString(EXACT_DISTANCE_FIELD));
+                scored.add(new ScoredDocument(toDocument(ftDocument), score));
+            }
+
+            log.debug("暴力精确检索: filter={}, 命中 {} 个, 返回 {} 个", redisFilter, matching, scored.size());
+            return Optional.of(topByScore(scored, topK, threshold));
+
+        } catch (Exception e) {
+            log.warn("暴力精确检索失败，退回近似检索: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 批量取回文档的原始向量（一次JSON.MGET往返）
+     */
+    public Map<String, float[]> fetchVectors(List<String> ids) {
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            return embeddedStore.getVectors(ids);
+        }
+
+        Map<String, float[]> vectors = new HashMap<>();
+        if (ids.isEmpty()) {
+            return vectors;
+        }
+        String[] keys = ids.stream()
+            .map(id -> ModelConfig.VECTOR_KEY_PREFIX + id)
+            .toArray(String[]::new);
+        List<JSONArray> results = jedisPooled.jsonMGet(Path2.of("$." + ModelConfig.VECTOR_EMBEDDING_FIELD), keys);
+
+        for (int i = 0; i < ids.size(); i++) {
+            JSONArray wrapper = results.get(i);
+            if (wrapper == null || wrapper.isEmpty()) {
+                continue;
+            }
+            JSONArray values = wrapper.getJSONArray(0);
+            float[] vector = new float[values.length()];
+            for (int j = 0; j < vector.length; j++) {
+                vector[j] = values.getFloat(j);
+            }
+            vectors.put(ids.get(i), vector);
+        }
+        return vectors;
+    }
+
+    /**
+     * 文档相关度：优先使用精确得分，其次由向量距离换算，都没有时返回0
+     */
+    public static double relevanceOf(Document document) {
+        if (document.getScore() != null) {
+            return Math.max(0, document.getScore());
+        }
+        Object distance = document.getMetadata().get(DocumentMetadata.DISTANCE.value());
+        if (distance instanceof Number) {
+            return Math.max(0, 1.0 - ((Number) distance).doubleValue());
+        }
+        return 0.0;
+    }
+
+    // ============ 私有工具方法 ============
+
+    private List<Document> topByScore(List<ScoredDocument> scored, int topK, double threshold) {
+        return scored.stream()
+            .filter(item -> item.score >= threshold)
+            .sorted(Comparator.comparingDouble((ScoredDocument item) -> item.score).reversed())
+            .limit(topK)
+            .map(item -> {
+                Map<String, Object> metadata = new HashMap<>(item.document.getMetadata());
+                metadata.put(EXACT_SCORE_KEY, item.score);
+                metadata.put(DocumentMetadata.DISTANCE.value(), 1.0f - item.score);
+                return item.document.mutate()
+                    .metadata(metadata)
+                    .score((double) item.score)
+                    .build();
+            })
+            .collect(Collectors.toList());
+    }
+
+    private Document toDocument(redis.clients.jedis.search.Document ftDocument) {
+        Map<String, Object> metadata = new HashMap<>();
+        for (RedisVectorStore.MetadataField field : ModelConfig.VECTOR_METADATA_FIELDS) {
+            if (ftDocument.hasProperty(field.name())) {
+                metadata.put(field.name(), ftDocument.getString(field.name()));
+            }
+        }
+        String id = ftDocument.getId().startsWith(ModelConfig.VECTOR_KEY_PREFIX)
+            ? ftDocument.getId().substring(ModelConfig.VECTOR_KEY_PREFIX.length())
+            : ftDocument.getId();
+        return Document.builder()
+            .id(id)
+            .text(ftDocument.hasProperty(ModelConfig.VECTOR_CONTENT_FIELD)
+                ? ftDocument.getString(ModelConfig.VECTOR_CONTENT_FIELD) : "")
+            .metadata(metadata)
+            .build();
+    }
+
+    private static final class ScoredDocument {
+        private final Document document;
+        private final float score;
+
+        private ScoredDocument(Document document, float score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+}
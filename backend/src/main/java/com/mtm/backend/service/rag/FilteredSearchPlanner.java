@@ -0,0 +1,239 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.config.ModelConfig;
+import com.mtm.backend.service.rag.store.FilterExpressionEvaluator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.search.Query;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 过滤检索规划器
+ * 按过滤条件的命中规模与选择度，在以下三种执行方式中选择：
+ * 命中很少时暴力精确检索；过滤条件只排除少量文档时不带过滤超取再后过滤；其余情况把过滤条件下推为索引预过滤
+ * 编译后的过滤条件与命中数统计都做了缓存，重复的过滤检索不再重复解析和计数
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FilteredSearchPlanner {
+
+    /** 命中比例不低于该值时，无过滤超取的结果中大部分都能通过过滤，走后过滤 */
+    private static final double POST_FILTER_MIN_SELECTIVITY = 0.3;
+
+    /** 后过滤的超取倍数（在 topK / 选择度 的基础上再放大） */
+    private static final int POST_FILTER_OVER_FETCH = 2;
+
+    /** 后过滤单次超取上限，超过时改走预过滤 */
+    private static final int POST_FILTER_MAX_CANDIDATES = 500;
+
+    /** 向量检索耗时指标 */
+    public static final String SEARCH_TIMER = "rag.vector.search";
+
+    private static final int MAX_COMPILED_FILTERS = 1024;
+    private static final long COUNT_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final VectorStore vectorStore;
+    private final JedisPooled jedisPooled;
+    private final ExactRerankService exactRerankService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<VectorFilter, CompiledFilter> compiledFilters = new ConcurrentHashMap<>();
+    private final Map<String, CachedCount> matchCounts = new ConcurrentHashMap<>();
+
+    public enum Strategy {
+        /** 无过滤条件 */
+        UNFILTERED,
+        /** 命中数不超过精确检索上限，暴力精确打分 */
+        EXACT,
+        /** 过滤条件下推到HNSW检索 */
+        PRE_FILTER,
+        /** 无过滤超取后在内存中过滤 */
+        POST_FILTER
+    }
+
+    /**
+     * 编译过滤条件（带缓存）
+     */
+    public CompiledFilter compile(VectorFilter filter) {
+        CompiledFilter compiled = compiledFilters.get(filter);
+        if (compiled != null) {
+            return compiled;
+        }
+        if (compiledFilters.size() >= MAX_COMPILED_FILTERS) {
+            log.debug("过滤条件编译缓存超出容量，清空 {} 条", compiledFilters.size());
+            compiledFilters.clear();
+        }
+        return compiledFilters.computeIfAbsent(filter,
+            key -> new CompiledFilter(key.toExpression(), key.toRedisClause()));
+    }
+
+    /**
+     * 为一次过滤检索生成执行计划
+     */
+    public SearchPlan plan(VectorFilter filter, int topK) {
+        if (filter.isEmpty()) {
+            return SearchPlan.builder().strategy(Strategy.UNFILTERED).candidates(topK).build();
+        }
+        // 嵌入式存储在进程内按同样的规则选择精确扫描或过滤HNSW遍历
+        if (!(vectorStore instanceof RedisVectorStore)) {
+            return SearchPlan.builder().strategy(Strategy.PRE_FILTER).candidates(topK).build();
+        }
+
+        CompiledFilter compiled = compile(filter);
+        long matching = count(compiled.redisClause());
+        long total = count("*");
+        double selectivity = total > 0 ? (double) matching / total : 1.0;
+
+        Strategy strategy;
+        int candidates = topK;
+        if (matching <= ExactRerankService.EXACT_SEARCH_LIMIT) {
+            strategy = Strategy.EXACT;
+        } else {
+            int postFilterCandidates = (int) Math.ceil(topK * POST_FILTER_OVER_FETCH / Math.max(selectivity, 1e-6));
+            if (selectivity >= POST_FILTER_MIN_SELECTIVITY && postFilterCandidates <= POST_FILTER_MAX_CANDIDATES) {
+                strategy = Strategy.POST_FILTER;
+                candidates = postFilterCandidates;
+            } else {
+                strategy = Strategy.PRE_FILTER;
+            }
+        }
+        return SearchPlan.builder()
+            .strategy(strategy)
+            .matching(matching)
+            .selectivity(selectivity)
+            .candidates(candidates)
+            .build();
+    }
+
+    /**
+     * 按执行计划进行过滤向量检索，结果均经过精确余弦重排
+     */
+    public List<Document> search(String query, VectorFilter filter, int topK, double threshold) {
+        long startTime = System.nanoTime();
+        SearchPlan plan = plan(filter, topK);
+        try {
+            return execute(query, filter, plan, topK, threshold);
+        } finally {
+            Timer.builder(SEARCH_TIMER)
+                .description("向量检索耗时（含规划与精确重排）")
+                .tag("strategy", plan.getStrategy().name().toLowerCase())
+                .register(meterRegistry)
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // ============ 私有工具方法 ============
+
+    private List<Document> execute(String query, VectorFilter filter, SearchPlan plan, int topK, double threshold) {
+        CompiledFilter compiled = compile(filter);
+        log.debug("过滤检索计划: filter={}, plan={}", filter, plan);
+
+        SearchRequest.Builder requestBuilder = SearchRequest.builder()
+            .query(query)
+            .topK(topK)
+            .similarityThreshold(threshold);
+
+        switch (plan.getStrategy()) {
+            case EXACT -> {
+                Optional<List<Document>> exact = exactRerankService.exactSearch(
+                    query, compiled.redisClause(), topK, threshold);
+                if (exact.isPresent()) {
+                    return exact.get();
+                }
+            }
+            case POST_FILTER -> {
+                List<Document> results = exactRerankService.searchWithPostFilter(requestBuilder.build(),
+                    plan.getCandidates(), document -> compiled.matches(document.getMetadata()));
+                if (results.size() >= topK) {
+                    return results;
+                }
+                // 超取范围内通过过滤的结果不足，按预过滤重新检索保证召回
+                log.debug("后过滤结果不足 {} 个，改用预过滤", topK);
+            }
+            default -> {
+            }
+        }
+
+        if (compiled.expression() != null) {
+            requestBuilder.filterExpression(compiled.expression());
+        }
+        return exactRerankService.search(requestBuilder.build());
+    }
+
+    private long count(String redisQuery) {
+        long now = System.currentTimeMillis();
+        CachedCount cached = matchCounts.get(redisQuery);
+        if (cached != null && now - cached.countedAt() < COUNT_TTL_MILLIS) {
+            return cached.count();
+        }
+        long count = jedisPooled.ftSearch(ModelConfig.VECTOR_INDEX_NAME,
+            new Query(redisQuery).limit(0, 0).dialect(2)).getTotalResults();
+        if (matchCounts.size() >= MAX_COMPILED_FILTERS) {
+            matchCounts.clear();
+        }
+        matchCounts.put(redisQuery, new CachedCount(count, now));
+        return count;
+    }
+
+    private record CachedCount(long count, long countedAt) {
+    }
+
+    /**
+     * 编译后的过滤条件
+     *
+     * @param expression  Spring AI过滤表达式，无条件时为null
+     * @param redisClause RediSearch原生子句，无条件时为"*"
+     */
+    public record CompiledFilter(Filter.Expression expression, String redisClause) {
+
+        public CompiledFilter {
+            if (redisClause == null || redisClause.isEmpty()) {
+                redisClause = "*";
+            }
+        }
+
+        /**
+         * 与其他子句组合时使用的前缀，无条件时为空串
+         */
+        public String redisPrefix() {
+            return expression == null ? "" : redisClause;
+        }
+
+        /**
+         * 在内存中判断文档元数据是否满足过滤条件
+         */
+        public boolean matches(Map<String, Object> metadata) {
+            return FilterExpressionEvaluator.matches(expression, metadata);
+        }
+    }
+
+    /**
+     * 过滤检索执行计划
+     */
+    @lombok.Data
+    @lombok.Builder
+    public static class SearchPlan {
+        private Strategy strategy;
+        /** 过滤条件命中的文档数 */
+        private long matching;
+        /** 命中数占索引总文档数的比例 */
+        private double selectivity;
+        /** 近似检索的取回数量 */
+        private int candidates;
+    }
+}
@@ -0,0 +1,69 @@
+package com.mtm.backend.service.rag;
+
+import org.springframework.ai.chat.client.ChatClientRequest;
+import org.springframework.ai.chat.client.ChatClientResponse;
+import org.springframework.ai.chat.client.advisor.api.AdvisorChain;
+import org.springframework.ai.chat.client.advisor.api.BaseAdvisor;
+import org.springframework.ai.chat.client.advisor.vectorstore.QuestionAnswerAdvisor;
+import org.springframework.ai.chat.prompt.PromptTemplate;
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 预检索上下文Advisor - 无状态，可在预构建的ChatClient上共享
+ * 上下文文档由调用方检索后通过Advisor参数 {@link #CONTEXT_DOCUMENTS} 传入，
+ * 按与QuestionAnswerAdvisor相同的模板拼入用户消息，不在Advisor内再做检索
+ */
+public class PreparedContextAdvisor implements BaseAdvisor {
+
+    /** Advisor参数：本次请求的上下文文档（List&lt;Document&gt;） */
+    public static final String CONTEXT_DOCUMENTS = "rag_context_documents";
+
+    private static final PromptTemplate PROMPT_TEMPLATE = new PromptTemplate("""
+            {query}
+
+            Context information is below, surrounded by ---------------------
+
+            ---------------------
+            {question_answer_context}
+            ---------------------
+
+            Given the context and provided history information and not prior knowledge,
+            reply to the user comment. If the answer is not in the context, inform
+            the user that you can't answer the question.
+            """);
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ChatClientRequest before(ChatClientRequest request, AdvisorChain chain) {
+        Object value = request.context().get(CONTEXT_DOCUMENTS);
+        if (!(value instanceof List<?> list)) {
+            return request;
+        }
+        List<Document> documents = (List<Document>) list;
+        String context = documents.stream()
+            .map(Document::getText)
+            .collect(Collectors.joining(System.lineSeparator()));
+        String augmented = PROMPT_TEMPLATE.render(Map.of(
+            "query", request.prompt().getUserMessage().getText(),
+            "question_answer_context", context));
+
+        return request.mutate()
+            .prompt(request.prompt().augmentUserMessage(augmented))
+            .context(QuestionAnswerAdvisor.RETRIEVED_DOCUMENTS, documents)
+            .build();
+    }
+
+    @Override
+    public ChatClientResponse after(ChatClientResponse response, AdvisorChain chain) {
+        return response;
+    }
+
+    @Override
+    public int getOrder() {
+        return 0;
+    }
+}
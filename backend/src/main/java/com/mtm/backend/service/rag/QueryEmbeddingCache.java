@@ -0,0 +1,114 @@
+package com.mtm.backend.service.rag;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询向量短期缓存
+ * 同一个问题在一次请求内会被多处检索（多知识库并发检索、混合检索、精确重排），
+ * 这里按查询文本缓存嵌入结果，并发的相同查询只触发一次嵌入调用
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class QueryEmbeddingCache {
+
+    private static final int MAX_ENTRIES = 1000;
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final EmbeddingModel embeddingModel;
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 获取查询文本的向量，命中缓存或复用进行中的嵌入调用
+     */
+    public float[] embed(String query) {
+        long now = System.currentTimeMillis();
+        CacheEntry entry = cache.compute(query, (key, existing) ->
+            existing != null && !existing.isExpired(now) ? existing : new CacheEntry(new CompletableFuture<>(), now));
+
+        if (entry.claim()) {
+            try {
+                entry.future.complete(embeddingModel.embed(query));
+            } catch (RuntimeException e) {
+                cache.remove(query, entry);
+                entry.future.completeExceptionally(e);
+            }
+            evictIfNeeded(now);
+        }
+        return entry.future.join();
+    }
+
+    /**
+     * 以EmbeddingModel形式暴露：单条文本嵌入走缓存，其余调用直接委托（文档入库不缓存）
+     */
+    public EmbeddingModel asEmbeddingModel() {
+        return new EmbeddingModel() {
+            @Override
+            public EmbeddingResponse call(EmbeddingRequest request) {
+                return embeddingModel.call(request);
+            }
+
+            @Override
+            public float[] embed(Document document) {
+                return embeddingModel.embed(document);
+            }
+
+            @Override
+            public float[] embed(String text) {
+                return QueryEmbeddingCache.this.embed(text);
+            }
+
+            @Override
+            public int dimensions() {
+                return embeddingModel.dimensions();
+            }
+        };
+    }
+
+    private void evictIfNeeded(long now) {
+        if (cache.size() <= MAX_ENTRIES) {
+            return;
+        }
+        cache.entrySet().removeIf(e -> e.getValue().isExpired(now));
+        if (cache.size() > MAX_ENTRIES) {
+            log.debug("查询向量缓存超出容量，清空 {} 条", cache.size());
+            cache.clear();
+        }
+    }
+
+    private static final class CacheEntry {
+        private final CompletableFuture<float[]> future;
+        private final long createdAt;
+        private boolean claimed;
+
+        private CacheEntry(CompletableFuture<float[]> future, long createdAt) {
+            this.future = future;
+            this.createdAt = createdAt;
+        }
+
+        /** 只有第一个调用方负责真正执行嵌入 */
+        private synchronized boolean claim() {
+            if (claimed) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+
+        private boolean isExpired(long now) {
+            return future.isDone() && now - createdAt > TTL_MILLIS;
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.mtm.backend.service.rag;
 
+import com.mtm.backend.config.DashScopeHealthIndicator;
+import com.mtm.backend.config.VectorStoreHealthIndicator;
+import com.mtm.backend.enums.RetrievalMode;
 import com.mtm.backend.model.DTO.RAGQueryDTO;
 import com.mtm.backend.model.VO.RAGResponseVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.stereotype.Service;
+import org.springframework.http.codec.ServerSentEvent;
 import reactor.core.publisher.Flux;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * RAG门面服务 - 统一的RAG对外接口
@@ -21,8 +29,12 @@ import java.util.Map;
 public class RAGFacadeService {
 
     private final ChatService chatService;
+    private final AnswerEnrichmentService answerEnrichmentService;
+    private final SearchResultCache searchResultCache;
     private final SearchService searchService;
-    private final VectorService vectorService;
+    private final VectorStoreMetrics vectorStoreMetrics;
+    private final DashScopeHealthIndicator dashScopeHealthIndicator;
+    private final VectorStoreHealthIndicator vectorStoreHealthIndicator;
 
     /**
      * RAG对话 - 主要对外接口
@@ -41,9 +53,9 @@ public class RAGFacadeService {
     }
 
     /**
-     * 流式RAG对话
+     * 流式RAG对话 - references / token / usage 三类SSE事件
      */
-    public Flux<String> queryStream(RAGQueryDTO queryDTO, Integer userId) {
+    public Flux<ServerSentEvent<Object>> queryStream(RAGQueryDTO queryDTO, Integer userId) {
         try {
             log.info("RAG流式查询请求: 用户={}, 知识库={}", 
                 userId, queryDTO.getKnowledgeBaseId());
@@ -56,6 +68,13 @@ public class RAGFacadeService {
         }
     }
 
+    /**
+     * 获取回答的后置增强结果（相关问题）
+     */
+    public Map<String, Object> getAnswerEnrichment(String messageId, Integer userId) {
+        return answerEnrichmentService.getEnrichment(messageId, userId);
+    }
+
     /**
      * 简单AI对话（不使用RAG）
      */
@@ -73,35 +92,52 @@ public class RAGFacadeService {
      * 语义搜索 - 不生成回答，只返回相关文档
      */
     public Object semanticSearch(String query, String knowledgeBaseId, Integer userId, int topK, double threshold) {
+        return semanticSearch(query, knowledgeBaseId, userId, topK, threshold, RetrievalMode.AUTO);
+    }
+
+    /**
+     * 语义搜索 - 指定检索模式（向量 / BM25全文 / 混合）
+     */
+    public Object semanticSearch(String query, String knowledgeBaseId, Integer userId, int topK, double threshold,
+                                 RetrievalMode retrievalMode) {
         try {
             log.info("语义搜索请求: 用户={}, 知识库={}, 查询={}", userId, knowledgeBaseId, query);
             
-            // 使用SearchService进行搜索
-            SearchService.SearchCriteria criteria = SearchService.SearchCriteria.builder()
-                .query(query)
-                .knowledgeBaseId(knowledgeBaseId)
-                .userId(userId)
-                .topK(topK)
-                .threshold(threshold)
-                .build();
-            
-            var documents = searchService.advancedSearch(criteria);
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("topK", topK);
+            parameters.put("threshold", threshold);
+            parameters.put("mode", retrievalMode);
             
-            // 转换为前端需要的格式
-            return documents.stream()
-                .map(doc -> {
-                    var metadata = doc.getMetadata();
-                    return Map.of(
-                        "id", metadata.get("id"),
-                        "title", metadata.getOrDefault("title", ""),
-                        "content", doc.getText(),
-                        "source", metadata.getOrDefault("source", ""),
-                        "subject", metadata.getOrDefault("subject", ""),
-                        "similarity", calculateSimilarity(doc),
-                        "resourceId", metadata.get("resource_id")
-                    );
-                })
-                .collect(java.util.stream.Collectors.toList());
+            // 结果按 查询+参数+知识库/用户索引版本 缓存，入库或删除后自动失效
+            return searchResultCache.getOrCompute("semantic", query, parameters, knowledgeBaseId, userId, () -> {
+                // 使用SearchService进行搜索
+                SearchService.SearchCriteria criteria = SearchService.SearchCriteria.builder()
+                    .query(query)
+                    .knowledgeBaseId(knowledgeBaseId)
+                    .userId(userId)
+                    .topK(topK)
+                    .threshold(threshold)
+                    .retrievalMode(retrievalMode)
+                    .build();
+                
+                var documents = searchService.advancedSearch(criteria);
+                
+                // 转换为前端需要的格式
+                return documents.stream()
+                    .map(doc -> {
+                        var metadata = doc.getMetadata();
+                        Map<String, Object> item = new LinkedHashMap<>();
+                        item.put("id", metadata.getOrDefault("id", doc.getId()));
+                        item.put("title", metadata.getOrDefault("title", ""));
+                        item.put("content", doc.getText());
+                        item.put("source", metadata.getOrDefault("source", ""));
+                        item.put("subject", metadata.getOrDefault("subject", ""));
+                        item.put("similarity", calculateSimilarity(doc));
+                        item.put("resourceId", metadata.getOrDefault("resource_id", ""));
+                        return item;
+                    })
+                    .collect(Collectors.toList());
+            });
                 
         } catch (Exception e) {
             log.error("语义搜索失败", e);
@@ -110,11 +146,12 @@ public class RAGFacadeService {
     }
 
     /**
-     * 健康检查
+     * 健康检查（读取后台探测的缓存结果，不发起模型调用）
      */
     public boolean isHealthy() {
         try {
-            return vectorService.isHealthy();
+            return Status.UP.equals(dashScopeHealthIndicator.health().getStatus())
+                && Status.UP.equals(vectorStoreHealthIndicator.health().getStatus());
         } catch (Exception e) {
             log.error("RAG服务健康检查失败", e);
             return false;
@@ -126,7 +163,7 @@ public class RAGFacadeService {
      */
     public Object getStats() {
         try {
-            var vectorStats = vectorService.getStats();
+            var vectorStats = vectorStoreMetrics.getStats();
             
             return Map.of(
                 "vectorStore", vectorStats,
@@ -147,10 +184,7 @@ public class RAGFacadeService {
     // ============ 私有工具方法 ============
 
     private double calculateSimilarity(org.springframework.ai.document.Document document) {
-        Object distance = document.getMetadata().get("distance");
-        if (distance instanceof Number) {
-            return Math.max(0, 1.0 - ((Number) distance).doubleValue());
-        }
-        return 0.95;
+        // 精确余弦得分（见ExactRerankService），缺失时由向量距离换算
+        return ExactRerankService.relevanceOf(document);
     }
 }
\ No newline at end of file
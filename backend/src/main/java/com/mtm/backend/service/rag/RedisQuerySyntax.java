@@ -0,0 +1,97 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.config.ModelConfig;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import redis.clients.jedis.search.Schema;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * RediSearch查询语法工具 - 统一转义与字段子句生成，避免直接拼接用户输入
+ */
+public final class RedisQuerySyntax {
+
+    /** RediSearch查询语法中需要转义的字符 */
+    private static final Pattern SPECIAL_CHARS = Pattern.compile("([,.<>{}\\[\\]\"':;!@#$%^&*()\\-+=~|/\\\\\\s])");
+
+    private RedisQuerySyntax() {
+    }
+
+    public static String escape(String term) {
+        return SPECIAL_CHARS.matcher(term).replaceAll("\\\\$1");
+    }
+
+    /**
+     * TAG字段精确匹配子句
+     */
+    public static String tag(String field, String value) {
+        return "@" + field + ":{" + escape(value) + "}";
+    }
+
+    /**
+     * TAG字段多值匹配子句（任一值命中即可）
+     */
+    public static String tagIn(String field, Collection<String> values) {
+        return "@" + field + ":{" + values.stream()
+            .map(RedisQuerySyntax::escape)
+            .collect(Collectors.joining(" | ")) + "}";
+    }
+
+    /**
+     * NUMERIC字段区间子句，边界为null时不设限
+     */
+    public static String numericRange(String field, Number min, Number max) {
+        return "@" + field + ":[" + (min != null ? min : "-inf") + " " + (max != null ? max : "+inf") + "]";
+    }
+
+    /**
+     * NUMERIC字段相等子句
+     */
+    public static String numericEquals(String field, Number value) {
+        return "@" + field + ":[" + value + " " + value + "]";
+    }
+
+    /**
+     * 查找索引中声明的元数据字段类型
+     */
+    public static Optional<Schema.FieldType> fieldType(String field) {
+        return ModelConfig.VECTOR_METADATA_FIELDS.stream()
+            .filter(metadataField -> metadataField.name().equals(field))
+            .map(RedisVectorStore.MetadataField::fieldType)
+            .findFirst();
+    }
+
+    /**
+     * 将"字段 = 值"条件编译为查询串，条件为空时匹配全部文档
+     */
+    public static String equalityQuery(Map<String, Object> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return "*";
+        }
+        return filters.entrySet().stream()
+            .map(entry -> {
+                Schema.FieldType type = fieldType(entry.getKey())
+                    .orElseThrow(() -> new IllegalArgumentException("字段未建立索引，无法过滤: " + entry.getKey()));
+                if (type == Schema.FieldType.NUMERIC) {
+                    return numericEquals(entry.getKey(), toNumber(entry.getValue()));
+                }
+                return tag(entry.getKey(), String.valueOf(entry.getValue()));
+            })
+            .collect(Collectors.joining(" "));
+    }
+
+    static Number toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number;
+        }
+        try {
+            return Double.parseDouble(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("数值字段的过滤值不合法: " + value);
+        }
+    }
+}
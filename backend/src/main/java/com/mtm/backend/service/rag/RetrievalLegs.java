@@ -0,0 +1,40 @@
+package com.mtm.backend.service.rag;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 检索内层分支（混合检索的向量一路、精确重排的查询向量）的等待
+ * 分支提交到ragLegExecutor，由外层检索线程限时等待；超时后取消分支，仍在排队的分支不会再执行
+ */
+final class RetrievalLegs {
+
+    /** 内层分支的最长等待时间，超时的分支按失败处理 */
+    static final long LEG_TIMEOUT_MS = 10_000;
+
+    private RetrievalLegs() {
+    }
+
+    /**
+     * 限时等待分支结果，超时、失败或中断时抛出RuntimeException，由调用方决定是否降级
+     */
+    static <T> T await(CompletableFuture<T> leg, long timeoutMs, String stage) {
+        try {
+            return leg.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            leg.cancel(true);
+            throw new RuntimeException(stage + "超时");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof RuntimeException runtimeException
+                ? runtimeException
+                : new RuntimeException(stage + "失败: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            leg.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(stage + "被中断");
+        }
+    }
+}
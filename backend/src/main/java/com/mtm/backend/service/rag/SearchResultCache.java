@@ -0,0 +1,151 @@
+package com.mtm.backend.service.rag;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 带版本号的检索结果缓存
+ * 缓存键由 归一化查询 + 过滤条件 + 检索范围（知识库/用户/全局）的索引版本号 组成；
+ * 任何入库或删除都会递增相关范围的版本号，旧结果因键变化自然失效，不依赖TTL判断新鲜度。
+ * TTL只用于回收不再可达的旧版本条目
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchResultCache {
+
+    private static final String RESULT_PREFIX = "rag:search:";
+    private static final String VERSION_PREFIX = "rag:index-version:";
+    private static final String GLOBAL_SCOPE = "global";
+
+    /** 旧版本条目的回收时间 */
+    private static final long RESULT_EXPIRE_MINUTES = 60;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 读取缓存，未命中时执行检索并写回
+     *
+     * @param namespace       调用方命名空间，区分不同的结果格式
+     * @param query           查询文本，比较前会做归一化
+     * @param filters         其余影响结果的参数（过滤条件、topK、阈值、检索模式等）
+     * @param knowledgeBaseId 检索范围限定的知识库，可为null
+     * @param userId          检索范围限定的用户，可为null；两者都为null时使用全局版本号
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrCompute(String namespace, String query, Map<String, ?> filters,
+                              String knowledgeBaseId, Integer userId, Supplier<T> loader) {
+        String key;
+        try {
+            key = resultKey(namespace, query, filters, knowledgeBaseId, userId);
+            Object cached = redisTemplate.opsForValue().get(key);
+            if (cached != null) {
+                log.debug("检索结果缓存命中: namespace={}, query={}", namespace, query);
+                return (T) cached;
+            }
+        } catch (Exception e) {
+            log.warn("检索结果缓存不可用，直接检索: {}", e.getMessage());
+            return loader.get();
+        }
+
+        T result = loader.get();
+        try {
+            redisTemplate.opsForValue().set(key, result, RESULT_EXPIRE_MINUTES, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.warn("写入检索结果缓存失败: {}", e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * 索引内容发生变化：递增相关知识库、用户以及全局版本号
+     */
+    public void invalidate(Collection<String> knowledgeBaseIds, Collection<?> userIds) {
+        List<String> scopes = new ArrayList<>();
+        if (knowledgeBaseIds != null) {
+            knowledgeBaseIds.stream().filter(Objects::nonNull).distinct().forEach(id -> scopes.add(kbScope(id)));
+        }
+        if (userIds != null) {
+            userIds.stream().filter(Objects::nonNull).map(String::valueOf).distinct()
+                .forEach(id -> scopes.add(userScope(id)));
+        }
+        scopes.add(GLOBAL_SCOPE);
+        try {
+            for (String scope : scopes) {
+                stringRedisTemplate.opsForValue().increment(VERSION_PREFIX + scope);
+            }
+            log.debug("索引版本号递增: {}", scopes);
+        } catch (Exception e) {
+            log.error("递增索引版本号失败，检索结果缓存可能返回旧结果: {}", scopes, e);
+        }
+    }
+
+    public void invalidateKnowledgeBase(String knowledgeBaseId) {
+        invalidate(List.of(knowledgeBaseId), List.of());
+    }
+
+    public void invalidateUser(Integer userId) {
+        invalidate(List.of(), List.of(userId));
+    }
+
+    // ============ 私有工具方法 ============
+
+    private String resultKey(String namespace, String query, Map<String, ?> filters,
+                             String knowledgeBaseId, Integer userId) {
+        List<String> scopes = new ArrayList<>();
+        if (knowledgeBaseId != null) {
+            scopes.add(kbScope(knowledgeBaseId));
+        }
+        if (userId != null) {
+            scopes.add(userScope(String.valueOf(userId)));
+        }
+        if (scopes.isEmpty()) {
+            scopes.add(GLOBAL_SCOPE);
+        }
+        List<String> versions = stringRedisTemplate.opsForValue().multiGet(scopes.stream()
+            .map(scope -> VERSION_PREFIX + scope)
+            .collect(Collectors.toList()));
+
+        StringBuilder material = new StringBuilder(normalize(query));
+        new TreeMap<String, Object>(filters).forEach((name, value) ->
+            material.append('|').append(name).append('=').append(value));
+        for (int i = 0; i < scopes.size(); i++) {
+            String version = versions != null && versions.get(i) != null ? versions.get(i) : "0";
+            material.append('|').append(scopes.get(i)).append('@').append(version);
+        }
+        return RESULT_PREFIX + namespace + ":" + sha256(material.toString());
+    }
+
+    private static String kbScope(String knowledgeBaseId) {
+        return "kb:" + knowledgeBaseId;
+    }
+
+    private static String userScope(String userId) {
+        return "user:" + userId;
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,13 +1,26 @@
 package com.mtm.backend.service.rag;
 
+import com.mtm.backend.config.ModelConfig;
+import com.mtm.backend.enums.RetrievalMode;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.SearchResult;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -19,26 +32,141 @@ import java.util.stream.Collectors;
 @Slf4j
 public class SearchService {
 
+    /** RRF融合常数，取经验值60 */
+    private static final int RRF_K = 60;
+
+    /** 混合检索时每一路召回的候选倍数 */
+    private static final int HYBRID_CANDIDATE_FACTOR = 2;
+
+    /** 课程代码/公式编号等标识符，例如 MATH101、CS-2024、E=mc^2 */
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[A-Za-z]{2,}[-_]?\\d{2,}|[=^∑∫√]");
+
+    /** 疑问句特征词，命中时说明是自然语言提问而非关键字查找 */
+    private static final Pattern QUESTION_PATTERN = Pattern.compile(
+        "[?？]|什么|怎么|如何|为什么|为何|哪些|是否|能否|解释|区别|吗|(?i)\\b(what|how|why|which|explain|difference)\\b");
+
+    /** 多知识库并发检索时单个知识库的默认截止时间 */
+    public static final long DEFAULT_PER_KB_DEADLINE_MS = 3000;
+
     private final VectorStore vectorStore;
+    private final JedisPooled jedisPooled;
+    private final VectorService vectorService;
+    private final FilteredSearchPlanner filteredSearchPlanner;
+    private final Executor ragSearchExecutor;
+    private final Executor ragLegExecutor;
 
     /**
      * 语义搜索 - 知识库范围
      */
     public List<Document> semanticSearch(String query, String knowledgeBaseId, int topK, double threshold) {
+        return semanticSearch(query, knowledgeBaseId, topK, threshold, RetrievalMode.VECTOR);
+    }
+
+    /**
+     * 语义搜索 - 按检索模式路由（向量 / BM25全文 / 混合 / 自动）
+     */
+    public List<Document> semanticSearch(String query, String knowledgeBaseId, int topK, double threshold,
+                                         RetrievalMode mode) {
+        RetrievalMode resolved = resolveMode(query, mode);
+        if (resolved == RetrievalMode.VECTOR) {
+            return vectorSearch(query, knowledgeBaseId, topK, threshold);
+        }
+
+        VectorFilter filter = VectorFilter.builder().eq("knowledge_base_id", knowledgeBaseId).build();
+        if (resolved == RetrievalMode.LEXICAL) {
+            return lexicalSearchWithFallback(query, filter, topK, threshold, mode);
+        }
+        return hybridSearch(query, filter, topK, threshold);
+    }
+
+    /**
+     * 多知识库并发检索 - 每个知识库独立检索，按各自结果内的名次做RRF融合为topK
+     * 超过截止时间的知识库直接放弃，不拖慢整体响应
+     */
+    public List<Document> multiKnowledgeBaseSearch(String query, List<String> knowledgeBaseIds, int topK,
+                                                   double threshold, RetrievalMode mode, long perKbDeadlineMs) {
+        return fanOut(knowledgeBaseIds,
+            knowledgeBaseId -> semanticSearch(query, knowledgeBaseId, topK, threshold, mode),
+            topK, perKbDeadlineMs);
+    }
+
+    /**
+     * 并发扇出到各知识库并按名次融合出全局topK
+     * 各知识库可能走不同的检索路径（混合检索的RRF分、全文检索的BM25分、向量相关度），得分量纲不同不能直接比较，
+     * 只比较各自结果内的名次；名次相同时按知识库的传入顺序
+     */
+    private List<Document> fanOut(List<String> knowledgeBaseIds, Function<String, List<Document>> perKnowledgeBase,
+                                  int topK, long perKbDeadlineMs) {
+        List<String> distinctIds = knowledgeBaseIds.stream().distinct().collect(Collectors.toList());
+        long startTime = System.currentTimeMillis();
+
+        long deadline = startTime + perKbDeadlineMs;
+
+        // 单个知识库的检索任务内部不再等待本线程池的任务（内层分支在ragLegExecutor上执行），不会嵌套等待而耗尽线程池
+        Map<String, CompletableFuture<List<Document>>> futures = new LinkedHashMap<>();
+        for (String knowledgeBaseId : distinctIds) {
+            futures.put(knowledgeBaseId, CompletableFuture
+                .supplyAsync(() -> perKnowledgeBase.apply(knowledgeBaseId), ragSearchExecutor));
+        }
+
+        List<List<Document>> rankedLists = new ArrayList<>();
+        List<String> timedOut = new ArrayList<>();
+        for (Map.Entry<String, CompletableFuture<List<Document>>> entry : futures.entrySet()) {
+            List<Document> documents;
+            try {
+                documents = entry.getValue().get(Math.max(0, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 取消后仍在排队的任务不会再执行，避免超时请求继续占用线程池
+                entry.getValue().cancel(true);
+                timedOut.add(entry.getKey());
+                continue;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("知识库 {} 检索失败，已忽略: {}", entry.getKey(), cause.getMessage());
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(future -> future.cancel(true));
+                throw new RuntimeException("多知识库检索被中断");
+            }
+            List<Document> ranked = new ArrayList<>(documents);
+            ranked.sort(Comparator.comparingDouble(SearchService::rankScore).reversed());
+            rankedLists.add(ranked);
+        }
+
+        List<Document> merged = fuseByReciprocalRank(rankedLists, topK);
+
+        log.info("多知识库检索完成: 知识库 {} 个, 超时 {}, 合并后 {} 个, 耗时 {}ms",
+            distinctIds.size(), timedOut, merged.size(), System.currentTimeMillis() - startTime);
+        return merged;
+    }
+
+    /**
+     * 单个知识库结果内的排序得分：混合检索取RRF分，纯全文检索取BM25分，其余取精确相关度
+     */
+    private static double rankScore(Document document) {
+        Object rrf = document.getMetadata().get("rrf_score");
+        if (rrf instanceof Number) {
+            return ((Number) rrf).doubleValue();
+        }
+        Object bm25 = document.getMetadata().get("bm25_score");
+        if (bm25 instanceof Number && document.getScore() == null) {
+            return ((Number) bm25).doubleValue();
+        }
+        return ExactRerankService.relevanceOf(document);
+    }
+
+    /**
+     * 纯向量检索
+     */
+    private List<Document> vectorSearch(String query, String knowledgeBaseId, int topK, double threshold) {
         try {
             log.debug("语义搜索: query={}, knowledgeBaseId={}, topK={}", query, knowledgeBaseId, topK);
             
-            SearchRequest.Builder searchBuilder = SearchRequest.builder()
-                .query(query)
-                .topK(topK)
-                .similarityThreshold(threshold);
-            
-            // 使用FilterExpressionBuilder构建过滤条件
-            if (knowledgeBaseId != null) {
-                searchBuilder.filterExpression("knowledge_base_id == '" + knowledgeBaseId + "'");
-            }
-            
-            List<Document> results = vectorStore.similaritySearch(searchBuilder.build());
+            // 由规划器按知识库规模选择暴力精确检索、预过滤或后过滤，结果均经精确重排
+            VectorFilter filter = VectorFilter.builder().eq("knowledge_base_id", knowledgeBaseId).build();
+            List<Document> results = filteredSearchPlanner.search(query, filter, topK, threshold);
             
             log.info("语义搜索完成，找到 {} 个相关文档", results.size());
             return results;
@@ -55,47 +183,32 @@ public class SearchService {
     public List<Document> advancedSearch(SearchCriteria criteria) {
         try {
             log.debug("高级语义搜索: {}", criteria);
-            
-            SearchRequest.Builder searchBuilder = SearchRequest.builder()
-                .query(criteria.getQuery())
-                .topK(criteria.getTopK())
-                .similarityThreshold(criteria.getThreshold());
-            
-            // 构建复合过滤条件
-            List<String> filterConditions = new ArrayList<>();
-            
-            // 知识库过滤
-            if (criteria.getKnowledgeBaseId() != null) {
-                filterConditions.add("knowledge_base_id == '" + criteria.getKnowledgeBaseId() + "'");
-            }
-            
-            // 用户权限过滤
-            if (criteria.getUserId() != null) {
-                filterConditions.add("user_id == " + criteria.getUserId());
-            }
-            
-            // 学科过滤
-            if (criteria.getSubject() != null) {
-                filterConditions.add("subject == '" + criteria.getSubject() + "'");
-            }
-            
-            // 课程层次过滤
-            if (criteria.getCourseLevel() != null) {
-                filterConditions.add("course_level == '" + criteria.getCourseLevel() + "'");
-            }
-            
-            // 文档类型过滤
-            if (criteria.getDocumentType() != null) {
-                filterConditions.add("document_type == '" + criteria.getDocumentType() + "'");
+
+            // 多知识库：按知识库拆分后并发检索
+            if (criteria.getKnowledgeBaseIds() != null && criteria.getKnowledgeBaseIds().size() > 1) {
+                return fanOut(criteria.getKnowledgeBaseIds(),
+                    knowledgeBaseId -> advancedSearch(criteria.toBuilder()
+                        .knowledgeBaseId(knowledgeBaseId)
+                        .knowledgeBaseIds(null)
+                        .build()),
+                    criteria.getTopK(), DEFAULT_PER_KB_DEADLINE_MS);
             }
             
-            // 组合过滤条件
-            if (!filterConditions.isEmpty()) {
-                String combinedFilter = String.join(" && ", filterConditions);
-                searchBuilder.filterExpression(combinedFilter);
+            // 复合过滤条件：所有字段均已建立索引，可下推为预过滤
+            VectorFilter filter = buildFilter(criteria);
+
+            RetrievalMode mode = resolveMode(criteria.getQuery(), criteria.getRetrievalMode());
+            if (mode != RetrievalMode.VECTOR) {
+                List<Document> results = mode == RetrievalMode.LEXICAL
+                    ? lexicalSearchWithFallback(criteria.getQuery(), filter, criteria.getTopK(),
+                        criteria.getThreshold(), criteria.getRetrievalMode())
+                    : hybridSearch(criteria.getQuery(), filter, criteria.getTopK(), criteria.getThreshold());
+                log.info("高级搜索完成({}), 找到 {} 个相关文档", mode.getCode(), results.size());
+                return results;
             }
-            
-            List<Document> results = vectorStore.similaritySearch(searchBuilder.build());
+
+            List<Document> results = filteredSearchPlanner.search(
+                criteria.getQuery(), filter, criteria.getTopK(), criteria.getThreshold());
             
             log.info("高级搜索完成，找到 {} 个相关文档", results.size());
             return results;
@@ -111,29 +224,11 @@ public class SearchService {
      */
     public List<Document> getRandomSamples(String knowledgeBaseId, int sampleSize) {
         try {
-            // 使用通用查询获取更多文档
-            SearchRequest searchRequest = SearchRequest.builder()
-                .query("*")  // 通配符查询
-                .topK(sampleSize * 3)  // 获取更多结果用于随机选择
-                .similarityThreshold(0.0)  // 降低阈值
-                .build();
-            
-            if (knowledgeBaseId != null) {
-                searchRequest = SearchRequest.builder()
-                    .query("*")
-                    .topK(sampleSize * 3)
-                    .similarityThreshold(0.0)
-                    .filterExpression("knowledge_base_id == '" + knowledgeBaseId + "'")
-                    .build();
-            }
-            
-            List<Document> allDocs = vectorStore.similaritySearch(searchRequest);
-            
-            // 随机采样
-            Collections.shuffle(allDocs);
-            return allDocs.stream()
-                .limit(sampleSize)
-                .collect(Collectors.toList());
+            // 原生索引遍历 + 蓄水池采样，不再嵌入"*"做相似度查询
+            Map<String, Object> filters = knowledgeBaseId != null
+                ? Map.of("knowledge_base_id", knowledgeBaseId)
+                : Map.of();
+            return vectorService.sampleDocuments(filters, sampleSize);
                 
         } catch (Exception e) {
             log.error("获取随机样本失败", e);
@@ -145,54 +240,250 @@ public class SearchService {
      * 根据文档ID批量获取文档
      */
     public List<Document> getDocumentsByIds(List<String> documentIds) {
+        // 直接按键批量读取，不再逐个发起"*"相似度查询
+        return vectorService.getDocumentsByIds(documentIds);
+    }
+
+    /**
+     * 混合检索 - 向量召回与BM25全文召回并行执行，按倒数排名融合(RRF)合并
+     *
+     * @param filter 两路共用的过滤条件，分别编译为过滤表达式与RediSearch子句
+     */
+    public List<Document> hybridSearch(String query, VectorFilter filter, int topK, double threshold) {
+        int candidates = topK * HYBRID_CANDIDATE_FACTOR;
+
+        SearchRequest.Builder vectorRequest = SearchRequest.builder()
+            .query(query)
+            .topK(candidates)
+            .similarityThreshold(threshold);
+        FilteredSearchPlanner.CompiledFilter compiled = filteredSearchPlanner.compile(filter);
+        if (compiled.expression() != null) {
+            vectorRequest.filterExpression(compiled.expression());
+        }
+        SearchRequest request = vectorRequest.build();
+
+        // 向量一路需要一次嵌入调用，放到内层分支执行器上，与调用线程上的全文一路重叠；
+        // 调用线程可能就是ragSearchExecutor的工作线程，不能再向该线程池提交并等待
+        CompletableFuture<List<Document>> vectorFuture = CompletableFuture.supplyAsync(
+            () -> vectorStore.similaritySearch(request), ragLegExecutor);
+        List<Document> lexicalResults = lexicalSearch(query, compiled.redisPrefix(), candidates);
+
+        List<Document> vectorResults;
         try {
-            // 注意：这里需要根据VectorStore的具体实现
-            // 目前Spring AI VectorStore接口没有直接的ID查询方法
-            // 可能需要通过元数据过滤来实现
-            
-            List<Document> results = new ArrayList<>();
-            
-            for (String docId : documentIds) {
-                SearchRequest searchRequest = SearchRequest.builder()
-                    .query("*")
-                    .topK(1)
-                    .similarityThreshold(0.0)
-                    .filterExpression("id == '" + docId + "'")
-                    .build();
-                
-                List<Document> docs = vectorStore.similaritySearch(searchRequest);
-                results.addAll(docs);
+            vectorResults = RetrievalLegs.await(vectorFuture, RetrievalLegs.LEG_TIMEOUT_MS, "混合检索的向量召回");
+        } catch (Exception e) {
+            log.warn("混合检索的向量召回失败，仅使用全文召回结果: {}", e.getMessage());
+            vectorResults = List.of();
+        }
+
+        List<Document> fused = fuseByReciprocalRank(List.of(vectorResults, lexicalResults), topK);
+        log.info("混合检索完成: 向量召回 {} 个, 全文召回 {} 个, 融合后 {} 个",
+            vectorResults.size(), lexicalResults.size(), fused.size());
+        return fused;
+    }
+
+    /**
+     * BM25全文检索 - 直接查询Redis索引的content全文字段，不调用嵌入模型
+     *
+     * @param lexicalFilter RediSearch原生过滤子句，可为空串
+     */
+    public List<Document> lexicalSearch(String query, String lexicalFilter, int topK) {
+        String textClause = buildTextClause(query);
+        if (textClause.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            String queryString = lexicalFilter == null || lexicalFilter.isEmpty()
+                ? textClause
+                : lexicalFilter + " " + textClause;
+
+            List<String> returnFields = new ArrayList<>();
+            returnFields.add(ModelConfig.VECTOR_CONTENT_FIELD);
+            ModelConfig.VECTOR_METADATA_FIELDS.forEach(field -> returnFields.add(field.name()));
+
+            Query ftQuery = new Query(queryString)
+                .setScorer("BM25")
+                .setWithScores()
+                .returnFields(returnFields.toArray(new String[0]))
+                .limit(0, topK)
+                .dialect(2);
+
+            SearchResult result = jedisPooled.ftSearch(ModelConfig.VECTOR_INDEX_NAME, ftQuery);
+
+            List<Document> documents = result.getDocuments().stream()
+                .map(this::toLexicalDocument)
+                .collect(Collectors.toList());
+
+            log.debug("全文检索完成: query={}, 命中 {} 个", queryString, documents.size());
+            return documents;
+
+        } catch (Exception e) {
+            log.warn("全文检索失败: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * 倒数排名融合(Reciprocal Rank Fusion)
+     * score(d) = Σ 1 / (k + rank_i(d))，不依赖各路分数的量纲
+     */
+    public List<Document> fuseByReciprocalRank(List<List<Document>> rankedLists, int topK) {
+        Map<String, Double> fusedScores = new HashMap<>();
+        Map<String, Document> documentsById = new LinkedHashMap<>();
+
+        for (List<Document> ranked : rankedLists) {
+            for (int rank = 0; rank < ranked.size(); rank++) {
+                Document doc = ranked.get(rank);
+                fusedScores.merge(doc.getId(), 1.0 / (RRF_K + rank + 1), Double::sum);
+                // 优先保留带向量距离信息的版本（向量一路排在前面）
+                documentsById.putIfAbsent(doc.getId(), doc);
             }
-            
+        }
+
+        return documentsById.values().stream()
+            .sorted(Comparator.comparingDouble((Document doc) -> fusedScores.get(doc.getId())).reversed())
+            .limit(topK)
+            .map(doc -> {
+                Map<String, Object> metadata = new HashMap<>(doc.getMetadata());
+                metadata.put("rrf_score", fusedScores.get(doc.getId()));
+                return doc.mutate().metadata(metadata).build();
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 判断查询是否为明显的关键字查找（课程代码、公式编号、引号短语、英文短语）
+     * 关键字查询只走全文一路，完全跳过嵌入调用。
+     * content全文索引没有中文分词，中文查询整体作为一个词项几乎无法被BM25命中，除引号短语与标识符外不视为关键字查询
+     */
+    public boolean isKeywordQuery(String query) {
+        if (query == null || query.isBlank()) {
+            return false;
+        }
+        String trimmed = query.trim();
+        if (QUESTION_PATTERN.matcher(trimmed).find()) {
+            return false;
+        }
+        // 用户显式加引号表示精确匹配
+        if (trimmed.startsWith("\"") && trimmed.endsWith("\"") && trimmed.length() > 2) {
+            return true;
+        }
+        if (IDENTIFIER_PATTERN.matcher(trimmed).find()) {
+            return true;
+        }
+        // 中文查询交给混合检索；英文短查询（不超过3个词）按关键字处理
+        boolean hasCjk = trimmed.codePoints().anyMatch(cp -> Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN);
+        return !hasCjk && trimmed.split("\\s+").length <= 3;
+    }
+
+    // ============ 私有工具方法 ============
+
+    private RetrievalMode resolveMode(String query, RetrievalMode mode) {
+        // 全文检索依赖Redis的content全文索引，嵌入式向量存储下统一退化为向量检索
+        if (mode == null || !(vectorStore instanceof RedisVectorStore)) {
+            return RetrievalMode.VECTOR;
+        }
+        if (mode == RetrievalMode.AUTO) {
+            return isKeywordQuery(query) ? RetrievalMode.LEXICAL : RetrievalMode.HYBRID;
+        }
+        return mode;
+    }
+
+    /**
+     * 全文检索；由AUTO路由到全文一路且BM25没有命中时退回向量检索，显式指定全文检索时原样返回
+     */
+    private List<Document> lexicalSearchWithFallback(String query, VectorFilter filter, int topK, double threshold,
+                                                     RetrievalMode requested) {
+        List<Document> results = lexicalSearch(query, filteredSearchPlanner.compile(filter).redisPrefix(), topK);
+        if (!results.isEmpty() || requested != RetrievalMode.AUTO) {
             return results;
-            
-        } catch (Exception e) {
-            log.error("根据ID获取文档失败", e);
-            throw new RuntimeException("获取文档失败: " + e.getMessage());
         }
+        log.info("全文检索无命中，退回向量检索: query={}", query);
+        return filteredSearchPlanner.search(query, filter, topK, threshold);
+    }
+
+    private VectorFilter buildFilter(SearchCriteria criteria) {
+        return VectorFilter.builder()
+            .eq("knowledge_base_id", criteria.getKnowledgeBaseId())
+            .eq("user_id", criteria.getUserId())
+            .eq("subject", criteria.getSubject())
+            .eq("course_level", criteria.getCourseLevel())
+            .eq("document_type", criteria.getDocumentType())
+            .build();
+    }
+
+    /**
+     * 构建content全文子句：引号包裹的部分按短语精确匹配，其余词项按OR召回
+     */
+    private String buildTextClause(String query) {
+        if (query == null || query.isBlank()) {
+            return "";
+        }
+        String trimmed = query.trim();
+        if (trimmed.startsWith("\"") && trimmed.endsWith("\"") && trimmed.length() > 2) {
+            String phrase = Arrays.stream(trimmed.substring(1, trimmed.length() - 1).split("\\s+"))
+                .map(this::escapeQueryTerm)
+                .collect(Collectors.joining(" "));
+            return "@" + ModelConfig.VECTOR_CONTENT_FIELD + ":\"" + phrase + "\"";
+        }
+        String terms = Arrays.stream(trimmed.split("\\s+"))
+            .filter(term -> !term.isEmpty())
+            .map(this::escapeQueryTerm)
+            .collect(Collectors.joining("|"));
+        return terms.isEmpty() ? "" : "@" + ModelConfig.VECTOR_CONTENT_FIELD + ":(" + terms + ")";
+    }
+
+    private String escapeQueryTerm(String term) {
+        return RedisQuerySyntax.escape(term);
+    }
+
+    private Document toLexicalDocument(redis.clients.jedis.search.Document ftDocument) {
+        Map<String, Object> metadata = new HashMap<>();
+        for (RedisVectorStore.MetadataField field : ModelConfig.VECTOR_METADATA_FIELDS) {
+            if (ftDocument.hasProperty(field.name())) {
+                metadata.put(field.name(), ftDocument.getString(field.name()));
+            }
+        }
+        metadata.put("bm25_score", ftDocument.getScore());
+
+        String id = ftDocument.getId().startsWith(ModelConfig.VECTOR_KEY_PREFIX)
+            ? ftDocument.getId().substring(ModelConfig.VECTOR_KEY_PREFIX.length())
+            : ftDocument.getId();
+        String content = ftDocument.hasProperty(ModelConfig.VECTOR_CONTENT_FIELD)
+            ? ftDocument.getString(ModelConfig.VECTOR_CONTENT_FIELD)
+            : "";
+
+        return Document.builder()
+            .id(id)
+            .text(content)
+            .metadata(metadata)
+            .build();
     }
 
     /**
      * 搜索条件封装类
      */
     @lombok.Data
-    @lombok.Builder
+    @lombok.Builder(toBuilder = true)
     @lombok.AllArgsConstructor
     @lombok.NoArgsConstructor
     public static class SearchCriteria {
         private String query;
         private String knowledgeBaseId;
+        private List<String> knowledgeBaseIds;
         private Integer userId;
         private String subject;
         private String courseLevel;
         private String documentType;
         private int topK = 10;
         private double threshold = 0.7;
+        private RetrievalMode retrievalMode;
         
         @Override
         public String toString() {
-            return String.format("SearchCriteria{query='%s', knowledgeBaseId='%s', topK=%d, threshold=%.2f}", 
-                query, knowledgeBaseId, topK, threshold);
+            return String.format("SearchCriteria{query='%s', knowledgeBaseId='%s', knowledgeBaseIds=%s, topK=%d, threshold=%.2f, mode=%s}", 
+                query, knowledgeBaseId, knowledgeBaseIds, topK, threshold, retrievalMode);
         }
     }
 
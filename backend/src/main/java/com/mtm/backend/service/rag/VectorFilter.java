@@ -0,0 +1,210 @@
+package com.mtm.backend.service.rag;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import redis.clients.jedis.search.Schema;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 类型化的向量检索过滤条件
+ * 只能对索引中声明的TAG/NUMERIC字段构造等值、多值、区间条件（条件之间为AND关系），
+ * 由同一份条件分别编译出Spring AI过滤表达式、RediSearch子句，不再拼接原始输入
+ *
+ * 条件按字段排序后保存，语义相同的过滤条件equals/hashCode一致，可直接作为编译缓存的键
+ */
+public final class VectorFilter {
+
+    private static final VectorFilter EMPTY = new VectorFilter(List.of());
+
+    public enum Operator {
+        EQ, IN, RANGE
+    }
+
+    /**
+     * 单个过滤条件
+     *
+     * @param values EQ为单值，IN为多值，RANGE为[下界, 上界]（边界可为null）
+     */
+    public record Condition(String field, Schema.FieldType fieldType, Operator operator, List<Object> values) {
+    }
+
+    private final List<Condition> conditions;
+
+    private VectorFilter(List<Condition> conditions) {
+        this.conditions = conditions;
+    }
+
+    public static VectorFilter empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    public boolean isEmpty() {
+        return conditions.isEmpty();
+    }
+
+    /**
+     * 编译为Spring AI过滤表达式，无条件时返回null
+     */
+    public Filter.Expression toExpression() {
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        FilterExpressionBuilder builder = new FilterExpressionBuilder();
+        FilterExpressionBuilder.Op combined = null;
+        for (Condition condition : conditions) {
+            FilterExpressionBuilder.Op op = switch (condition.operator()) {
+                case EQ -> builder.eq(condition.field(), condition.values().get(0));
+                case IN -> builder.in(condition.field(), condition.values());
+                case RANGE -> rangeOp(builder, condition);
+            };
+            combined = combined == null ? op : builder.and(combined, op);
+        }
+        return combined.build();
+    }
+
+    /**
+     * 编译为RediSearch原生查询子句（值已转义），无条件时返回空串
+     */
+    public String toRedisClause() {
+        return conditions.stream()
+            .map(VectorFilter::toRedisClause)
+            .collect(Collectors.joining(" "));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof VectorFilter other && conditions.equals(other.conditions);
+    }
+
+    @Override
+    public int hashCode() {
+        return conditions.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "VectorFilter" + conditions;
+    }
+
+    // ============ 私有工具方法 ============
+
+    private static FilterExpressionBuilder.Op rangeOp(FilterExpressionBuilder builder, Condition condition) {
+        Object min = condition.values().get(0);
+        Object max = condition.values().get(1);
+        if (min != null && max != null) {
+            return builder.and(builder.gte(condition.field(), min), builder.lte(condition.field(), max));
+        }
+        return min != null ? builder.gte(condition.field(), min) : builder.lte(condition.field(), max);
+    }
+
+    private static String toRedisClause(Condition condition) {
+        String field = condition.field();
+        List<Object> values = condition.values();
+        if (condition.fieldType() == Schema.FieldType.NUMERIC) {
+            return switch (condition.operator()) {
+                case EQ -> RedisQuerySyntax.numericEquals(field, (Number) values.get(0));
+                case IN -> values.stream()
+                    .map(value -> RedisQuerySyntax.numericEquals(field, (Number) value))
+                    .collect(Collectors.joining(" | ", "(", ")"));
+                case RANGE -> RedisQuerySyntax.numericRange(field, (Number) values.get(0), (Number) values.get(1));
+            };
+        }
+        return condition.operator() == Operator.EQ
+            ? RedisQuerySyntax.tag(field, (String) values.get(0))
+            : RedisQuerySyntax.tagIn(field, values.stream().map(String::valueOf).collect(Collectors.toList()));
+    }
+
+    /**
+     * 过滤条件构建器，值为null或空白的条件会被忽略，便于直接传入可选的查询参数
+     */
+    public static final class Builder {
+
+        private final Map<String, Condition> conditions = new TreeMap<>();
+
+        private Builder() {
+        }
+
+        public Builder eq(String field, Object value) {
+            if (isAbsent(value)) {
+                return this;
+            }
+            Schema.FieldType type = indexedType(field);
+            return put(new Condition(field, type, Operator.EQ, List.of(normalize(field, type, value))));
+        }
+
+        public Builder in(String field, Collection<?> values) {
+            if (values == null) {
+                return this;
+            }
+            Schema.FieldType type = indexedType(field);
+            List<Object> normalized = values.stream()
+                .filter(value -> !isAbsent(value))
+                .map(value -> normalize(field, type, value))
+                .distinct()
+                .collect(Collectors.toList());
+            if (normalized.isEmpty()) {
+                return this;
+            }
+            if (normalized.size() == 1) {
+                return put(new Condition(field, type, Operator.EQ, List.copyOf(normalized)));
+            }
+            return put(new Condition(field, type, Operator.IN, List.copyOf(normalized)));
+        }
+
+        public Builder range(String field, Number min, Number max) {
+            if (min == null && max == null) {
+                return this;
+            }
+            Schema.FieldType type = indexedType(field);
+            if (type != Schema.FieldType.NUMERIC) {
+                throw new IllegalArgumentException("区间过滤只支持数值字段: " + field);
+            }
+            return put(new Condition(field, type, Operator.RANGE, Arrays.asList(
+                min != null ? normalize(field, type, min) : null,
+                max != null ? normalize(field, type, max) : null)));
+        }
+
+        public VectorFilter build() {
+            return conditions.isEmpty() ? EMPTY : new VectorFilter(List.copyOf(conditions.values()));
+        }
+
+        private Builder put(Condition condition) {
+            if (conditions.putIfAbsent(condition.field(), condition) != null) {
+                throw new IllegalArgumentException("同一字段只能设置一个过滤条件: " + condition.field());
+            }
+            return this;
+        }
+
+        private static Schema.FieldType indexedType(String field) {
+            Schema.FieldType type = RedisQuerySyntax.fieldType(field)
+                .orElseThrow(() -> new IllegalArgumentException("字段未建立索引，无法过滤: " + field));
+            if (type != Schema.FieldType.TAG && type != Schema.FieldType.NUMERIC) {
+                throw new IllegalArgumentException("只支持TAG或NUMERIC字段过滤: " + field);
+            }
+            return type;
+        }
+
+        private static Object normalize(String field, Schema.FieldType type, Object value) {
+            if (type != Schema.FieldType.NUMERIC) {
+                return String.valueOf(value).trim();
+            }
+            // 整数统一为Long，保证 12 与 "12" 得到相同的缓存键
+            double number = RedisQuerySyntax.toNumber(value).doubleValue();
+            return number == Math.rint(number) && !Double.isInfinite(number) ? (Object) (long) number : number;
+        }
+
+        private static boolean isAbsent(Object value) {
+            return value == null || value instanceof String text && text.isBlank();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.config.ModelConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.search.FieldName;
+import redis.clients.jedis.search.schemafields.NumericField;
+import redis.clients.jedis.search.schemafields.SchemaField;
+import redis.clients.jedis.search.schemafields.TagField;
+import redis.clients.jedis.search.schemafields.TextField;
+
+import java.util.*;
+
+/**
+ * 向量索引结构同步
+ * RedisVectorStore只在索引不存在时建索引，已有索引不会随元数据字段声明变化；
+ * 启动时比对FT.INFO中的字段，缺失的字段通过FT.ALTER补充（Redis会在后台为存量文档重建该字段索引）
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorIndexSchemaSync {
+
+    private final VectorStore vectorStore;
+    private final JedisPooled jedisPooled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void syncSchema() {
+        if (!(vectorStore instanceof RedisVectorStore)) {
+            return;
+        }
+        try {
+            Set<String> existing = indexedAttributes();
+            List<SchemaField> missing = new ArrayList<>();
+            for (RedisVectorStore.MetadataField field : ModelConfig.VECTOR_METADATA_FIELDS) {
+                if (!existing.contains(field.name())) {
+                    missing.add(toSchemaField(field));
+                }
+            }
+            if (missing.isEmpty()) {
+                log.debug("向量索引字段已是最新");
+                return;
+            }
+            jedisPooled.ftAlter(ModelConfig.VECTOR_INDEX_NAME, missing);
+            log.info("向量索引新增字段: {}", missing.stream()
+                .map(field -> field.getFieldName().getAttribute())
+                .toList());
+        } catch (Exception e) {
+            log.warn("同步向量索引字段失败，新增的过滤字段暂不可用: {}", e.getMessage());
+        }
+    }
+
+    private Set<String> indexedAttributes() {
+        Map<String, Object> info = jedisPooled.ftInfo(ModelConfig.VECTOR_INDEX_NAME);
+        Set<String> names = new HashSet<>();
+        Object attributes = info.get("attributes");
+        if (!(attributes instanceof List<?> attributeList)) {
+            return names;
+        }
+        for (Object attribute : attributeList) {
+            if (!(attribute instanceof List<?> parts)) {
+                continue;
+            }
+            for (int i = 0; i + 1 < parts.size(); i++) {
+                if ("attribute".equals(String.valueOf(parts.get(i)))) {
+                    names.add(String.valueOf(parts.get(i + 1)));
+                }
+            }
+        }
+        return names;
+    }
+
+    private SchemaField toSchemaField(RedisVectorStore.MetadataField field) {
+        FieldName fieldName = FieldName.of("$." + field.name()).as(field.name());
+        return switch (field.fieldType()) {
+            case NUMERIC -> NumericField.of(fieldName);
+            case TEXT -> TextField.of(fieldName);
+            default -> TagField.of(fieldName);
+        };
+    }
+}
@@ -1,18 +1,41 @@
 package com.mtm.backend.service.rag;
 
-import com.alibaba.cloud.ai.dashscope.embedding.DashScopeEmbeddingModel;
+import com.mtm.backend.config.ModelConfig;
+import com.mtm.backend.service.rag.store.MappedHnswVectorStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.json.JSONArray;
+import org.json.JSONObject;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.json.Path2;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.SearchResult;
+import redis.clients.jedis.search.aggr.AggregationBuilder;
+import redis.clients.jedis.search.aggr.AggregationResult;
+import redis.clients.jedis.search.aggr.Reducers;
+import redis.clients.jedis.search.aggr.SortedField;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
 
 /**
  * 向量服务 - 负责文档向量化和向量存储
@@ -23,8 +46,36 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class VectorService {
 
+    /** 采样时单次游标读取的条数 */
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    /** 浏览游标在Redis端的最大空闲时间 */
+    private static final long CURSOR_MAX_IDLE_MS = 300_000;
+
+    /** 每个知识库用于估算内存占用的采样键数 */
+    private static final int MEMORY_SAMPLE_SIZE = 16;
+
+    /** 统计中保留的知识库数量上限（按分块数取前N个），限制指标的标签基数 */
+    private static final int MAX_STATS_KNOWLEDGE_BASES = 100;
+
+    /** FT.INFO 中没有 total_index_memory_sz_mb 时累加的各部分索引内存（MB） */
+    private static final List<String> INDEX_MEMORY_FIELDS = List.of(
+        "inverted_sz_mb", "vector_index_sz_mb", "offset_vectors_sz_mb", "doc_table_size_mb",
+        "sortable_values_size_mb", "key_table_size_mb", "tag_overhead_sz_mb", "text_overhead_sz_mb");
+
+    /** 未归属知识库的分块在统计中的标识 */
+    public static final String NO_KNOWLEDGE_BASE = "none";
+
+    /** 按知识库删除时单批删除的分块数 */
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private static final String REDIS_CURSOR_PREFIX = "r:";
+    private static final String EMBEDDED_CURSOR_PREFIX = "e:";
+
     private final VectorStore vectorStore;
-    private final DashScopeEmbeddingModel embeddingModel;
+    private final EmbeddingModel embeddingModel;
+    private final JedisPooled jedisPooled;
+    private final SearchResultCache searchResultCache;
 
     /**
      * Load: 批量存储文档到向量数据库
@@ -68,6 +119,7 @@ public class VectorService {
             }
             
             log.info("向量化存储完成，总计: {} 个文档", totalProcessed);
+            searchResultCache.invalidate(List.of(knowledgeBaseId), userIdsOf(documents));
             
         } catch (Exception e) {
             log.error("向量化存储失败，知识库: {}", knowledgeBaseId, e);
@@ -81,6 +133,7 @@ public class VectorService {
     public void storeDocument(Document document, String knowledgeBaseId) {
         document.getMetadata().put("knowledge_base_id", knowledgeBaseId);
         vectorStore.add(List.of(document));
+        searchResultCache.invalidate(List.of(knowledgeBaseId), userIdsOf(List.of(document)));
         log.debug("单个文档向量化完成: {}", document.getMetadata().get("id"));
     }
 
@@ -89,7 +142,10 @@ public class VectorService {
      */
     public void deleteVectors(List<String> documentIds) {
         try {
+            // 删除前读取元数据，确定需要失效的知识库与用户检索缓存
+            List<Document> existing = getDocumentsByIds(documentIds);
             vectorStore.delete(documentIds);
+            searchResultCache.invalidate(knowledgeBaseIdsOf(existing), userIdsOf(existing));
             log.info("删除向量数据: {} 个文档", documentIds.size());
         } catch (Exception e) {
             log.error("删除向量数据失败", e);
@@ -97,18 +153,69 @@ public class VectorService {
         }
     }
 
+    /**
+     * 按文档ID批量读取分块 - 一次流水线往返直接读取vector:前缀下的JSON文档，不调用嵌入模型
+     * 返回顺序与输入一致，不存在的ID跳过；结果不含向量字段
+     */
+    public List<Document> getDocumentsByIds(List<String> documentIds) {
+        if (documentIds == null || documentIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            return embeddedStore.getDocuments(documentIds);
+        }
+
+        try {
+            List<Response<Object>> responses = new ArrayList<>(documentIds.size());
+            try (Pipeline pipeline = jedisPooled.pipelined()) {
+                for (String documentId : documentIds) {
+                    responses.add(pipeline.jsonGet(ModelConfig.VECTOR_KEY_PREFIX + documentId, Path2.ROOT_PATH));
+                }
+                pipeline.sync();
+            }
+
+            List<Document> documents = new ArrayList<>(documentIds.size());
+            for (int i = 0; i < documentIds.size(); i++) {
+                Object value = responses.get(i).get();
+                if (!(value instanceof JSONArray array) || array.isEmpty()) {
+                    continue;
+                }
+                documents.add(toDocument(documentIds.get(i), array.getJSONObject(0)));
+            }
+
+            log.debug("批量读取分块: 请求 {} 个, 命中 {} 个", documentIds.size(), documents.size());
+            return documents;
+
+        } catch (Exception e) {
+            log.error("批量读取分块失败", e);
+            throw new RuntimeException("批量读取分块失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 删除知识库所有向量
      */
     public void deleteKnowledgeBaseVectors(String knowledgeBaseId) {
         try {
-            // 注意：这里需要根据VectorStore的具体实现来删除
-            // Redis VectorStore可能需要特殊处理
             log.info("删除知识库向量数据: {}", knowledgeBaseId);
-            
-            // TODO: 实现批量删除逻辑
-            // 可能需要先查询所有相关文档ID，然后批量删除
-            
+
+            // 先游标遍历出全部分块ID，再分批删除，避免边删边遍历
+            List<String> documentIds = new ArrayList<>();
+            List<Object> userIds = new ArrayList<>();
+            String cursor = null;
+            do {
+                ChunkPage page = browseDocuments(Map.of("knowledge_base_id", knowledgeBaseId), cursor, DELETE_BATCH_SIZE);
+                page.getItems().forEach(doc -> documentIds.add(doc.getId()));
+                userIds.addAll(userIdsOf(page.getItems()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            for (int i = 0; i < documentIds.size(); i += DELETE_BATCH_SIZE) {
+                vectorStore.delete(documentIds.subList(i, Math.min(i + DELETE_BATCH_SIZE, documentIds.size())));
+            }
+            searchResultCache.invalidate(List.of(knowledgeBaseId), userIds);
+            log.info("知识库向量数据删除完成: {}, 共 {} 个分块", knowledgeBaseId, documentIds.size());
+
         } catch (Exception e) {
             log.error("删除知识库向量失败: {}", knowledgeBaseId, e);
             throw new RuntimeException("删除知识库向量失败", e);
@@ -153,37 +260,419 @@ public class VectorService {
     }
 
     /**
-     * 连接健康检查
+     * 获取向量存储统计信息
+     * Redis：文档数与索引内存取自FT.INFO；按知识库聚合分块数，并对每个知识库随机采样若干键
+     * 用MEMORY USAGE估算其文档占用。嵌入式存储：遍历元数据按知识库计数，按文本字节数估算
      */
-    public boolean isHealthy() {
+    public VectorStoreStats getStats() {
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            return embeddedStats(embeddedStore);
+        }
         try {
-            String testText = "连接测试";
-            EmbeddingResponse response = embedText(testText);
-            
-            boolean healthy = response != null && 
-                            response.getResults() != null && 
-                            !response.getResults().isEmpty();
-            
-            log.debug("向量服务健康检查: {}", healthy ? "正常" : "异常");
-            return healthy;
-            
+            Map<String, Object> info = jedisPooled.ftInfo(ModelConfig.VECTOR_INDEX_NAME);
+            long totalDocuments = (long) infoNumber(info, "num_docs");
+            double indexMemoryMb = infoNumber(info, "total_index_memory_sz_mb");
+            if (indexMemoryMb == 0) {
+                for (String field : INDEX_MEMORY_FIELDS) {
+                    indexMemoryMb += infoNumber(info, field);
+                }
+            }
+
+            List<KnowledgeBaseUsage> knowledgeBases = knowledgeBaseUsage();
+            long documentBytes = knowledgeBases.stream().mapToLong(KnowledgeBaseUsage::getEstimatedBytes).sum();
+            long indexBytes = (long) (indexMemoryMb * 1024 * 1024);
+
+            return VectorStoreStats.builder()
+                .totalDocuments(totalDocuments)
+                .totalVectors(totalDocuments)
+                .storageType("redis")
+                .indexMemoryBytes(indexBytes)
+                .vectorIndexMemoryBytes((long) (infoNumber(info, "vector_index_sz_mb") * 1024 * 1024))
+                .documentMemoryBytes(documentBytes)
+                .usedMemory(indexBytes + documentBytes)
+                .knowledgeBases(knowledgeBases)
+                .collectedAt(new Date())
+                .build();
+
         } catch (Exception e) {
-            log.error("向量服务健康检查失败: {}", e.getMessage());
-            return false;
+            log.error("获取向量存储统计信息失败", e);
+            throw new RuntimeException("获取向量存储统计信息失败: " + e.getMessage());
         }
     }
 
     /**
-     * 获取向量存储统计信息
+     * 分页列出分块 - 索引原生分页，不调用嵌入模型
+     * 按 resource_id、chunk_index、文档键排序，文档键唯一，翻页顺序确定，不会跨页重复或遗漏
+     *
+     * @param filters 字段相等条件（字段需已建立索引）
+     * @param page    页码，从1开始
      */
-    public VectorStoreStats getStats() {
-        // TODO: 根据VectorStore实现获取统计信息
+    public ChunkPage listDocuments(Map<String, Object> filters, int page, int size) {
+        int offset = Math.max(0, page - 1) * size;
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            // 嵌入式存储按写入序号遍历，顺序本身是确定的
+            Predicate<Map<String, Object>> predicate = equalityPredicate(filters);
+            MappedHnswVectorStore.ScanResult all = embeddedStore.scan(predicate, 0, offset + size);
+            List<Document> items = all.documents().subList(Math.min(offset, all.documents().size()),
+                all.documents().size());
+            return ChunkPage.builder()
+                .items(new ArrayList<>(items))
+                .total(embeddedStore.count(predicate))
+                .build();
+        }
+
+        try {
+            // FT.SEARCH只能按单个字段排序，同值时顺序不确定，改用FT.AGGREGATE多字段排序后再LIMIT
+            AggregationResult result = jedisPooled.ftAggregate(ModelConfig.VECTOR_INDEX_NAME,
+                new AggregationBuilder(RedisQuerySyntax.equalityQuery(filters))
+                    .load(loadFields(true))
+                    .sortBy(offset + size,
+                        SortedField.asc("@resource_id"),
+                        SortedField.asc("@chunk_index"),
+                        SortedField.asc("@__key"))
+                    .limit(offset, size)
+                    .dialect(2));
+            List<Document> items = result.getResults().stream()
+                .map(row -> toDocument(stripPrefix(asString(row.get("__key"))), row))
+                .toList();
+            return ChunkPage.builder()
+                .items(items)
+                .total(countDocuments(filters))
+                .build();
+        } catch (Exception e) {
+            log.error("分页列出分块失败", e);
+            throw new RuntimeException("列出分块失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 游标浏览分块 - 基于FT.AGGREGATE WITHCURSOR的稳定顺序遍历，不调用嵌入模型
+     *
+     * @param cursor 上一页返回的nextCursor，首页传null
+     * @return nextCursor为null表示已到末尾
+     */
+    public ChunkPage browseDocuments(Map<String, Object> filters, String cursor, int size) {
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            Predicate<Map<String, Object>> predicate = equalityPredicate(filters);
+            int from = cursor == null ? 0 : Integer.parseInt(cursor.substring(EMBEDDED_CURSOR_PREFIX.length()));
+            MappedHnswVectorStore.ScanResult result = embeddedStore.scan(predicate, from, size);
+            return ChunkPage.builder()
+                .items(result.documents())
+                .nextCursor(result.nextOrdinal() < 0 ? null : EMBEDDED_CURSOR_PREFIX + result.nextOrdinal())
+                .total(cursor == null ? embeddedStore.count(predicate) : null)
+                .build();
+        }
+
+        try {
+            AggregationResult result;
+            Long total = null;
+            if (cursor == null) {
+                String query = RedisQuerySyntax.equalityQuery(filters);
+                result = jedisPooled.ftAggregate(ModelConfig.VECTOR_INDEX_NAME,
+                    new AggregationBuilder(query)
+                        .load(loadFields(true))
+                        .cursor(size, CURSOR_MAX_IDLE_MS)
+                        .dialect(2));
+                total = countDocuments(filters);
+            } else {
+                long cursorId = Long.parseLong(cursor.substring(REDIS_CURSOR_PREFIX.length()));
+                result = jedisPooled.ftCursorRead(ModelConfig.VECTOR_INDEX_NAME, cursorId, size);
+            }
+
+            List<Document> items = result.getResults().stream()
+                .map(row -> toDocument(stripPrefix(asString(row.get("__key"))), row))
+                .toList();
+            Long nextCursor = result.getCursorId();
+            return ChunkPage.builder()
+                .items(items)
+                .nextCursor(nextCursor == null || nextCursor == 0 ? null : REDIS_CURSOR_PREFIX + nextCursor)
+                .total(total)
+                .build();
+        } catch (Exception e) {
+            log.error("游标浏览分块失败", e);
+            throw new RuntimeException("浏览分块失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 统计满足条件的分块数量
+     */
+    public long countDocuments(Map<String, Object> filters) {
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            return embeddedStore.count(equalityPredicate(filters));
+        }
+        return jedisPooled.ftSearch(ModelConfig.VECTOR_INDEX_NAME,
+            new Query(RedisQuerySyntax.equalityQuery(filters)).limit(0, 0).dialect(2)).getTotalResults();
+    }
+
+    /**
+     * 均匀随机采样分块 - 游标遍历文档键做蓄水池采样(Algorithm R)，再批量读取被选中的分块
+     */
+    public List<Document> sampleDocuments(Map<String, Object> filters, int sampleSize) {
+        if (sampleSize <= 0) {
+            return new ArrayList<>();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> reservoir = new ArrayList<>(sampleSize);
+        long seen = 0;
+
+        if (vectorStore instanceof MappedHnswVectorStore embeddedStore) {
+            Predicate<Map<String, Object>> predicate = equalityPredicate(filters);
+            int from = 0;
+            while (from >= 0) {
+                MappedHnswVectorStore.ScanResult batch = embeddedStore.scan(predicate, from, SCAN_BATCH_SIZE);
+                for (Document document : batch.documents()) {
+                    seen = offer(reservoir, sampleSize, seen, document.getId(), random);
+                }
+                from = batch.nextOrdinal();
+            }
+            return embeddedStore.getDocuments(reservoir);
+        }
+
+        try {
+            AggregationResult result = jedisPooled.ftAggregate(ModelConfig.VECTOR_INDEX_NAME,
+                new AggregationBuilder(RedisQuerySyntax.equalityQuery(filters))
+                    .load("@__key")
+                    .cursor(SCAN_BATCH_SIZE, CURSOR_MAX_IDLE_MS)
+                    .dialect(2));
+            while (true) {
+                for (Map<String, Object> row : result.getResults()) {
+                    seen = offer(reservoir, sampleSize, seen, stripPrefix(asString(row.get("__key"))), random);
+                }
+                Long cursorId = result.getCursorId();
+                if (cursorId == null || cursorId == 0) {
+                    break;
+                }
+                result = jedisPooled.ftCursorRead(ModelConfig.VECTOR_INDEX_NAME, cursorId, SCAN_BATCH_SIZE);
+            }
+            log.debug("蓄水池采样: 遍历 {} 个, 选中 {} 个", seen, reservoir.size());
+            return getDocumentsByIds(reservoir);
+
+        } catch (Exception e) {
+            log.error("随机采样分块失败", e);
+            throw new RuntimeException("随机采样失败: " + e.getMessage());
+        }
+    }
+
+    private static long offer(List<String> reservoir, int sampleSize, long seen, String id, ThreadLocalRandom random) {
+        long index = seen + 1;
+        if (reservoir.size() < sampleSize) {
+            reservoir.add(id);
+        } else {
+            long slot = random.nextLong(index);
+            if (slot < sampleSize) {
+                reservoir.set((int) slot, id);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 按知识库聚合分块数，并在同一次聚合中随机采样键，流水线执行MEMORY USAGE估算占用
+     */
+    private List<KnowledgeBaseUsage> knowledgeBaseUsage() {
+        AggregationResult result = jedisPooled.ftAggregate(ModelConfig.VECTOR_INDEX_NAME,
+            new AggregationBuilder("*")
+                .load("@__key", "@knowledge_base_id")
+                .groupBy("@knowledge_base_id",
+                    Reducers.count().as("chunks"),
+                    Reducers.random_sample("@__key", MEMORY_SAMPLE_SIZE).as("sample"))
+                .sortByDesc("@chunks")
+                .limit(MAX_STATS_KNOWLEDGE_BASES)
+                .dialect(2));
+
+        List<KnowledgeBaseUsage> usages = new ArrayList<>();
+        List<List<Response<Long>>> samples = new ArrayList<>();
+        try (Pipeline pipeline = jedisPooled.pipelined()) {
+            for (Map<String, Object> row : result.getResults()) {
+                Object knowledgeBaseId = row.get("knowledge_base_id");
+                usages.add(KnowledgeBaseUsage.builder()
+                    .knowledgeBaseId(knowledgeBaseId == null ? NO_KNOWLEDGE_BASE : asString(knowledgeBaseId))
+                    .chunkCount((long) Double.parseDouble(asString(row.get("chunks"))))
+                    .build());
+                List<Response<Long>> responses = new ArrayList<>();
+                if (row.get("sample") instanceof List<?> keys) {
+                    keys.forEach(key -> responses.add(pipeline.memoryUsage(asString(key))));
+                }
+                samples.add(responses);
+            }
+            pipeline.sync();
+        }
+
+        for (int i = 0; i < usages.size(); i++) {
+            long sampled = 0;
+            int counted = 0;
+            for (Response<Long> response : samples.get(i)) {
+                Long bytes = response.get();
+                if (bytes != null) {
+                    sampled += bytes;
+                    counted++;
+                }
+            }
+            KnowledgeBaseUsage usage = usages.get(i);
+            usage.setEstimatedBytes(counted == 0 ? 0 : sampled / counted * usage.getChunkCount());
+        }
+        return usages;
+    }
+
+    private VectorStoreStats embeddedStats(MappedHnswVectorStore embeddedStore) {
+        Map<String, KnowledgeBaseUsage> byKnowledgeBase = new HashMap<>();
+        int from = 0;
+        while (from >= 0) {
+            MappedHnswVectorStore.ScanResult page = embeddedStore.scan(metadata -> true, from, SCAN_BATCH_SIZE);
+            for (Document doc : page.documents()) {
+                Object knowledgeBaseId = doc.getMetadata().get("knowledge_base_id");
+                KnowledgeBaseUsage usage = byKnowledgeBase.computeIfAbsent(
+                    knowledgeBaseId == null ? NO_KNOWLEDGE_BASE : knowledgeBaseId.toString(),
+                    id -> KnowledgeBaseUsage.builder().knowledgeBaseId(id).chunkCount(0L).estimatedBytes(0L).build());
+                usage.setChunkCount(usage.getChunkCount() + 1);
+                usage.setEstimatedBytes(usage.getEstimatedBytes()
+                    + (doc.getText() == null ? 0 : doc.getText().getBytes(StandardCharsets.UTF_8).length));
+            }
+            from = page.nextOrdinal();
+        }
+
+        List<KnowledgeBaseUsage> knowledgeBases = byKnowledgeBase.values().stream()
+            .sorted(Comparator.comparingLong(KnowledgeBaseUsage::getChunkCount).reversed())
+            .limit(MAX_STATS_KNOWLEDGE_BASES)
+            .toList();
+        long totalDocuments = embeddedStore.size();
+        long documentBytes = byKnowledgeBase.values().stream().mapToLong(KnowledgeBaseUsage::getEstimatedBytes).sum();
         return VectorStoreStats.builder()
-            .totalDocuments(0L)
-            .totalVectors(0L)
+            .totalDocuments(totalDocuments)
+            .totalVectors(totalDocuments)
+            .storageType("embedded")
+            .indexMemoryBytes(0L)
+            .vectorIndexMemoryBytes(0L)
+            .documentMemoryBytes(documentBytes)
+            .usedMemory(documentBytes)
+            .knowledgeBases(knowledgeBases)
+            .collectedAt(new Date())
+            .build();
+    }
+
+    private static double infoNumber(Map<String, Object> info, String field) {
+        Object value = info.get(field);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            double number = Double.parseDouble(asString(value));
+            return Double.isNaN(number) ? 0 : number;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static List<String> knowledgeBaseIdsOf(List<Document> documents) {
+        return metadataValues(documents, "knowledge_base_id");
+    }
+
+    private static List<String> userIdsOf(List<Document> documents) {
+        return metadataValues(documents, "user_id");
+    }
+
+    /**
+     * 收集分块元数据中的取值（去重），数值统一为整数形式，与检索缓存的版本号范围一致
+     */
+    private static List<String> metadataValues(List<Document> documents, String key) {
+        return documents.stream()
+            .map(doc -> doc.getMetadata().get(key))
+            .filter(Objects::nonNull)
+            .map(value -> value instanceof Number number ? String.valueOf(number.longValue())
+                : String.valueOf(value).replaceFirst("\\.0+$", ""))
+            .distinct()
+            .toList();
+    }
+
+    private Predicate<Map<String, Object>> equalityPredicate(Map<String, Object> filters) {
+        if (filters == null || filters.isEmpty()) {
+            return metadata -> true;
+        }
+        return metadata -> filters.entrySet().stream()
+            .allMatch(entry -> Objects.equals(String.valueOf(metadata.get(entry.getKey())),
+                String.valueOf(entry.getValue())));
+    }
+
+    private String[] documentFields() {
+        List<String> fields = new ArrayList<>();
+        fields.add(ModelConfig.VECTOR_CONTENT_FIELD);
+        ModelConfig.VECTOR_METADATA_FIELDS.forEach(field -> fields.add(field.name()));
+        return fields.toArray(new String[0]);
+    }
+
+    private String[] loadFields(boolean withKey) {
+        List<String> fields = new ArrayList<>();
+        if (withKey) {
+            fields.add("@__key");
+        }
+        for (String field : documentFields()) {
+            fields.add("@" + field);
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    private static String stripPrefix(String key) {
+        return key.startsWith(ModelConfig.VECTOR_KEY_PREFIX)
+            ? key.substring(ModelConfig.VECTOR_KEY_PREFIX.length())
+            : key;
+    }
+
+    private static String asString(Object value) {
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return String.valueOf(value);
+    }
+
+    private Document toDocument(String documentId, Iterable<Map.Entry<String, Object>> properties) {
+        Map<String, Object> metadata = new HashMap<>();
+        String content = "";
+        for (Map.Entry<String, Object> property : properties) {
+            if ("__key".equals(property.getKey()) || ModelConfig.VECTOR_EMBEDDING_FIELD.equals(property.getKey())) {
+                continue;
+            }
+            if (ModelConfig.VECTOR_CONTENT_FIELD.equals(property.getKey())) {
+                content = asString(property.getValue());
+            } else {
+                metadata.put(property.getKey(), asString(property.getValue()));
+            }
+        }
+        return Document.builder()
+            .id(documentId)
+            .text(content)
+            .metadata(metadata)
+            .build();
+    }
+
+    private Document toDocument(String documentId, Map<String, Object> row) {
+        return toDocument(documentId, row.entrySet());
+    }
+
+    private Document toDocument(String documentId, JSONObject json) {
+        Map<String, Object> metadata = new HashMap<>(json.toMap());
+        metadata.remove(ModelConfig.VECTOR_EMBEDDING_FIELD);
+        Object content = metadata.remove(ModelConfig.VECTOR_CONTENT_FIELD);
+        return Document.builder()
+            .id(documentId)
+            .text(content != null ? content.toString() : "")
+            .metadata(metadata)
             .build();
     }
 
+    /**
+     * 分块列表分页结果
+     */
+    @lombok.Builder
+    @lombok.Data
+    public static class ChunkPage {
+        private List<Document> items;
+        /** 下一页游标，为null表示没有更多数据 */
+        private String nextCursor;
+        /** 满足条件的总数，游标翻页时只在首页返回 */
+        private Long total;
+    }
+
     /**
      * 向量存储统计信息
      */
@@ -193,6 +682,29 @@ public class VectorService {
         private Long totalDocuments;
         private Long totalVectors;
         private String storageType;
+        /** 索引与文档合计占用（字节） */
         private Long usedMemory;
+        /** 索引内存（字节），来自FT.INFO */
+        private Long indexMemoryBytes;
+        /** 其中向量索引内存（字节） */
+        private Long vectorIndexMemoryBytes;
+        /** 文档占用估算（字节），按采样键的平均占用 × 分块数 */
+        private Long documentMemoryBytes;
+        /** 向量检索平均耗时（毫秒） */
+        private Double averageSearchLatencyMs;
+        /** 分块数最多的若干知识库 */
+        private List<KnowledgeBaseUsage> knowledgeBases;
+        private Date collectedAt;
+    }
+
+    /**
+     * 单个知识库的分块数与占用估算
+     */
+    @lombok.Builder
+    @lombok.Data
+    public static class KnowledgeBaseUsage {
+        private String knowledgeBaseId;
+        private Long chunkCount;
+        private Long estimatedBytes;
     }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.mtm.backend.service.rag;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 向量存储指标
+ * 定时采集 {@link VectorService#getStats()} 并发布为Micrometer仪表：文档数、索引内存、
+ * 文档占用，以及按知识库的分块数与占用估算（用于Redis容量规划、发现异常膨胀的知识库）。
+ * 采集开销较大，仪表只读取最近一次的快照，不在抓取指标时访问Redis
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class VectorStoreMetrics {
+
+    private static final long REFRESH_INTERVAL_MS = 60_000;
+
+    private final VectorService vectorService;
+    private final MeterRegistry meterRegistry;
+
+    private volatile VectorService.VectorStoreStats snapshot;
+
+    private MultiGauge knowledgeBaseChunks;
+    private MultiGauge knowledgeBaseBytes;
+
+    @PostConstruct
+    public void registerGauges() {
+        gauge("rag.vector.documents", "向量库文档（分块）数", null, VectorService.VectorStoreStats::getTotalDocuments);
+        gauge("rag.vector.vectors", "向量数", null, VectorService.VectorStoreStats::getTotalVectors);
+        gauge("rag.vector.index.memory", "索引内存", "bytes", VectorService.VectorStoreStats::getIndexMemoryBytes);
+        gauge("rag.vector.index.vector.memory", "向量索引内存", "bytes",
+            VectorService.VectorStoreStats::getVectorIndexMemoryBytes);
+        gauge("rag.vector.document.memory", "文档占用估算", "bytes",
+            VectorService.VectorStoreStats::getDocumentMemoryBytes);
+
+        knowledgeBaseChunks = MultiGauge.builder("rag.vector.kb.chunks")
+            .description("知识库分块数")
+            .register(meterRegistry);
+        knowledgeBaseBytes = MultiGauge.builder("rag.vector.kb.memory")
+            .description("知识库占用估算")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 定时刷新快照
+     */
+    @Scheduled(initialDelay = 10_000, fixedDelay = REFRESH_INTERVAL_MS)
+    public void refresh() {
+        try {
+            VectorService.VectorStoreStats stats = vectorService.getStats();
+            stats.setAverageSearchLatencyMs(averageSearchLatencyMs());
+            snapshot = stats;
+
+            List<VectorService.KnowledgeBaseUsage> knowledgeBases = stats.getKnowledgeBases();
+            knowledgeBaseChunks.register(knowledgeBases.stream()
+                .map(usage -> MultiGauge.Row.of(Tags.of("knowledge_base_id", usage.getKnowledgeBaseId()),
+                    usage.getChunkCount()))
+                .toList(), true);
+            knowledgeBaseBytes.register(knowledgeBases.stream()
+                .map(usage -> MultiGauge.Row.of(Tags.of("knowledge_base_id", usage.getKnowledgeBaseId()),
+                    usage.getEstimatedBytes()))
+                .toList(), true);
+
+            log.debug("向量存储统计刷新: 文档 {} 个, 知识库 {} 个", stats.getTotalDocuments(), knowledgeBases.size());
+        } catch (Exception e) {
+            log.warn("刷新向量存储统计失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 最近一次的统计快照，尚未采集时立即采集一次
+     */
+    public VectorService.VectorStoreStats getStats() {
+        if (snapshot == null) {
+            refresh();
+        }
+        if (snapshot == null) {
+            throw new RuntimeException("向量存储统计信息暂不可用");
+        }
+        return snapshot;
+    }
+
+    // ============ 私有工具方法 ============
+
+    private void gauge(String name, String description, String baseUnit,
+                       ToDoubleFunction<VectorService.VectorStoreStats> value) {
+        Gauge.builder(name, this, metrics -> {
+                VectorService.VectorStoreStats stats = metrics.snapshot;
+                return stats == null ? Double.NaN : value.applyAsDouble(stats);
+            })
+            .description(description)
+            .baseUnit(baseUnit)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 各检索策略的平均耗时（毫秒），按调用次数加权
+     */
+    private double averageSearchLatencyMs() {
+        long count = 0;
+        double totalMs = 0;
+        for (Timer timer : meterRegistry.find(FilteredSearchPlanner.SEARCH_TIMER).timers()) {
+            count += timer.count();
+            totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+        }
+        return count == 0 ? 0 : totalMs / count;
+    }
+}
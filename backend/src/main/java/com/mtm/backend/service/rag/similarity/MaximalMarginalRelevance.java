@@ -0,0 +1,65 @@
+package com.mtm.backend.service.rag.similarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 最大边际相关性(MMR)选择
+ * score(d) = λ · rel(d) − (1 − λ) · max_{s∈已选} sim(d, s)
+ * λ=1 时退化为纯相关性排序，λ越小结果越多样；相似度在本地向量上计算，不调用模型
+ */
+public final class MaximalMarginalRelevance {
+
+    private MaximalMarginalRelevance() {
+    }
+
+    /**
+     * 从候选集中选出 topK 个结果
+     *
+     * @param relevance 候选与查询的相关度
+     * @param vectors   候选向量，缺失(null)的候选不参与多样性惩罚
+     * @param lambda    相关性权重，取值[0, 1]
+     * @return 被选中候选在输入中的下标，按选择顺序排列
+     */
+    public static List<Integer> select(double[] relevance, float[][] vectors, int topK, double lambda) {
+        if (lambda < 0 || lambda > 1) {
+            throw new IllegalArgumentException("MMR lambda 取值范围为[0, 1]: " + lambda);
+        }
+        int n = relevance.length;
+        int k = Math.min(topK, n);
+        List<Integer> selected = new ArrayList<>(k);
+        boolean[] taken = new boolean[n];
+        // 每个候选与已选集合的最大相似度，增量维护，整体复杂度 O(k·n)
+        double[] maxSimilarity = new double[n];
+        Arrays.fill(maxSimilarity, 0.0);
+
+        for (int round = 0; round < k; round++) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                double score = lambda * relevance[i] - (1 - lambda) * maxSimilarity[i];
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            taken[best] = true;
+            selected.add(best);
+
+            float[] chosen = vectors[best];
+            if (chosen == null) {
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                if (!taken[i] && vectors[i] != null) {
+                    maxSimilarity[i] = Math.max(maxSimilarity[i], VectorMath.cosine(chosen, vectors[i]));
+                }
+            }
+        }
+        return selected;
+    }
+}
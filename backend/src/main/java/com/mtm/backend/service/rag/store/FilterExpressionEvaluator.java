@@ -0,0 +1,106 @@
+package com.mtm.backend.service.rag.store;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 在进程内对文档元数据求值Spring AI过滤表达式
+ * 支持 AND/OR/NOT、==/!=、比较运算以及 IN/NIN，与Redis向量库的过滤语义保持一致；
+ * 也用于Redis检索的后过滤（见FilteredSearchPlanner）
+ */
+public final class FilterExpressionEvaluator {
+
+    private FilterExpressionEvaluator() {
+    }
+
+    public static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand == null) {
+            return true;
+        }
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("不支持的过滤操作数: " + operand);
+        }
+
+        switch (expression.type()) {
+            case AND:
+                return matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR:
+                return matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT:
+                return !matches(expression.left(), metadata);
+            default:
+                break;
+        }
+
+        String key = ((Filter.Key) expression.left()).key();
+        Object actual = metadata.get(unquote(key));
+        Object expected = ((Filter.Value) expression.right()).value();
+
+        switch (expression.type()) {
+            case EQ:
+                return valueEquals(actual, expected);
+            case NE:
+                return !valueEquals(actual, expected);
+            case GT:
+                return compare(actual, expected) > 0;
+            case GTE:
+                return compare(actual, expected) >= 0;
+            case LT:
+                return compare(actual, expected) < 0;
+            case LTE:
+                return compare(actual, expected) <= 0;
+            case IN:
+                return asList(expected).stream().anyMatch(value -> valueEquals(actual, value));
+            case NIN:
+                return asList(expected).stream().noneMatch(value -> valueEquals(actual, value));
+            default:
+                throw new IllegalArgumentException("不支持的过滤运算: " + expression.type());
+        }
+    }
+
+    private static boolean valueEquals(Object actual, Object expected) {
+        if (actual == null || expected == null) {
+            return actual == expected;
+        }
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        // 元数据可能以字符串形式存储数字（如user_id），按字符串比较兜底
+        return Objects.equals(String.valueOf(actual), String.valueOf(expected));
+    }
+
+    private static int compare(Object actual, Object expected) {
+        if (actual == null) {
+            return -1;
+        }
+        try {
+            double a = actual instanceof Number n ? n.doubleValue() : Double.parseDouble(actual.toString());
+            double b = expected instanceof Number n ? n.doubleValue() : Double.parseDouble(expected.toString());
+            return Double.compare(a, b);
+        } catch (NumberFormatException e) {
+            return String.valueOf(actual).compareTo(String.valueOf(expected));
+        }
+    }
+
+    private static List<?> asList(Object value) {
+        if (value instanceof Collection<?> collection) {
+            return List.copyOf(collection);
+        }
+        return List.of(value);
+    }
+
+    private static String unquote(String key) {
+        if (key.length() > 1 && (key.startsWith("\"") && key.endsWith("\"")
+            || key.startsWith("'") && key.endsWith("'"))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,217 @@
+package com.mtm.backend.service.rag.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW(Hierarchical Navigable Small World)近似最近邻图
+ * 只保存节点序号与邻接关系，向量本身由 {@link MappedVectorFile} 提供；
+ * 相似度为归一化向量的点积（即余弦相似度），越大越相近。
+ * 写操作需要外部加写锁，读操作可并发。
+ */
+final class HnswGraph {
+
+    /** 搜索结果：节点序号 + 余弦相似度 */
+    record Candidate(int ordinal, float score) {
+    }
+
+    private static final Comparator<Candidate> BY_SCORE = Comparator.comparingDouble(Candidate::score);
+
+    private final MappedVectorFile vectors;
+    private final int m;
+    private final int maxConnectionsLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    /** neighbors.get(ordinal)[layer] 为该节点在对应层的邻居，未入图的节点为null */
+    private final List<int[][]> neighbors = new ArrayList<>();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int size;
+
+    HnswGraph(MappedVectorFile vectors, int m, int efConstruction) {
+        this.vectors = vectors;
+        this.m = m;
+        this.maxConnectionsLayer0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 将已写入向量文件的节点插入图中
+     */
+    void insert(int ordinal) {
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        while (neighbors.size() <= ordinal) {
+            neighbors.add(null);
+        }
+        int[][] layers = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            layers[l] = new int[0];
+        }
+        neighbors.set(ordinal, layers);
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = ordinal;
+            maxLevel = level;
+            return;
+        }
+
+        float[] vector = vectors.read(ordinal);
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+
+        List<Candidate> entryPoints = List.of(new Candidate(current, vectors.dot(current, vector)));
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = searchLayer(vector, entryPoints, efConstruction, l, null);
+            int maxConnections = l == 0 ? maxConnectionsLayer0 : m;
+            int[] selected = selectNeighbors(found, maxConnections);
+            layers[l] = selected;
+            for (int neighbor : selected) {
+                connect(neighbor, ordinal, l, maxConnections);
+            }
+            entryPoints = found;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = ordinal;
+        }
+    }
+
+    /**
+     * 近似最近邻搜索
+     *
+     * @param accept 结果过滤条件，为null时接受所有节点；不满足条件的节点仍参与图遍历，只是不进入结果
+     */
+    List<Candidate> search(float[] query, int topK, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Candidate> found = searchLayer(query,
+            List.of(new Candidate(current, vectors.dot(current, query))), Math.max(ef, topK), 0, accept);
+        return found.size() > topK ? found.subList(0, topK) : found;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float best = vectors.dot(current, query);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighborsOf(current, layer)) {
+                float score = vectors.dot(neighbor, query);
+                if (score > best) {
+                    best = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层束搜索，返回按相似度降序排列的至多ef个结果
+     */
+    private List<Candidate> searchLayer(float[] query, List<Candidate> entryPoints, int ef, int layer,
+                                        IntPredicate accept) {
+        BitSet visited = new BitSet(neighbors.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BY_SCORE.reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(BY_SCORE);
+
+        for (Candidate entry : entryPoints) {
+            visited.set(entry.ordinal());
+            candidates.add(entry);
+            if (accept == null || accept.test(entry.ordinal())) {
+                results.add(entry);
+            }
+        }
+        trim(results, ef);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbor : neighborsOf(closest.ordinal(), layer)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = vectors.dot(neighbor, query);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Candidate candidate = new Candidate(neighbor, score);
+                    candidates.add(candidate);
+                    if (accept == null || accept.test(neighbor)) {
+                        results.add(candidate);
+                        trim(results, ef);
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(BY_SCORE.reversed());
+        return sorted;
+    }
+
+    private int[] selectNeighbors(List<Candidate> candidates, int maxConnections) {
+        return candidates.stream()
+            .limit(maxConnections)
+            .mapToInt(Candidate::ordinal)
+            .toArray();
+    }
+
+    /**
+     * 建立反向连接，超出上限时只保留与该节点最相近的邻居
+     */
+    private void connect(int node, int newNeighbor, int layer, int maxConnections) {
+        int[][] layers = neighbors.get(node);
+        int[] existing = layers[layer];
+        int[] grown = Arrays.copyOf(existing, existing.length + 1);
+        grown[existing.length] = newNeighbor;
+
+        if (grown.length <= maxConnections) {
+            layers[layer] = grown;
+            return;
+        }
+
+        layers[layer] = Arrays.stream(grown)
+            .mapToObj(neighbor -> new Candidate(neighbor, vectors.dot(node, neighbor)))
+            .sorted(BY_SCORE.reversed())
+            .limit(maxConnections)
+            .mapToInt(Candidate::ordinal)
+            .toArray();
+    }
+
+    private int[] neighborsOf(int node, int layer) {
+        int[][] layers = neighbors.get(node);
+        return layers == null || layer >= layers.length ? new int[0] : layers[layer];
+    }
+
+    private static void trim(PriorityQueue<Candidate> results, int ef) {
+        while (results.size() > ef) {
+            results.poll();
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.mtm.backend.service.rag.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.document.DocumentMetadata;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * 嵌入式向量存储 - 无需Redis的纯Java实现
+ *
+ * 存储结构（位于dataDir目录下）：
+ * vectors.bin   - 归一化后的float32向量，内存映射到堆外
+ * documents.log - 文档正文与元数据的追加日志（JSON Lines），启动时回放
+ * HNSW图只保存在内存中，启动时由向量文件重建；删除采用墓碑标记，
+ * 启动回放后墓碑占比达到阈值时压缩两个文件，存活文档按原顺序重新编号
+ */
+@Slf4j
+public class MappedHnswVectorStore implements VectorStore, Closeable {
+
+    private static final String VECTOR_FILE = "vectors.bin";
+    private static final String DOCUMENT_LOG = "documents.log";
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final String COMPACT_MARKER = "compact.committed";
+
+    /** 过滤后候选数不超过该值时直接精确扫描，避免高选择性过滤下图遍历退化 */
+    private static final int EXACT_SCAN_THRESHOLD = 2000;
+
+    private final EmbeddingModel embeddingModel;
+    private final MappedVectorFile vectors;
+    private final HnswGraph graph;
+    private final int efSearch;
+    private final Path vectorFile;
+    private final Path documentLog;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<StoredDocument> documents = new ArrayList<>();
+    private final Map<String, Integer> ordinalById = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private BufferedWriter logWriter;
+
+    /**
+     * @param compactTombstoneRatio 启动时墓碑占全部序号的比例达到该值即压缩数据文件
+     */
+    public MappedHnswVectorStore(EmbeddingModel embeddingModel, Path dataDir, int dimensions,
+                                 int m, int efConstruction, int efSearch, int segmentCapacity,
+                                 double compactTombstoneRatio) {
+        this.embeddingModel = embeddingModel;
+        this.efSearch = efSearch;
+        this.vectorFile = dataDir.resolve(VECTOR_FILE);
+        this.documentLog = dataDir.resolve(DOCUMENT_LOG);
+        try {
+            Files.createDirectories(dataDir);
+            recoverCompaction();
+            replayLog();
+            compactIfNeeded(dimensions, compactTombstoneRatio);
+            this.vectors = new MappedVectorFile(vectorFile, dimensions, segmentCapacity);
+            this.graph = new HnswGraph(vectors, m, efConstruction);
+            live.stream().forEach(graph::insert);
+            this.logWriter = Files.newBufferedWriter(documentLog, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new IllegalStateException("初始化嵌入式向量存储失败: " + e.getMessage(), e);
+        }
+        log.info("嵌入式向量存储已加载: 目录={}, 文档数={}, 维度={}", dataDir, ordinalById.size(), dimensions);
+    }
+
+    @Override
+    public String getName() {
+        return "MappedHnswVectorStore";
+    }
+
+    @Override
+    public void add(List<Document> documentList) {
+        if (documentList == null || documentList.isEmpty()) {
+            return;
+        }
+        // 嵌入调用放在锁外，避免阻塞并发查询
+        List<float[]> embeddings = embeddingModel.embed(documentList.stream()
+            .map(Document::getText)
+            .collect(Collectors.toList()));
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documentList.size(); i++) {
+                Document document = documentList.get(i);
+                removeLocked(document.getId());
+
+                int ordinal = documents.size();
+                vectors.write(ordinal, normalize(embeddings.get(i)));
+                StoredDocument stored = new StoredDocument(document.getId(), document.getText(),
+                    new HashMap<>(document.getMetadata()));
+                documents.add(stored);
+                ordinalById.put(stored.getId(), ordinal);
+                live.set(ordinal);
+                graph.insert(ordinal);
+                appendLog(new LogEntry("add", stored.getId(), ordinal, stored.getText(), stored.getMetadata()));
+            }
+            vectors.force();
+            logWriter.flush();
+        } catch (IOException e) {
+            log.error("写入嵌入式向量存储失败", e);
+            throw new RuntimeException("写入向量存储失败: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.writeLock().lock();
+        try {
+            for (String id : idList) {
+                if (removeLocked(id)) {
+                    appendLog(new LogEntry("delete", id, null, null, null));
+                }
+            }
+            logWriter.flush();
+        } catch (IOException e) {
+            log.error("删除嵌入式向量存储文档失败", e);
+            throw new RuntimeException("删除向量失败: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        List<String> ids;
+        lock.readLock().lock();
+        try {
+            ids = live.stream()
+                .filter(ordinal -> FilterExpressionEvaluator.matches(filterExpression, documents.get(ordinal).getMetadata()))
+                .mapToObj(ordinal -> documents.get(ordinal).getId())
+                .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+        delete(ids);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingModel.embed(request.getQuery()));
+        Filter.Expression filter = request.hasFilterExpression() ? request.getFilterExpression() : null;
+
+        lock.readLock().lock();
+        try {
+            List<HnswGraph.Candidate> candidates;
+            BitSet accepted = filter == null ? live : matchingOrdinals(filter);
+
+            if (accepted.cardinality() <= EXACT_SCAN_THRESHOLD) {
+                candidates = exactScan(query, accepted, request.getTopK());
+            } else {
+                candidates = graph.search(query, request.getTopK(), efSearch, accepted::get);
+            }
+
+            return candidates.stream()
+                .filter(candidate -> candidate.score() >= request.getSimilarityThreshold())
+                .map(candidate -> toDocument(candidate))
+                .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> java.util.Optional<T> getNativeClient() {
+        return java.util.Optional.of((T) this);
+    }
+
+    /**
+     * 按文档ID取回（归一化后的）向量，不存在的ID不出现在结果中
+     */
+    public Map<String, float[]> getVectors(List<String> ids) {
+        Map<String, float[]> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                Integer ordinal = ordinalById.get(id);
+                if (ordinal != null) {
+                    result.put(id, vectors.read(ordinal));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按文档ID批量读取文档（不含向量），保持输入顺序，不存在的ID跳过
+     */
+    public List<Document> getDocuments(List<String> ids) {
+        List<Document> result = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                Integer ordinal = ordinalById.get(id);
+                if (ordinal != null) {
+                    StoredDocument stored = documents.get(ordinal);
+                    result.add(Document.builder()
+                        .id(stored.getId())
+                        .text(stored.getText())
+                        .metadata(new HashMap<>(stored.getMetadata()))
+                        .build());
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按写入顺序扫描文档（不含向量）
+     * 运行期间序号只增不减（压缩只在启动时进行），以序号作游标可得到稳定分页，期间的写入只会出现在末尾
+     *
+     * @param fromOrdinal 起始序号（含）
+     */
+    public ScanResult scan(Predicate<Map<String, Object>> filter, int fromOrdinal, int limit) {
+        List<Document> page = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            int ordinal = live.nextSetBit(Math.max(0, fromOrdinal));
+            while (ordinal >= 0 && page.size() < limit) {
+                StoredDocument stored = documents.get(ordinal);
+                if (filter.test(stored.getMetadata())) {
+                    page.add(Document.builder()
+                        .id(stored.getId())
+                        .text(stored.getText())
+                        .metadata(new HashMap<>(stored.getMetadata()))
+                        .build());
+                }
+                ordinal = live.nextSetBit(ordinal + 1);
+            }
+            return new ScanResult(page, ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 统计满足条件的文档数量
+     */
+    public long count(Predicate<Map<String, Object>> filter) {
+        lock.readLock().lock();
+        try {
+            return live.stream()
+                .filter(ordinal -> filter.test(documents.get(ordinal).getMetadata()))
+                .count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前存活的文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            logWriter.close();
+            vectors.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ============ 私有工具方法 ============
+
+    private BitSet matchingOrdinals(Filter.Expression filter) {
+        BitSet matching = new BitSet(documents.size());
+        live.stream()
+            .filter(ordinal -> FilterExpressionEvaluator.matches(filter, documents.get(ordinal).getMetadata()))
+            .forEach(matching::set);
+        return matching;
+    }
+
+    private List<HnswGraph.Candidate> exactScan(float[] query, BitSet accepted, int topK) {
+        return accepted.stream()
+            .mapToObj(ordinal -> new HnswGraph.Candidate(ordinal, vectors.dot(ordinal, query)))
+            .sorted(Comparator.comparingDouble(HnswGraph.Candidate::score).reversed())
+            .limit(topK)
+            .collect(Collectors.toList());
+    }
+
+    private Document toDocument(HnswGraph.Candidate candidate) {
+        StoredDocument stored = documents.get(candidate.ordinal());
+        Map<String, Object> metadata = new HashMap<>(stored.getMetadata());
+        metadata.put(DocumentMetadata.DISTANCE.value(), 1.0f - candidate.score());
+        return Document.builder()
+            .id(stored.getId())
+            .text(stored.getText())
+            .metadata(metadata)
+            .score((double) candidate.score())
+            .build();
+    }
+
+    private boolean removeLocked(String id) {
+        Integer ordinal = ordinalById.remove(id);
+        if (ordinal == null) {
+            return false;
+        }
+        live.clear(ordinal);
+        return true;
+    }
+
+    private void appendLog(LogEntry entry) throws IOException {
+        logWriter.write(objectMapper.writeValueAsString(entry));
+        logWriter.newLine();
+    }
+
+    /**
+     * 回放文档日志，重建文档列表与存活标记
+     */
+    @SuppressWarnings("unchecked")
+    private void replayLog() throws IOException {
+        if (!Files.exists(documentLog)) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(documentLog, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                LogEntry entry = objectMapper.readValue(line, LogEntry.class);
+                if ("add".equals(entry.getOp())) {
+                    removeLocked(entry.getId());
+                    while (documents.size() <= entry.getOrdinal()) {
+                        documents.add(null);
+                    }
+                    documents.set(entry.getOrdinal(), new StoredDocument(entry.getId(), entry.getText(),
+                        entry.getMetadata() != null ? entry.getMetadata() : new HashMap<>()));
+                    ordinalById.put(entry.getId(), entry.getOrdinal());
+                    live.set(entry.getOrdinal());
+                } else if ("delete".equals(entry.getOp())) {
+                    removeLocked(entry.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 墓碑占比达到阈值时压缩数据文件：存活文档按原顺序编号为连续序号，先写入临时文件，
+     * 两个临时文件都刷盘后落提交标记，再替换原文件
+     */
+    private void compactIfNeeded(int dimensions, double tombstoneRatio) throws IOException {
+        int tombstones = documents.size() - live.cardinality();
+        if (tombstones == 0 || tombstones < documents.size() * tombstoneRatio) {
+            return;
+        }
+        int[] liveOrdinals = live.stream().toArray();
+        MappedVectorFile.copySlots(vectorFile, compactPath(vectorFile), dimensions, liveOrdinals);
+
+        List<StoredDocument> compacted = new ArrayList<>(liveOrdinals.length);
+        try (FileChannel channel = FileChannel.open(compactPath(documentLog), StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            for (int ordinal : liveOrdinals) {
+                StoredDocument stored = documents.get(ordinal);
+                writer.write(objectMapper.writeValueAsString(
+                    new LogEntry("add", stored.getId(), compacted.size(), stored.getText(), stored.getMetadata())));
+                writer.newLine();
+                compacted.add(stored);
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        Files.createFile(documentLog.resolveSibling(COMPACT_MARKER));
+        finishCompaction();
+
+        documents.clear();
+        ordinalById.clear();
+        live.clear();
+        for (StoredDocument stored : compacted) {
+            ordinalById.put(stored.getId(), documents.size());
+            live.set(documents.size());
+            documents.add(stored);
+        }
+        log.info("嵌入式向量存储已压缩: 清理墓碑 {} 个, 剩余文档 {} 个", tombstones, compacted.size());
+    }
+
+    /**
+     * 处理上次未完成的压缩：已落提交标记则继续替换原文件，否则丢弃残留的临时文件
+     */
+    private void recoverCompaction() throws IOException {
+        if (Files.exists(documentLog.resolveSibling(COMPACT_MARKER))) {
+            log.warn("检测到未完成的向量存储压缩，继续替换数据文件");
+            finishCompaction();
+            return;
+        }
+        Files.deleteIfExists(compactPath(vectorFile));
+        Files.deleteIfExists(compactPath(documentLog));
+    }
+
+    private void finishCompaction() throws IOException {
+        for (Path target : List.of(vectorFile, documentLog)) {
+            Path source = compactPath(target);
+            if (Files.exists(source)) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+        Files.delete(documentLog.resolveSibling(COMPACT_MARKER));
+    }
+
+    private static Path compactPath(Path path) {
+        return path.resolveSibling(path.getFileName() + COMPACT_SUFFIX);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * 扫描结果，nextOrdinal为-1表示已到末尾
+     */
+    public record ScanResult(List<Document> documents, int nextOrdinal) {
+    }
+
+    /**
+     * 存储的文档正文与元数据
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    private static class StoredDocument {
+        private String id;
+        private String text;
+        private Map<String, Object> metadata;
+    }
+
+    /**
+     * 文档日志条目
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    static class LogEntry {
+        private String op;
+        private String id;
+        private Integer ordinal;
+        private String text;
+        private Map<String, Object> metadata;
+    }
+}
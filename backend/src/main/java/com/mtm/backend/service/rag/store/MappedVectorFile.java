@@ -0,0 +1,159 @@
+package com.mtm.backend.service.rag.store;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 基于内存映射文件的定长向量存储
+ * 向量按序号(ordinal)顺序写入，数据位于堆外的页缓存中，不占用JVM堆；
+ * 文件按固定大小分段映射，规避单个MappedByteBuffer 2GB的上限
+ */
+final class MappedVectorFile implements Closeable {
+
+    private static final int FLOAT_BYTES = Float.BYTES;
+
+    private final FileChannel channel;
+    private final int dimensions;
+    private final int slotsPerSegment;
+    private final long segmentBytes;
+    private final int slotBytes;
+
+    /** 已映射的分段，扩容时整体替换，读线程无需加锁 */
+    private volatile MappedByteBuffer[] segments;
+
+    MappedVectorFile(Path path, int dimensions, int slotsPerSegment) throws IOException {
+        this.dimensions = dimensions;
+        this.slotsPerSegment = slotsPerSegment;
+        this.slotBytes = dimensions * FLOAT_BYTES;
+        this.segmentBytes = (long) slotBytes * slotsPerSegment;
+        this.channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        int existing = (int) ((channel.size() + segmentBytes - 1) / segmentBytes);
+        this.segments = new MappedByteBuffer[0];
+        for (int i = 0; i < existing; i++) {
+            addSegment();
+        }
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 写入指定序号的向量，必要时扩展文件
+     */
+    synchronized void write(int ordinal, float[] vector) throws IOException {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不匹配: 期望 " + dimensions + ", 实际 " + vector.length);
+        }
+        while (ordinal / slotsPerSegment >= segments.length) {
+            addSegment();
+        }
+        MappedByteBuffer segment = segments[ordinal / slotsPerSegment];
+        int offset = (ordinal % slotsPerSegment) * slotBytes;
+        for (int i = 0; i < dimensions; i++) {
+            segment.putFloat(offset + i * FLOAT_BYTES, vector[i]);
+        }
+    }
+
+    /**
+     * 读取指定序号的向量副本
+     */
+    float[] read(int ordinal) {
+        MappedByteBuffer segment = segments[ordinal / slotsPerSegment];
+        int offset = (ordinal % slotsPerSegment) * slotBytes;
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = segment.getFloat(offset + i * FLOAT_BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * 直接在映射内存上计算与查询向量的点积，不产生中间数组
+     */
+    float dot(int ordinal, float[] query) {
+        MappedByteBuffer segment = segments[ordinal / slotsPerSegment];
+        int offset = (ordinal % slotsPerSegment) * slotBytes;
+        float sum = 0f;
+        for (int i = 0; i < dimensions; i++) {
+            sum += segment.getFloat(offset + i * FLOAT_BYTES) * query[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 计算两个已存储向量的点积
+     */
+    float dot(int left, int right) {
+        MappedByteBuffer a = segments[left / slotsPerSegment];
+        MappedByteBuffer b = segments[right / slotsPerSegment];
+        int offsetA = (left % slotsPerSegment) * slotBytes;
+        int offsetB = (right % slotsPerSegment) * slotBytes;
+        float sum = 0f;
+        for (int i = 0; i < dimensions; i++) {
+            sum += a.getFloat(offsetA + i * FLOAT_BYTES) * b.getFloat(offsetB + i * FLOAT_BYTES);
+        }
+        return sum;
+    }
+
+    /**
+     * 将脏页刷回磁盘
+     */
+    synchronized void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * 按给定顺序把源文件中的向量槽位复制为目标文件的连续槽位，用于压缩；不做内存映射，复制后刷盘
+     */
+    static void copySlots(Path source, Path target, int dimensions, int[] ordinals) throws IOException {
+        int slotBytes = dimensions * FLOAT_BYTES;
+        ByteBuffer slot = ByteBuffer.allocate(slotBytes);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < ordinals.length; i++) {
+                long from = (long) ordinals[i] * slotBytes;
+                slot.clear();
+                while (slot.hasRemaining()) {
+                    if (in.read(slot, from + slot.position()) < 0) {
+                        throw new EOFException("向量文件缺少序号 " + ordinals[i] + " 的数据");
+                    }
+                }
+                long to = (long) i * slotBytes;
+                slot.flip();
+                while (slot.hasRemaining()) {
+                    out.write(slot, to + slot.position());
+                }
+            }
+            out.force(true);
+        }
+    }
+
+    private void addSegment() throws IOException {
+        long position = segmentBytes * segments.length;
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+        grown[segments.length] = segment;
+        this.segments = grown;
+    }
+}
@@ -0,0 +1,445 @@
+package com.mtm.backend.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 端到端压测负载生成器
+ * 驱动以 perf profile 启动的服务（模拟模型 + 嵌入式向量存储 + H2），请求经过真实的控制器、鉴权、检索与调度链路。
+ * 按场景统计客户端耗时；并用统计窗口前后 /actuator/metrics 的差值，
+ * 把每个接口的服务端耗时拆成模型耗时（llm.model.latency，按入口接口归类）与应用自身开销
+ *
+ * 运行：
+ * 1. 启动服务（需要本地普通Redis）：mvn spring-boot:run -Pperf
+ * 2. mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mtm.backend.perf.LoadGenerator -Dperf.concurrency=32
+ *
+ * 线程模式对比（1000个并发对话会话，虚拟线程模式需要JDK 21）：
+ * 调度器上限调高到不再是瓶颈，吞吐只受服务端线程模型限制；两次分别以平台线程与虚拟线程启动服务，其余参数相同
+ * 1. mvn spring-boot:run -Pperf -Dspring-boot.run.arguments="--llm.scheduler.max-concurrency=2000
+ *    --llm.scheduler.interactive.max-concurrency=2000 --llm.scheduler.tokens-per-minute=1000000000"
+ *    （虚拟线程模式在前面加上环境变量 VIRTUAL_THREADS_ENABLED=true）
+ * 2. mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mtm.backend.perf.LoadGenerator
+ *    -Dperf.concurrency=1000 -Dperf.warmupSeconds=20 -Dperf.documents=4
+ *    -Dperf.mix=assistant=2,simple=1,assistant-stream=2,stream=1
+ * 报告末尾的总吞吐与服务端线程数（jvm.threads.live/peak）即为对比结果
+ *
+ * 参数（系统属性）：
+ * perf.baseUrl         服务地址，默认 http://localhost:8082
+ * perf.concurrency     并发用户数（闭环：收到完整响应后立即发下一个请求），默认 32
+ * perf.warmupSeconds   预热时长，不计入统计，默认 10
+ * perf.durationSeconds 统计时长，默认 60
+ * perf.documents       预置到知识库的文档数，默认 20
+ * perf.mix             场景权重，默认 qa=4,qa-stream=3,assistant=1,assistant-stream=1,simple=1,stream=0
+ */
+public class LoadGenerator {
+
+    private static final String[] TOPICS = {
+        "梯度下降", "反向传播", "卷积神经网络", "决策树", "支持向量机", "贝叶斯定理",
+        "傅里叶变换", "线性回归", "主成分分析", "马尔可夫链", "动态规划", "图的最短路径"
+    };
+
+    private static final String[] QUESTION_TEMPLATES = {
+        "什么是%s？", "%s的核心思想是什么？", "请解释%s的基本原理", "%s有哪些常见的应用场景？",
+        "学习%s时学生容易犯哪些错误？", "如何在课堂上讲解%s？"
+    };
+
+    private static final String[] SENTENCES = {
+        "%s是本课程的重要内容，理解它需要先掌握相关的数学基础。",
+        "在讲解%s时，可以先从直观的例子入手，再给出严格的定义。",
+        "%s的推导过程包括建立模型、确定目标函数和求解三个步骤。",
+        "实际应用中，%s常与其他方法结合使用以提升效果。",
+        "学生在学习%s时常见的误区是忽略了方法成立的前提条件。",
+        "课后练习应覆盖%s的基本计算与综合应用两个层次。"
+    };
+
+    private static final String EVENT_STREAM = "text/event-stream";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String baseUrl = System.getProperty("perf.baseUrl", "http://localhost:8082");
+    private final int concurrency = Integer.getInteger("perf.concurrency", 32);
+    private final int warmupSeconds = Integer.getInteger("perf.warmupSeconds", 10);
+    private final int durationSeconds = Integer.getInteger("perf.durationSeconds", 60);
+    private final int documents = Integer.getInteger("perf.documents", 20);
+    private final String mix = System.getProperty("perf.mix",
+        "qa=4,qa-stream=3,assistant=1,assistant-stream=1,simple=1,stream=0");
+
+    private final HttpClient client = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+    private String token;
+    private String knowledgeBaseId;
+
+    public static void main(String[] args) throws Exception {
+        new LoadGenerator().run();
+    }
+
+    private void run() throws Exception {
+        login();
+        prepareKnowledgeBase();
+        registerScenarios();
+
+        List<Scenario> weighted = new ArrayList<>();
+        for (Scenario scenario : scenarios.values()) {
+            for (int i = 0; i < scenario.weight; i++) {
+                weighted.add(scenario);
+            }
+        }
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("perf.mix中没有权重大于0的场景: " + mix);
+        }
+
+        long startNanos = System.nanoTime();
+        long recordFrom = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long stopAt = recordFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < stopAt) {
+                    Scenario scenario = weighted.get(ThreadLocalRandom.current().nextInt(weighted.size()));
+                    scenario.execute(System.nanoTime() >= recordFrom);
+                }
+            }, "load-" + i);
+            workers.add(worker);
+            worker.start();
+        }
+
+        System.out.printf("预热%d秒，统计%d秒，并发用户%d%n", warmupSeconds, durationSeconds, concurrency);
+        TimeUnit.NANOSECONDS.sleep(Math.max(0, recordFrom - System.nanoTime()));
+        Map<String, double[]> before = serverSnapshot();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Map<String, double[]> after = serverSnapshot();
+        report(before, after);
+    }
+
+    // ============ 准备数据 ============
+
+    private void login() throws Exception {
+        String email = "perf-" + UUID.randomUUID().toString().substring(0, 8) + "@example.com";
+        Map<String, Object> account = Map.of("username", email.substring(0, email.indexOf('@')), "email", email,
+            "password", "perf-password");
+        postJson("/api/auth/register", account);
+        JsonNode login = postJson("/api/auth/login", Map.of("email", email, "password", "perf-password"));
+        token = login.path("token").asText(null);
+        if (token == null) {
+            throw new IllegalStateException("登录失败: " + login);
+        }
+    }
+
+    private void prepareKnowledgeBase() throws Exception {
+        List<String> resourceIds = new ArrayList<>();
+        for (int i = 0; i < documents; i++) {
+            String topic = TOPICS[i % TOPICS.length];
+            StringBuilder text = new StringBuilder(topic).append("教案（第").append(i + 1).append("篇）\n\n");
+            for (int paragraph = 0; paragraph < 8; paragraph++) {
+                for (String sentence : SENTENCES) {
+                    text.append(String.format(sentence, topic));
+                }
+                text.append("\n\n");
+            }
+            resourceIds.add(uploadDocument(topic + "-" + i + ".txt", text.toString()));
+        }
+
+        JsonNode created = postJson("/api/resources/knowledge-base", Map.of(
+            "name", "压测知识库", "subject", "计算机科学", "courseLevel", "undergraduate", "resourceIds", resourceIds));
+        knowledgeBaseId = created.path("knowledgeBaseId").asText(null);
+        if (knowledgeBaseId == null) {
+            throw new IllegalStateException("创建知识库失败: " + created);
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(5);
+        while (true) {
+            JsonNode status = getJson("/api/resources/knowledge-base/" + knowledgeBaseId + "/status");
+            String state = status.path("status").asText();
+            if ("completed".equals(state)) {
+                System.out.printf("知识库%s已就绪（%d篇文档）%n", knowledgeBaseId, documents);
+                return;
+            }
+            if ("failed".equals(state) || System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("知识库构建未完成: " + status);
+            }
+            TimeUnit.SECONDS.sleep(1);
+        }
+    }
+
+    private String uploadDocument(String filename, String content) throws Exception {
+        String boundary = "----perf" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Map<String, String> fields = Map.of("subject", "计算机科学", "courseLevel", "undergraduate",
+            "resourceType", "lesson_plan", "autoVectorize", "false", "autoExtractKeywords", "false");
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey()
+                + "\"\r\n\r\n" + field.getValue() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        body.writeBytes(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + filename
+            + "\"\r\nContent-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = authorized("/api/resources/upload/document")
+            .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+            .build();
+        JsonNode uploaded = MAPPER.readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+        String id = uploaded.path("id").asText(null);
+        if (id == null) {
+            throw new IllegalStateException("上传文档失败: " + uploaded);
+        }
+        return id;
+    }
+
+    // ============ 场景 ============
+
+    private void registerScenarios() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        // 流式接口与浏览器一样声明接受SSE，否则服务端按普通响应整体返回
+        scenario(weights, "qa", "/api/resources/qa", false,
+            () -> json("/api/resources/qa", ragQuery()).build());
+        scenario(weights, "qa-stream", "/api/resources/qa/stream", true,
+            () -> json("/api/resources/qa/stream", ragQuery()).header("Accept", EVENT_STREAM).build());
+        scenario(weights, "assistant", "/api/chat/assistant", false,
+            () -> json("/api/chat/assistant", Map.of("message", question())).build());
+        scenario(weights, "assistant-stream", "/api/chat/assistant/stream", true,
+            () -> json("/api/chat/assistant/stream", Map.of("message", question())).header("Accept", EVENT_STREAM).build());
+        scenario(weights, "simple", "/api/simple/chat", false,
+            () -> authorized("/api/simple/chat?query=" + encode(question())).GET().build());
+        scenario(weights, "stream", "/api/stream/chat", true,
+            () -> authorized("/api/stream/chat?query=" + encode(question()) + "&chat-id=" + UUID.randomUUID())
+                .header("Accept", EVENT_STREAM).GET().build());
+    }
+
+    private void scenario(Map<String, Integer> weights, String name, String uri, boolean streaming,
+                          RequestFactory factory) {
+        int weight = weights.getOrDefault(name, 0);
+        if (weight > 0) {
+            scenarios.put(name, new Scenario(name, uri, streaming, weight, factory));
+        }
+    }
+
+    private Map<String, Object> ragQuery() {
+        return Map.of("query", question(), "knowledgeBaseId", knowledgeBaseId, "topK", 5);
+    }
+
+    private static String question() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return String.format(QUESTION_TEMPLATES[random.nextInt(QUESTION_TEMPLATES.length)],
+            TOPICS[random.nextInt(TOPICS.length)]);
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequest create() throws Exception;
+    }
+
+    private final class Scenario {
+
+        private final String name;
+        private final String uri;
+        private final boolean streaming;
+        private final int weight;
+        private final RequestFactory factory;
+        private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<Long> firstChunks = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        private Scenario(String name, String uri, boolean streaming, int weight, RequestFactory factory) {
+            this.name = name;
+            this.uri = uri;
+            this.streaming = streaming;
+            this.weight = weight;
+            this.factory = factory;
+        }
+
+        private void execute(boolean record) {
+            long start = System.nanoTime();
+            long firstChunk = -1;
+            boolean failed;
+            try {
+                HttpRequest request = factory.create();
+                if (streaming) {
+                    HttpResponse<Stream<String>> response = client.send(request, HttpResponse.BodyHandlers.ofLines());
+                    try (Stream<String> lines = response.body()) {
+                        Iterator<String> iterator = lines.iterator();
+                        while (iterator.hasNext()) {
+                            if (!iterator.next().isBlank() && firstChunk < 0) {
+                                firstChunk = System.nanoTime() - start;
+                            }
+                        }
+                    }
+                    failed = response.statusCode() >= 400;
+                } else {
+                    failed = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 400;
+                }
+            } catch (Exception e) {
+                failed = true;
+            }
+            if (!record) {
+                return;
+            }
+            if (failed) {
+                errors.incrementAndGet();
+                return;
+            }
+            latencies.add(System.nanoTime() - start);
+            if (firstChunk >= 0) {
+                firstChunks.add(firstChunk);
+            }
+        }
+    }
+
+    // ============ 服务端指标 ============
+
+    /**
+     * 各场景接口的 {请求数, 服务端总耗时秒, 模型总耗时秒}，以及后台模型调用与调度排队的 {次数, 总耗时秒}
+     */
+    private Map<String, double[]> serverSnapshot() throws Exception {
+        Map<String, double[]> snapshot = new LinkedHashMap<>();
+        for (Scenario scenario : scenarios.values()) {
+            double[] server = meter("http.server.requests", "uri:" + scenario.uri);
+            double[] model = meter("llm.model.latency", "endpoint:" + scenario.uri);
+            snapshot.put(scenario.name, new double[]{server[0], server[1], model[1]});
+        }
+        snapshot.put("background", meter("llm.model.latency", "endpoint:background"));
+        snapshot.put("queue", meter("llm.scheduler.queue.wait", null));
+        snapshot.put("threads", new double[]{gauge("jvm.threads.live"), gauge("jvm.threads.peak")});
+        return snapshot;
+    }
+
+    private double[] meter(String name, String tag) throws Exception {
+        String path = "/actuator/metrics/" + name + (tag != null ? "?tag=" + encode(tag) : "");
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+        double count = 0;
+        double total = 0;
+        // 还没有匹配的指标时返回404
+        if (response.statusCode() == 200) {
+            for (JsonNode measurement : MAPPER.readTree(response.body()).path("measurements")) {
+                switch (measurement.path("statistic").asText()) {
+                    case "COUNT" -> count = measurement.path("value").asDouble();
+                    case "TOTAL_TIME" -> total = measurement.path("value").asDouble();
+                    default -> {
+                    }
+                }
+            }
+        }
+        return new double[]{count, total};
+    }
+
+    private double gauge(String name) throws Exception {
+        HttpResponse<String> response = client.send(
+            HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name)).GET().build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            return Double.NaN;
+        }
+        for (JsonNode measurement : MAPPER.readTree(response.body()).path("measurements")) {
+            if ("VALUE".equals(measurement.path("statistic").asText())) {
+                return measurement.path("value").asDouble();
+            }
+        }
+        return Double.NaN;
+    }
+
+    private void report(Map<String, double[]> before, Map<String, double[]> after) {
+        System.out.printf("%n%-18s %8s %6s %8s %9s %9s %9s %11s %11s %11s %11s%n", "场景", "请求数", "错误",
+            "吞吐/s", "p50(ms)", "p95(ms)", "p99(ms)", "首片段p50", "服务端均值", "模型均值", "自身开销");
+        for (Scenario scenario : scenarios.values()) {
+            long[] sorted = scenario.latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] firstChunks = scenario.firstChunks.stream().mapToLong(Long::longValue).sorted().toArray();
+            double[] from = before.get(scenario.name);
+            double[] to = after.get(scenario.name);
+            double requests = to[0] - from[0];
+            double serverMs = requests > 0 ? (to[1] - from[1]) * 1000 / requests : Double.NaN;
+            double modelMs = requests > 0 ? (to[2] - from[2]) * 1000 / requests : Double.NaN;
+            System.out.printf("%-18s %8d %6d %8.1f %9.1f %9.1f %9.1f %11s %11.1f %11.1f %11.1f%n",
+                scenario.name, sorted.length, scenario.errors.get(), sorted.length / (double) durationSeconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                firstChunks.length > 0 ? String.format("%.1f", percentile(firstChunks, 0.50)) : "-",
+                serverMs, modelMs, serverMs - modelMs);
+        }
+
+        long completed = scenarios.values().stream().mapToLong(scenario -> scenario.latencies.size()).sum();
+        long failed = scenarios.values().stream().mapToLong(scenario -> scenario.errors.get()).sum();
+        System.out.printf("%n合计: %d次请求，%d次错误，吞吐%.1f/s（并发用户%d）%n",
+            completed, failed, completed / (double) durationSeconds, concurrency);
+        System.out.printf("服务端线程: 统计结束时存活%.0f个，峰值%.0f个（虚拟线程不计入）%n",
+            after.get("threads")[0], after.get("threads")[1]);
+
+        double[] background = delta(before.get("background"), after.get("background"));
+        double[] queue = delta(before.get("queue"), after.get("queue"));
+        System.out.printf("%n后台模型调用（相关问题生成、入库等）: %.0f次，平均%.1fms%n",
+            background[0], background[0] > 0 ? background[1] * 1000 / background[0] : 0);
+        System.out.printf("调度排队: %.0f次，平均%.1fms%n",
+            queue[0], queue[0] > 0 ? queue[1] * 1000 / queue[0] : 0);
+        System.out.println("服务端均值取自http.server.requests，模型均值为同一接口归类的llm.model.latency之和除以请求数，"
+            + "自身开销 = 服务端均值 - 模型均值（含鉴权、检索、调度排队与序列化）");
+        System.out.println("流式问答在回答结束后会在同一连接上等待相关问题（后台模型调用），其自身开销包含这段等待");
+    }
+
+    private static double[] delta(double[] from, double[] to) {
+        return new double[]{to[0] - from[0], to[1] - from[1]};
+    }
+
+    private static double percentile(long[] sortedNanos, double quantile) {
+        if (sortedNanos.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(quantile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    // ============ HTTP ============
+
+    private HttpRequest.Builder authorized(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofMinutes(2));
+        return token != null ? builder.header("Authorization", "Bearer " + token) : builder;
+    }
+
+    private HttpRequest.Builder json(String path, Object body) throws Exception {
+        return authorized(path)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(MAPPER.writeValueAsString(body)));
+    }
+
+    private JsonNode postJson(String path, Object body) throws Exception {
+        return MAPPER.readTree(client.send(json(path, body).build(), HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private JsonNode getJson(String path) throws Exception {
+        return MAPPER.readTree(client.send(authorized(path).GET().build(), HttpResponse.BodyHandlers.ofString()).body());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.service.rag.PreparedContextAdvisor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次请求构建ChatClient vs 预构建客户端 + Advisor参数 的单次调用开销基准
+ * 模型替换为立即返回的假实现，测得的是客户端构建与Advisor链本身的耗时；
+ * 使用GC profiler同时输出每次调用的分配字节数（gc.alloc.rate.norm）
+ *
+ * 运行：在IDE中直接执行main方法，或
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mtm.backend.service.llm.ChatClientRegistryBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatClientRegistryBenchmark {
+
+    private static final String SYSTEM_PROMPT = "你是一个专业的高等教育AI助手，请基于给定的上下文回答问题。";
+    private static final String QUESTION = "什么是梯度下降？请结合上下文说明学习率的作用。";
+
+    private ChatModel chatModel;
+    private ChatClient prebuiltRagClient;
+    private List<Document> context;
+
+    @Setup
+    public void setup() {
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage("梯度下降沿负梯度方向迭代更新参数。"))));
+        chatModel = new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                return response;
+            }
+        };
+        prebuiltRagClient = ChatClient.builder(chatModel)
+            .defaultAdvisors(new PreparedContextAdvisor())
+            .build();
+
+        context = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            context.add(new Document("梯度下降是一种一阶优化算法，第" + i + "段：学习率决定每一步沿负梯度方向移动的步长。"));
+        }
+    }
+
+    /**
+     * 改造前：每次请求新建Builder、设置系统提示词与Advisor后构建客户端
+     */
+    @Benchmark
+    public String perRequestClient() {
+        return ChatClient.builder(chatModel)
+            .defaultSystem(SYSTEM_PROMPT)
+            .defaultAdvisors(new PreparedContextAdvisor())
+            .build()
+            .prompt()
+            .user(QUESTION)
+            .advisors(a -> a.param(PreparedContextAdvisor.CONTEXT_DOCUMENTS, context))
+            .call()
+            .content();
+    }
+
+    /**
+     * 改造后：共享预构建客户端，系统提示词与上下文随请求传入
+     */
+    @Benchmark
+    public String prebuiltClient() {
+        return prebuiltRagClient
+            .prompt()
+            .system(SYSTEM_PROMPT)
+            .user(QUESTION)
+            .advisors(a -> a.param(PreparedContextAdvisor.CONTEXT_DOCUMENTS, context))
+            .call()
+            .content();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(ChatClientRegistryBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.mtm.backend.service.llm;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.retry.NonTransientAiException;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 熔断器状态转换与慢调用窗口测试
+ */
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofMillis(50);
+    private static final Duration SLOW_CALL = Duration.ofMillis(1000);
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRejectsCalls() {
+        CircuitBreaker breaker = new CircuitBreaker("chat", 3, Duration.ofMinutes(1), SLOW_CALL);
+
+        breaker.onFailure(new RuntimeException("timeout"));
+        breaker.onFailure(new RuntimeException("timeout"));
+        // 成功调用清零连续失败计数
+        breaker.onSuccess(10);
+        breaker.onFailure(new RuntimeException("timeout"));
+        breaker.onFailure(new RuntimeException("timeout"));
+        // 请求本身有误不计入
+        breaker.onFailure(new NonTransientAiException("400 bad request"));
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onFailure(new RuntimeException("timeout"));
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(breaker::acquirePermission).isInstanceOf(CircuitBreaker.CallNotPermittedException.class);
+    }
+
+    @Test
+    void halfOpenAllowsSingleTrialAndClosesOnSuccess() throws InterruptedException {
+        CircuitBreaker breaker = openedBreaker();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+
+        breaker.acquirePermission();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThatThrownBy(breaker::acquirePermission).isInstanceOf(CircuitBreaker.CallNotPermittedException.class);
+
+        breaker.onSuccess(10);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        breaker.acquirePermission();
+    }
+
+    @Test
+    void failedOrSlowTrialReopens() throws InterruptedException {
+        CircuitBreaker breaker = openedBreaker();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        breaker.acquirePermission();
+        breaker.onFailure(new RuntimeException("timeout"));
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        breaker.acquirePermission();
+        breaker.onSuccess(SLOW_CALL.toMillis() + 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.getLastFailure()).contains("试探调用过慢");
+    }
+
+    @Test
+    void cancelledTrialReleasesThePermit() throws InterruptedException {
+        CircuitBreaker breaker = openedBreaker();
+        Thread.sleep(OPEN_DURATION.toMillis() + 20);
+        breaker.acquirePermission();
+
+        breaker.onIgnored();
+        breaker.acquirePermission();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void probeSuccessEndsCooldownEarly() {
+        CircuitBreaker breaker = new CircuitBreaker("chat", 1, Duration.ofMinutes(1), SLOW_CALL);
+        breaker.onFailure(new RuntimeException("timeout"));
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        breaker.onProbeSuccess();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.acquirePermission();
+
+        breaker.onProbeFailure("connect timed out");
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void slowCallRateNeedsMinimumSamples() {
+        CircuitBreaker breaker = new CircuitBreaker("chat", 3, OPEN_DURATION, SLOW_CALL);
+        for (int i = 0; i < 9; i++) {
+            breaker.onSuccess(SLOW_CALL.toMillis() + 1);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onSuccess(SLOW_CALL.toMillis() + 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.getLastFailure()).contains("慢调用比例过高");
+    }
+
+    @Test
+    void slowCallWindowSlides() {
+        CircuitBreaker breaker = new CircuitBreaker("chat", 3, OPEN_DURATION, SLOW_CALL);
+        int fastCalls = CircuitBreaker.SLOW_WINDOW_SIZE / 2 + 1;
+        for (int i = 0; i < fastCalls; i++) {
+            breaker.onSuccess(10);
+        }
+        // 窗口填满时慢调用比例低于一半
+        for (int i = fastCalls; i < CircuitBreaker.SLOW_WINDOW_SIZE; i++) {
+            breaker.onSuccess(SLOW_CALL.toMillis() + 1);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // 再一次慢调用挤出最早的快调用，比例达到一半
+        breaker.onSuccess(SLOW_CALL.toMillis() + 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private static CircuitBreaker openedBreaker() {
+        CircuitBreaker breaker = new CircuitBreaker("chat", 1, OPEN_DURATION, SLOW_CALL);
+        breaker.onFailure(new RuntimeException("timeout"));
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        return breaker;
+    }
+}
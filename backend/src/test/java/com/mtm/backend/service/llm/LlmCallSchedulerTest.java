@@ -0,0 +1,151 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.config.LlmSchedulerConfig;
+import com.mtm.backend.enums.LlmLane;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 调度器的优先级出队、令牌保留下限与许可归还测试
+ */
+class LlmCallSchedulerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LlmCallScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void queuedInteractiveCallsAreDispatchedBeforeBatch() {
+        LlmSchedulerConfig config = new LlmSchedulerConfig();
+        config.setMaxConcurrency(1);
+        scheduler = new LlmCallScheduler(config, meterRegistry);
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        Disposable holder = hold(LlmLane.INTERACTIVE, 10, started, "holder");
+        // 批量请求先排队，交互式请求后到
+        Disposable batch = hold(LlmLane.BATCH, 10, started, "batch");
+        Disposable interactive = hold(LlmLane.INTERACTIVE, 10, started, "interactive");
+        assertThat(started).containsExactly("holder");
+        assertThat(queued(LlmLane.BATCH)).isEqualTo(1);
+        assertThat(queued(LlmLane.INTERACTIVE)).isEqualTo(1);
+
+        holder.dispose();
+        assertThat(started).containsExactly("holder", "interactive");
+
+        interactive.dispose();
+        assertThat(started).containsExactly("holder", "interactive", "batch");
+
+        batch.dispose();
+        assertThat(running(LlmLane.INTERACTIVE) + running(LlmLane.BATCH)).isZero();
+    }
+
+    @Test
+    void batchLaneCannotDrainTokensBelowItsFloor() {
+        LlmSchedulerConfig config = new LlmSchedulerConfig();
+        // 权重3:1，批量通道的保留下限为容量的3/4，只能用掉250个令牌
+        config.setTokensPerMinute(1000);
+        scheduler = new LlmCallScheduler(config, meterRegistry);
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        Disposable firstBatch = hold(LlmLane.BATCH, 200, started, "batch-1");
+        Disposable secondBatch = hold(LlmLane.BATCH, 200, started, "batch-2");
+        assertThat(started).containsExactly("batch-1");
+        assertThat(queued(LlmLane.BATCH)).isEqualTo(1);
+
+        // 交互式请求不受下限约束，使用保留的预算
+        Disposable interactive = hold(LlmLane.INTERACTIVE, 500, started, "interactive");
+        assertThat(started).containsExactly("batch-1", "interactive");
+        assertThat(queued(LlmLane.BATCH)).isEqualTo(1);
+
+        firstBatch.dispose();
+        secondBatch.dispose();
+        interactive.dispose();
+    }
+
+    @Test
+    void permitIsReleasedWhenStreamIsCancelled() {
+        LlmSchedulerConfig config = new LlmSchedulerConfig();
+        config.setMaxConcurrency(1);
+        scheduler = new LlmCallScheduler(config, meterRegistry);
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        Disposable stream = hold(LlmLane.INTERACTIVE, 10, started, "stream");
+        assertThat(running(LlmLane.INTERACTIVE)).isEqualTo(1);
+
+        stream.dispose();
+        assertThat(running(LlmLane.INTERACTIVE)).isZero();
+        assertThat(scheduler.call(LlmLane.INTERACTIVE, 10, () -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void queueTimeoutAbandonsTheTicket() {
+        LlmSchedulerConfig config = new LlmSchedulerConfig();
+        config.setMaxConcurrency(1);
+        config.getInteractive().setQueueTimeoutMs(100);
+        scheduler = new LlmCallScheduler(config, meterRegistry);
+        List<String> started = new CopyOnWriteArrayList<>();
+
+        Disposable holder = hold(LlmLane.INTERACTIVE, 10, started, "holder");
+        assertThatThrownBy(() -> scheduler.call(LlmLane.INTERACTIVE, 10, () -> "late"))
+            .hasMessageContaining("排队超时");
+
+        // 流式调用排队超时同样放弃排队
+        AtomicReference<Throwable> streamError = new AtomicReference<>();
+        scheduler.stream(LlmLane.INTERACTIVE, 10, () -> Flux.just("late"))
+            .subscribe(started::add, streamError::set);
+        await(() -> streamError.get() != null);
+        assertThat(streamError.get()).hasMessageContaining("排队超时");
+
+        // 超时的请求不会在许可归还后再被执行，也不会占住许可
+        holder.dispose();
+        assertThat(started).containsExactly("holder");
+        assertThat(queued(LlmLane.INTERACTIVE)).isZero();
+        assertThat(running(LlmLane.INTERACTIVE)).isZero();
+        assertThat(scheduler.call(LlmLane.INTERACTIVE, 10, () -> "ok")).isEqualTo("ok");
+    }
+
+    // ============ 私有工具方法 ============
+
+    /**
+     * 订阅一个不会结束的流，获得许可时记录名称，dispose时取消并归还许可
+     */
+    private Disposable hold(LlmLane lane, int tokens, List<String> started, String name) {
+        return scheduler.stream(lane, tokens, () -> {
+            started.add(name);
+            return Flux.<String>never();
+        }).subscribe();
+    }
+
+    private int queued(LlmLane lane) {
+        return (int) meterRegistry.get("llm.scheduler.queued").tag("lane", lane.getCode()).gauge().value();
+    }
+
+    private int running(LlmLane lane) {
+        return (int) meterRegistry.get("llm.scheduler.running").tag("lane", lane.getCode()).gauge().value();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mtm.backend.service.llm;
+
+import com.mtm.backend.config.ModelRoutingConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 模型路由的延迟改道测试
+ */
+class ModelRouterTest {
+
+    @Test
+    void latencyFallbackExpiresAndRoutesBackToPreferredModel() throws InterruptedException {
+        ModelRoutingConfig config = new ModelRoutingConfig();
+        config.setLatencyFallbackMinMs(10);
+        config.setLatencySampleMaxAgeMs(200);
+        ModelRouter router = new ModelRouter(config, new SimpleMeterRegistry());
+        ModelRouter.RoutingRequest request = ModelRouter.RoutingRequest.builder().question("勾股定理").build();
+
+        // 首选的快速模型明显变慢，大模型正常
+        router.timed(new ModelRouter.Decision(config.getFastModel(), "short_factual", null), () -> sleep(80));
+        router.timed(new ModelRouter.Decision(config.getLargeModel(), "generation", null), () -> sleep(1));
+
+        ModelRouter.Decision fallback = router.route(request);
+        assertThat(fallback.model()).isEqualTo(config.getLargeModel());
+        assertThat(fallback.reason()).isEqualTo("latency_fallback");
+
+        // 改道期间快速模型没有新样本，样本过期后回到首选模型重新测量
+        Thread.sleep(250);
+        router.timed(new ModelRouter.Decision(config.getLargeModel(), "latency_fallback", null), () -> sleep(1));
+        ModelRouter.Decision recovered = router.route(request);
+        assertThat(recovered.model()).isEqualTo(config.getFastModel());
+        assertThat(recovered.reason()).isEqualTo("short_factual");
+
+        // 新样本正常时不再改道
+        router.timed(recovered, () -> sleep(1));
+        assertThat(router.route(request).model()).isEqualTo(config.getFastModel());
+    }
+
+    private static String sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "";
+    }
+}
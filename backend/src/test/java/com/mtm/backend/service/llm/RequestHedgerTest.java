@@ -0,0 +1,96 @@
+package com.mtm.backend.service.llm;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 对冲请求测试：对冲请求自行取得许可，主请求返回后仍在排队的对冲请求不再调用模型
+ */
+class RequestHedgerTest {
+
+    private static final String OPERATION = "chat.test";
+
+    /** 采样满一批后开始对冲，再积累足够的调用次数使对冲预算允许一次对冲 */
+    private static final int WARM_UP_CALLS = 42;
+
+    private RequestHedger hedger;
+
+    @BeforeEach
+    void setUp() {
+        hedger = new RequestHedger(new SimpleMeterRegistry(), new MockEnvironment());
+        for (int i = 0; i < WARM_UP_CALLS; i++) {
+            hedger.call(OPERATION, () -> "warm", hedge -> {
+                throw new AssertionError("预热调用不应发出对冲");
+            });
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        hedger.shutdown();
+    }
+
+    @Test
+    void hedgeTakesItsOwnAdmission() {
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger admissions = new AtomicInteger();
+
+        String result = hedger.call(OPERATION, () -> attempts.getAndIncrement() == 0 ? slow("primary", 1000) : "hedge",
+            hedge -> () -> {
+                admissions.incrementAndGet();
+                return hedge.get();
+            });
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(admissions).hasValue(1);
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void queuedHedgeIsSkippedAfterPrimaryReturns() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch permitGranted = new CountDownLatch(1);
+        CompletableFuture<Void> hedgeFinished = new CompletableFuture<>();
+
+        String result = hedger.call(OPERATION, () -> {
+            attempts.incrementAndGet();
+            return slow("primary", 300);
+        }, hedge -> () -> {
+            // 模拟排队：主请求返回后才取得许可
+            try {
+                permitGranted.await();
+                return hedge.get();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                hedgeFinished.complete(null);
+            }
+        });
+        permitGranted.countDown();
+        hedgeFinished.get(5, TimeUnit.SECONDS);
+
+        assertThat(result).isEqualTo("primary");
+        assertThat(attempts).hasValue(1);
+    }
+
+    // ============ 私有工具方法 ============
+
+    private static <T> T slow(T value, long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,98 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.service.llm.ChatClientRegistry;
+import com.mtm.backend.service.llm.LlmCallScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 相关问题异步生成测试：不在请求线程上调用模型，在途任务结束后一定被清理
+ */
+class AnswerEnrichmentServiceTest {
+
+    private static final List<String> KBS = List.of("kb-1");
+
+    private final LlmCallScheduler scheduler = mock(LlmCallScheduler.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, Object> valueOperations = mock(ValueOperations.class);
+
+    private final List<Runnable> submitted = new ArrayList<>();
+    private Executor executor;
+
+    private AnswerEnrichmentService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForHash()).thenReturn(mock(HashOperations.class));
+        when(scheduler.call(any(), anyInt(), any())).thenReturn("问题一\n2. 问题二");
+        service = new AnswerEnrichmentService(mock(ChatClientRegistry.class), scheduler, redisTemplate,
+            task -> executor.execute(task));
+    }
+
+    @Test
+    void rejectedGenerationFailsWithoutRunningOnCaller() {
+        executor = task -> {
+            throw new RejectedExecutionException("full");
+        };
+
+        CompletableFuture<List<String>> rejected = service.enrichAsync("m1", 1, "勾股定理", KBS, "回答");
+
+        assertThat(rejected).isCompletedExceptionally();
+        verify(scheduler, never()).call(any(), anyInt(), any());
+
+        // 放弃的任务不能留在在途表里，恢复后同一问题可以重新生成
+        executor = Runnable::run;
+        assertThat(service.enrichAsync("m2", 1, "勾股定理", KBS, "回答").join()).containsExactly("问题一", "问题二");
+    }
+
+    @Test
+    void synchronouslyCompletedGenerationIsCachedAndCleared() {
+        executor = Runnable::run;
+
+        assertThat(service.enrichAsync("m1", 1, "勾股定理", KBS, "回答").join()).hasSize(2);
+        assertThat(service.enrichAsync("m2", 1, "勾股定理", KBS, "回答").join()).hasSize(2);
+
+        verify(scheduler, times(2)).call(any(), anyInt(), any());
+        verify(valueOperations, times(2)).set(anyString(), any(), anyLong(), any());
+    }
+
+    @Test
+    void concurrentRequestsShareOneGeneration() {
+        executor = submitted::add;
+
+        CompletableFuture<List<String>> first = service.enrichAsync("m1", 1, "勾股定理", KBS, "回答");
+        CompletableFuture<List<String>> second = service.enrichAsync("m2", 2, " 勾股定理 ", KBS, "回答");
+
+        assertThat(submitted).hasSize(1);
+        assertThat(first).isNotDone();
+        submitted.get(0).run();
+
+        assertThat(first.join()).containsExactly("问题一", "问题二");
+        assertThat(second.join()).containsExactly("问题一", "问题二");
+        verify(scheduler, times(1)).call(any(), anyInt(), any());
+    }
+}
@@ -0,0 +1,94 @@
+package com.mtm.backend.service.rag;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.json.Path2;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.SearchProtocol;
+import redis.clients.jedis.search.SearchResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 暴力精确检索测试：打分下推到RediSearch，不取回候选向量
+ */
+class ExactRerankServiceTest {
+
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+    private final QueryEmbeddingCache queryEmbeddingCache = mock(QueryEmbeddingCache.class);
+
+    private ExactRerankService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ExactRerankService(mock(RedisVectorStore.class), queryEmbeddingCache, jedisPooled, Runnable::run);
+        when(queryEmbeddingCache.embed(anyString())).thenReturn(new float[]{0.6f, 0.8f});
+    }
+
+    @Test
+    void exactSearchScoresOnTheServer() {
+        SearchResult count = searchResult(3, List.of());
+        SearchResult knn = searchResult(2, List.of(
+            new redis.clients.jedis.search.Document("vector:doc-1",
+                Map.of("content", "勾股定理", "knowledge_base_id", "kb-1", "exact_distance", "0.1")),
+            new redis.clients.jedis.search.Document("vector:doc-2",
+                Map.of("content", "直角三角形", "knowledge_base_id", "kb-1", "exact_distance", "0.7"))));
+        when(jedisPooled.ftSearch(anyString(), any(Query.class))).thenReturn(count, knn);
+
+        Optional<List<Document>> result = service.exactSearch("勾股定理", "@knowledge_base_id:{kb\\-1}", 5, 0.5);
+
+        assertThat(result).isPresent();
+        assertThat(result.get()).extracting(Document::getText).containsExactly("勾股定理");
+        assertThat(result.get().get(0).getScore()).isCloseTo(0.9, within(1e-6));
+        assertThat(result.get().get(0).getMetadata()).containsEntry("knowledge_base_id", "kb-1");
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(jedisPooled, times(2)).ftSearch(anyString(), queries.capture());
+        assertThat(commandText(queries.getAllValues().get(1))).contains("KNN $K @embedding $BLOB HYBRID_POLICY ADHOC_BF");
+        verify(jedisPooled, never()).jsonMGet(any(Path2.class), any(String[].class));
+    }
+
+    @Test
+    void largeCandidateSetsFallBackToApproximateSearch() {
+        SearchResult count = searchResult(ExactRerankService.EXACT_SEARCH_LIMIT + 1, List.of());
+        when(jedisPooled.ftSearch(anyString(), any(Query.class))).thenReturn(count);
+
+        assertThat(service.exactSearch("勾股定理", "@knowledge_base_id:{kb\\-1}", 5, 0.5)).isEmpty();
+        verify(queryEmbeddingCache, never()).embed(anyString());
+    }
+
+    // ============ 私有工具方法 ============
+
+    private static String commandText(Query query) {
+        CommandArguments args = new CommandArguments(SearchProtocol.SearchCommand.SEARCH);
+        query.addParams(args);
+        StringBuilder text = new StringBuilder();
+        args.forEach(arg -> text.append(new String(arg.getRaw(), StandardCharsets.UTF_8)).append(' '));
+        return text.toString();
+    }
+
+    private static SearchResult searchResult(long total, List<redis.clients.jedis.search.Document> documents) {
+        SearchResult result = mock(SearchResult.class);
+        when(result.getTotalResults()).thenReturn(total);
+        when(result.getDocuments()).thenReturn(documents);
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package com.mtm.backend.service.rag;
+
+import com.mtm.backend.enums.RetrievalMode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.redis.RedisVectorStore;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.search.Query;
+import redis.clients.jedis.search.SearchResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 检索模式路由测试：中文查询不能只走没有中文分词的全文一路
+ */
+class SearchServiceTest {
+
+    private final RedisVectorStore vectorStore = mock(RedisVectorStore.class);
+    private final JedisPooled jedisPooled = mock(JedisPooled.class);
+    private final FilteredSearchPlanner planner = mock(FilteredSearchPlanner.class);
+    private final Executor direct = Runnable::run;
+
+    private SearchService searchService;
+
+    @BeforeEach
+    void setUp() {
+        searchService = new SearchService(vectorStore, jedisPooled, mock(VectorService.class), planner, direct, direct);
+        when(planner.compile(any())).thenReturn(new FilteredSearchPlanner.CompiledFilter(null, "*"));
+
+        // BM25没有命中（content字段没有中文分词）
+        SearchResult empty = mock(SearchResult.class);
+        when(empty.getDocuments()).thenReturn(List.of());
+        when(jedisPooled.ftSearch(anyString(), any(Query.class))).thenReturn(empty);
+    }
+
+    @Test
+    void chineseQueriesAreNotTreatedAsKeywords() {
+        assertThat(searchService.isKeywordQuery("勾股定理")).isFalse();
+        assertThat(searchService.isKeywordQuery("二次函数 顶点")).isFalse();
+        assertThat(searchService.isKeywordQuery("什么是勾股定理")).isFalse();
+
+        assertThat(searchService.isKeywordQuery("MATH101")).isTrue();
+        assertThat(searchService.isKeywordQuery("\"勾股定理\"")).isTrue();
+        assertThat(searchService.isKeywordQuery("binary search tree")).isTrue();
+    }
+
+    @Test
+    void chineseKeywordQueryUsesHybridInAutoMode() {
+        Document hit = document("doc-1", "勾股定理：直角三角形两直角边的平方和等于斜边的平方");
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenReturn(List.of(hit));
+
+        List<Document> results = searchService.semanticSearch("勾股定理", "kb-1", 5, 0.5, RetrievalMode.AUTO);
+
+        assertThat(results).extracting(Document::getId).containsExactly("doc-1");
+        verify(vectorStore).similaritySearch(any(SearchRequest.class));
+    }
+
+    @Test
+    void autoLexicalQueryFallsBackToVectorWhenBm25FindsNothing() {
+        Document hit = document("doc-2", "勾股定理的证明");
+        when(planner.search(anyString(), any(), anyInt(), anyDouble())).thenReturn(List.of(hit));
+
+        List<Document> results = searchService.semanticSearch("\"勾股定理\"", "kb-1", 5, 0.5, RetrievalMode.AUTO);
+
+        assertThat(results).extracting(Document::getId).containsExactly("doc-2");
+    }
+
+    @Test
+    void explicitLexicalModeDoesNotFallBack() {
+        List<Document> results = searchService.semanticSearch("勾股定理", "kb-1", 5, 0.5, RetrievalMode.LEXICAL);
+
+        assertThat(results).isEmpty();
+        verify(planner, never()).search(anyString(), any(), anyInt(), anyDouble());
+    }
+
+    @Test
+    void knowledgeBasesAreMergedByRankNotRawScore() {
+        // kb-1 为向量相关度，kb-2 为BM25分（量纲大得多），合并时不能让kb-2整体排在前面
+        List<Document> vectorHits = List.of(
+            Document.builder().id("kb1-a").text("a").score(0.9).build(),
+            Document.builder().id("kb1-b").text("b").score(0.8).build());
+        List<Document> bm25Hits = List.of(
+            Document.builder().id("kb2-b").text("b").metadata(Map.of("bm25_score", 8.0)).build(),
+            Document.builder().id("kb2-a").text("a").metadata(Map.of("bm25_score", 12.0)).build());
+        when(planner.search(anyString(), any(), anyInt(), anyDouble())).thenReturn(vectorHits, bm25Hits);
+
+        List<Document> results = searchService.multiKnowledgeBaseSearch("勾股定理", List.of("kb-1", "kb-2"), 3, 0.5,
+            RetrievalMode.VECTOR, SearchService.DEFAULT_PER_KB_DEADLINE_MS);
+
+        assertThat(results).extracting(Document::getId).containsExactly("kb1-a", "kb2-a", "kb1-b");
+    }
+
+    private static Document document(String id, String text) {
+        return Document.builder().id(id).text(text).build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.mtm.backend.service.rag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 过滤条件的归一化、转义与缓存键测试
+ */
+class VectorFilterTest {
+
+    @Test
+    void equivalentFiltersAreEqualCacheKeys() {
+        VectorFilter first = VectorFilter.builder()
+            .eq("user_id", 12)
+            .eq("knowledge_base_id", " kb-1 ")
+            .build();
+        // 字段顺序不同、数值以字符串传入、TAG值带空白，语义相同
+        VectorFilter second = VectorFilter.builder()
+            .eq("knowledge_base_id", "kb-1")
+            .eq("user_id", "12")
+            .build();
+
+        assertThat(first).isEqualTo(second);
+        assertThat(first.hashCode()).isEqualTo(second.hashCode());
+        assertThat(first.toRedisClause()).isEqualTo(second.toRedisClause());
+
+        Map<VectorFilter, String> cache = new LinkedHashMap<>();
+        cache.put(first, "compiled");
+        assertThat(cache).containsEntry(second, "compiled");
+
+        assertThat(first).isNotEqualTo(VectorFilter.builder().eq("user_id", 13).eq("knowledge_base_id", "kb-1").build());
+    }
+
+    @Test
+    void absentValuesAreIgnored() {
+        VectorFilter filter = VectorFilter.builder()
+            .eq("subject", null)
+            .eq("course_level", "  ")
+            .in("document_type", Arrays.asList(null, ""))
+            .range("token_count", null, null)
+            .build();
+
+        assertThat(filter.isEmpty()).isTrue();
+        assertThat(filter).isSameAs(VectorFilter.empty());
+        assertThat(filter.toExpression()).isNull();
+        assertThat(filter.toRedisClause()).isEmpty();
+    }
+
+    @Test
+    void singleValueInCollapsesToEquality() {
+        VectorFilter in = VectorFilter.builder().in("subject", List.of("数学", " 数学")).build();
+        VectorFilter eq = VectorFilter.builder().eq("subject", "数学").build();
+
+        assertThat(in).isEqualTo(eq);
+        assertThat(in.getConditions().get(0).operator()).isEqualTo(VectorFilter.Operator.EQ);
+    }
+
+    @Test
+    void compilesEscapedRedisClauses() {
+        VectorFilter filter = VectorFilter.builder()
+            .eq("title", "C++ 入门: 第1章")
+            .in("knowledge_base_id", List.of("kb-1", "kb|2"))
+            .range("token_count", 100, null)
+            .eq("user_id", 7)
+            .build();
+
+        assertThat(filter.toRedisClause()).isEqualTo(
+            "@knowledge_base_id:{kb\\-1 | kb\\|2} "
+                + "@title:{C\\+\\+\\ 入门\\:\\ 第1章} "
+                + "@token_count:[100 +inf] "
+                + "@user_id:[7 7]");
+        assertThat(filter.toExpression()).isNotNull();
+    }
+
+    @Test
+    void rejectsUnindexedFieldsAndDuplicateConditions() {
+        assertThatThrownBy(() -> VectorFilter.builder().eq("content", "x"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorFilter.builder().range("subject", 1, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorFilter.builder().eq("subject", "数学").eq("subject", "物理"))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> VectorFilter.builder().eq("user_id", "abc"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void redisQuerySyntaxEscapesUserInput() {
+        assertThat(RedisQuerySyntax.escape("a-b c@d")).isEqualTo("a\\-b\\ c\\@d");
+        assertThat(RedisQuerySyntax.escape("}) | @user_id:[0 +inf")).isEqualTo("\\}\\)\\ \\|\\ \\@user_id\\:\\[0\\ \\+inf");
+        assertThat(RedisQuerySyntax.tag("subject", "数学")).isEqualTo("@subject:{数学}");
+        assertThat(RedisQuerySyntax.numericRange("token_count", null, 50)).isEqualTo("@token_count:[-inf 50]");
+    }
+
+    @Test
+    void equalityQueryMatchesAllWhenEmpty() {
+        assertThat(RedisQuerySyntax.equalityQuery(Map.of())).isEqualTo("*");
+        assertThat(RedisQuerySyntax.equalityQuery(null)).isEqualTo("*");
+
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("user_id", 3);
+        filters.put("knowledge_base_id", "kb-1");
+        assertThat(RedisQuerySyntax.equalityQuery(filters)).isEqualTo("@user_id:[3 3] @knowledge_base_id:{kb\\-1}");
+        assertThatThrownBy(() -> RedisQuerySyntax.equalityQuery(Map.of("content", "x")))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,84 @@
+package com.mtm.backend.service.rag.similarity;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 余弦相似度 单累加器标量 vs 4路展开标量 vs SIMD 吞吐量基准
+ * 模拟精确重排：一个查询向量对一批候选向量逐一打分；基准进程自带 --add-modules，无需额外参数
+ *
+ * 运行：在IDE中直接执行main方法，或
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.mtm.backend.service.rag.similarity.VectorMathBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorMathBenchmark {
+
+    /** text-embedding-v2 的维度为1536 */
+    @Param({"384", "1536"})
+    private int dimensions;
+
+    /** 候选集规模（HNSW超取结果或小知识库的全部文档） */
+    @Param({"20", "500"})
+    private int candidates;
+
+    private float[] query;
+    private float[][] vectors;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        query = randomVector(random);
+        vectors = new float[candidates][];
+        for (int i = 0; i < candidates; i++) {
+            vectors[i] = randomVector(random);
+        }
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        for (float[] vector : vectors) {
+            blackhole.consume(VectorMath.cosineSequential(query, vector));
+        }
+    }
+
+    @Benchmark
+    public void unrolled(Blackhole blackhole) {
+        for (float[] vector : vectors) {
+            blackhole.consume(VectorMath.cosineScalar(query, vector));
+        }
+    }
+
+    @Benchmark
+    public void simd(Blackhole blackhole) {
+        for (float[] vector : vectors) {
+            blackhole.consume(SimdVectorMath.cosine(query, vector));
+        }
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(VectorMathBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
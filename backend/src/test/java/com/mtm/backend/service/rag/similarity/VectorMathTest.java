@@ -0,0 +1,53 @@
+package com.mtm.backend.service.rag.similarity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * 向量相似度各实现的一致性测试（以 -Psimd 运行时覆盖SIMD实现）
+ */
+class VectorMathTest {
+
+    private final Random random = new Random(11);
+
+    @Test
+    void implementationsAgreeWithSequentialReference() {
+        // 1539 维：覆盖展开/向量化主循环之后的尾部元素
+        for (int dimensions : new int[]{3, 384, 1539}) {
+            float[] a = randomVector(dimensions);
+            float[] b = randomVector(dimensions);
+            float expected = VectorMath.cosineSequential(a, b);
+
+            assertThat(VectorMath.cosineScalar(a, b)).isCloseTo(expected, within(1e-5f));
+            assertThat(VectorMath.cosine(a, b)).isCloseTo(expected, within(1e-5f));
+            assertThat(VectorMath.dot(a, b)).isCloseTo(VectorMath.dotScalar(a, b), within(1e-3f));
+            if (VectorMath.isSimdAvailable()) {
+                assertThat(SimdVectorMath.cosine(a, b)).isCloseTo(expected, within(1e-5f));
+            }
+        }
+    }
+
+    @Test
+    void zeroVectorHasZeroSimilarity() {
+        assertThat(VectorMath.cosine(new float[8], randomVector(8))).isZero();
+    }
+
+    @Test
+    void mismatchedDimensionsAreRejected() {
+        assertThatThrownBy(() -> VectorMath.cosine(new float[4], new float[5]))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private float[] randomVector(int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
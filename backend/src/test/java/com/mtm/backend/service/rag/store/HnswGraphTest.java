@@ -0,0 +1,113 @@
+package com.mtm.backend.service.rag.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * HNSW图的召回率测试：以暴力精确扫描的结果为基准
+ */
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int NODES = 3000;
+    private static final int QUERIES = 50;
+    private static final int TOP_K = 10;
+    private static final int EF_SEARCH = 64;
+
+    @TempDir
+    Path dataDir;
+
+    private MappedVectorFile vectors;
+    private HnswGraph graph;
+    private final Random random = new Random(7);
+
+    @BeforeEach
+    void buildGraph() throws IOException {
+        vectors = new MappedVectorFile(dataDir.resolve("vectors.bin"), DIMENSIONS, 1024);
+        graph = new HnswGraph(vectors, 16, 200);
+        for (int ordinal = 0; ordinal < NODES; ordinal++) {
+            vectors.write(ordinal, randomUnitVector());
+            graph.insert(ordinal);
+        }
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        vectors.close();
+    }
+
+    @Test
+    void recallAgainstExactScan() {
+        assertThat(graph.size()).isEqualTo(NODES);
+
+        double recall = averageRecall(ordinal -> true);
+
+        assertThat(recall).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void filteredSearchOnlyReturnsAcceptedNodes() {
+        // 奇数序号视为墓碑，与存储删除文档后的检索方式相同
+        IntPredicate even = ordinal -> ordinal % 2 == 0;
+
+        double recall = averageRecall(even);
+
+        assertThat(recall).isGreaterThanOrEqualTo(0.85);
+    }
+
+    @Test
+    void resultsAreOrderedByScore() {
+        List<HnswGraph.Candidate> found = graph.search(randomUnitVector(), TOP_K, EF_SEARCH, ordinal -> true);
+
+        assertThat(found).hasSize(TOP_K);
+        assertThat(found).isSortedAccordingTo(Comparator.comparingDouble(HnswGraph.Candidate::score).reversed());
+    }
+
+    // ============ 私有工具方法 ============
+
+    private double averageRecall(IntPredicate accept) {
+        int hits = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            float[] query = randomUnitVector();
+            Set<Integer> exact = IntStream.range(0, NODES)
+                .filter(accept)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer ordinal) -> vectors.dot(ordinal, query)).reversed())
+                .limit(TOP_K)
+                .collect(Collectors.toSet());
+            List<HnswGraph.Candidate> found = graph.search(query, TOP_K, EF_SEARCH, accept);
+
+            assertThat(found).allSatisfy(candidate -> assertThat(accept.test(candidate.ordinal())).isTrue());
+            hits += (int) found.stream().filter(candidate -> exact.contains(candidate.ordinal())).count();
+        }
+        return (double) hits / (QUERIES * TOP_K);
+    }
+
+    private float[] randomUnitVector() {
+        float[] vector = new float[DIMENSIONS];
+        double norm = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) (vector[i] / norm);
+        }
+        return vector;
+    }
+}
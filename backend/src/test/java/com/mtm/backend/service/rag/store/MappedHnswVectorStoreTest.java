@@ -0,0 +1,241 @@
+package com.mtm.backend.service.rag.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 嵌入式向量存储的墓碑与启动压缩测试
+ */
+class MappedHnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 16;
+
+    /** 墓碑比例达不到该值，用于关闭压缩 */
+    private static final double NEVER_COMPACT = 1.1;
+
+    @TempDir
+    Path dataDir;
+
+    private MappedHnswVectorStore store;
+
+    @AfterEach
+    void close() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    @Test
+    void deletedDocumentsAreInvisibleAndStayDeletedAfterReopen() throws IOException {
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 10));
+        store.delete(List.of("doc-2", "doc-5", "doc-7"));
+
+        assertVisible(List.of("doc-2", "doc-5", "doc-7"), 7);
+
+        store.close();
+        store = open(NEVER_COMPACT);
+
+        assertVisible(List.of("doc-2", "doc-5", "doc-7"), 7);
+    }
+
+    @Test
+    void replacedDocumentKeepsOnlyLatestVersion() {
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 3));
+        store.add(List.of(new Document("doc-1", "改写后的正文", Map.of("version", 2))));
+
+        assertThat(store.size()).isEqualTo(3);
+        List<Document> all = store.scan(metadata -> true, 0, 10).documents();
+        assertThat(all).extracting(Document::getId).containsExactly("doc-0", "doc-2", "doc-1");
+        assertThat(all.get(2).getText()).isEqualTo("改写后的正文");
+    }
+
+    @Test
+    void graphSearchSkipsTombstones() {
+        // 存活文档超过精确扫描阈值，检索走HNSW图
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 2100));
+        List<String> deleted = IntStream.range(0, 50).mapToObj(i -> "doc-" + (i * 40)).collect(Collectors.toList());
+        store.delete(deleted);
+
+        for (String id : deleted) {
+            List<Document> found = store.similaritySearch(SearchRequest.builder().query(text(id)).topK(10).build());
+            assertThat(found).extracting(Document::getId).doesNotContain(id).hasSize(10);
+        }
+        List<Document> self = store.similaritySearch(SearchRequest.builder().query(text("doc-41")).topK(1).build());
+        assertThat(self).extracting(Document::getId).containsExactly("doc-41");
+    }
+
+    @Test
+    void startupCompactsWhenTombstoneRatioIsReached() throws IOException {
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 10));
+        store.delete(List.of("doc-0", "doc-3", "doc-4", "doc-8"));
+        Map<String, float[]> before = store.getVectors(ids(0, 10));
+        store.close();
+
+        store = open(0.3);
+
+        assertThat(Files.readAllLines(dataDir.resolve("documents.log"))).hasSize(6);
+        assertThat(store.getVectors(ids(0, 10))).containsOnlyKeys(before.keySet());
+        before.forEach((id, vector) -> assertThat(store.getVectors(List.of(id)).get(id)).containsExactly(vector));
+        // 存活文档保持原顺序并重新编号为连续序号
+        MappedHnswVectorStore.ScanResult page = store.scan(metadata -> true, 0, 10);
+        assertThat(page.documents()).extracting(Document::getId)
+            .containsExactly("doc-1", "doc-2", "doc-5", "doc-6", "doc-7", "doc-9");
+        assertThat(store.scan(metadata -> true, 5, 10).documents()).extracting(Document::getId).containsExactly("doc-9");
+        assertThat(store.similaritySearch(SearchRequest.builder().query(text("doc-6")).topK(1).build()))
+            .extracting(Document::getId).containsExactly("doc-6");
+
+        // 压缩后继续写入与重启
+        store.add(documents(10, 11));
+        store.close();
+        store = open(0.3);
+        assertThat(store.size()).isEqualTo(7);
+        assertThat(store.scan(metadata -> true, 0, 10).documents()).extracting(Document::getId).last().isEqualTo("doc-10");
+    }
+
+    @Test
+    void startupKeepsFilesBelowTombstoneRatio() throws IOException {
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 10));
+        store.delete(List.of("doc-0"));
+        store.close();
+
+        store = open(0.3);
+
+        assertThat(Files.readAllLines(dataDir.resolve("documents.log"))).hasSize(11);
+        assertThat(store.size()).isEqualTo(9);
+    }
+
+    @Test
+    void leftoverCompactionFilesWithoutMarkerAreDiscarded() throws IOException {
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 5));
+        store.close();
+        Files.writeString(dataDir.resolve("documents.log.compact"), "{\"op\":\"add\",\"id\":\"half-written\"");
+        Files.write(dataDir.resolve("vectors.bin.compact"), new byte[7]);
+
+        store = open(NEVER_COMPACT);
+
+        assertThat(dataDir.resolve("documents.log.compact")).doesNotExist();
+        assertThat(dataDir.resolve("vectors.bin.compact")).doesNotExist();
+        assertThat(store.size()).isEqualTo(5);
+    }
+
+    @Test
+    void committedCompactionIsFinishedOnStartup() throws IOException {
+        store = open(NEVER_COMPACT);
+        store.add(documents(0, 6));
+        store.delete(List.of("doc-1", "doc-2", "doc-3"));
+        store.close();
+        store = null;
+
+        // 在副本上完成压缩，再把结果作为已提交但尚未替换的临时文件放回原目录，模拟替换中途崩溃
+        Path copy = Files.createDirectory(dataDir.resolve("copy"));
+        Files.copy(dataDir.resolve("vectors.bin"), copy.resolve("vectors.bin"));
+        Files.copy(dataDir.resolve("documents.log"), copy.resolve("documents.log"));
+        new MappedHnswVectorStore(new FakeEmbeddingModel(), copy, DIMENSIONS, 16, 200, 64, 64, 0.3).close();
+        Files.copy(copy.resolve("vectors.bin"), dataDir.resolve("vectors.bin.compact"));
+        Files.copy(copy.resolve("documents.log"), dataDir.resolve("documents.log.compact"));
+        Files.createFile(dataDir.resolve("compact.committed"));
+
+        store = open(NEVER_COMPACT);
+
+        assertThat(dataDir.resolve("compact.committed")).doesNotExist();
+        assertThat(Files.readAllLines(dataDir.resolve("documents.log"))).hasSize(3);
+        assertThat(store.scan(metadata -> true, 0, 10).documents()).extracting(Document::getId)
+            .containsExactly("doc-0", "doc-4", "doc-5");
+        assertThat(store.similaritySearch(SearchRequest.builder().query(text("doc-4")).topK(1).build()))
+            .extracting(Document::getId).containsExactly("doc-4");
+    }
+
+    // ============ 私有工具方法 ============
+
+    private MappedHnswVectorStore open(double compactTombstoneRatio) {
+        return new MappedHnswVectorStore(new FakeEmbeddingModel(), dataDir, DIMENSIONS, 16, 200, 64, 64,
+            compactTombstoneRatio);
+    }
+
+    private void assertVisible(List<String> deleted, int expectedSize) {
+        assertThat(store.size()).isEqualTo(expectedSize);
+        assertThat(store.count(metadata -> true)).isEqualTo(expectedSize);
+        assertThat(store.getVectors(deleted)).isEmpty();
+        assertThat(store.getDocuments(deleted)).isEmpty();
+        assertThat(store.scan(metadata -> true, 0, 100).documents())
+            .hasSize(expectedSize)
+            .extracting(Document::getId)
+            .doesNotContainAnyElementsOf(deleted);
+        for (String id : deleted) {
+            assertThat(store.similaritySearch(SearchRequest.builder().query(text(id)).topK(expectedSize).build()))
+                .extracting(Document::getId)
+                .doesNotContain(id);
+        }
+    }
+
+    private static List<Document> documents(int from, int to) {
+        List<Document> result = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            String id = "doc-" + i;
+            result.add(new Document(id, text(id), Map.of("chunk_index", i)));
+        }
+        return result;
+    }
+
+    private static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "doc-" + i).collect(Collectors.toList());
+    }
+
+    private static String text(String id) {
+        return id + " 的正文";
+    }
+
+    /**
+     * 以文本哈希为种子生成固定向量，同一文本总是得到同一向量
+     */
+    private static class FakeEmbeddingModel implements EmbeddingModel {
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        private static float[] vector(String text) {
+            Random random = new Random(text.hashCode());
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+            return vector;
+        }
+    }
+}